@@ -10,6 +10,7 @@ if "%~1"=="install_deps" goto install_deps
 if "%~1"=="docs" goto docs
 
 if "%~1"=="build_wasm" goto build_wasm
+if "%~1"=="build_cds" goto build_cds
 if "%~1"=="build_docker" goto build_docker
 if "%~1"=="run_docker" goto run_docker
 
@@ -44,6 +45,7 @@ echo   install_deps : install local dependencies
 echo   docs         : build the API docs to target/docs and symlink docs/html
 echo   build_docs   : build the API docs (specify dir as second arg, e.g. make.bat build_docs custom_dir)
 echo   build        : build the CLI binary (specify dir as second arg, e.g. make.bat build custom_dir)
+echo   build_cds    : build the CLI jar and CDS archive (Not implemented, use make build_cds)
 echo   build_wasm   : build WASM variant (Not implemented)
 echo   build_docker : build Docker images
 echo   run_docker   : run Docker images
@@ -121,6 +123,10 @@ goto :eof
 echo WASM Support is not implemented for cdd-java. See WASM.md
 goto :eof
 
+:build_cds
+echo The CDS build is only scripted in the Makefile; run make build_cds under WSL or Git Bash.
+goto :eof
+
 :build_docker
 echo Building docker images...
 docker build -t cdd-java-alpine -f alpine.Dockerfile .
@@ -5,6 +5,8 @@ import openapi.Schema;
 import openapi.ExternalDocumentation;
 import openapi.XML;
 import openapi.Discriminator;
+import sink.FileSink;
+import sink.MapSink;
 import com.github.javaparser.StaticJavaParser;
 import com.github.javaparser.ast.CompilationUnit;
 import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
@@ -14,6 +16,7 @@ import com.github.javaparser.ast.Modifier;
 import com.github.javaparser.printer.lexicalpreservation.LexicalPreservingPrinter;
 import java.util.Map;
 import java.util.List;
+import java.util.function.Predicate;
 
 /**
  * Emits DTOs to language source while preserving whitespace and comments.
@@ -44,13 +47,42 @@ public class Emit {
 	 * @return Map of filenames to generated Java source.
 	 */
 	public static Map<String, String> emitModular(OpenAPI model) {
-		Map<String, String> files = new java.util.HashMap<>();
+		MapSink sink = new MapSink();
+		emitModular(model, sink);
+		return sink.files;
+	}
+
+	/**
+	 * Emits Modular Java code for schemas, handing each file to the sink as soon as
+	 * it is printed.
+	 *
+	 * @param model
+	 *            The OpenAPI model.
+	 * @param sink
+	 *            Receives each generated file.
+	 */
+	public static void emitModular(OpenAPI model, FileSink sink) {
+		emitModular(model, sink, schema -> true);
+	}
+
+	/**
+	 * Emits Modular Java code for the schemas a filter accepts, handing each file
+	 * to the sink as soon as it is printed.
+	 *
+	 * @param model
+	 *            The OpenAPI model.
+	 * @param sink
+	 *            Receives each generated file.
+	 * @param include
+	 *            Selects the schemas to emit; the others are not rendered.
+	 */
+	public static void emitModular(OpenAPI model, FileSink sink, Predicate<Schema> include) {
 		if (model.components == null || model.components.schemas == null)
-			return files;
+			return;
 
 		for (Map.Entry<String, Schema> entry : model.components.schemas.entrySet()) {
 			String className = entry.getKey().replaceAll("[^a-zA-Z0-9_]", "");
-			if (className.equals("Emit") || className.equals("Parse")) {
+			if (className.equals("Emit") || className.equals("Parse") || !include.test(entry.getValue())) {
 				continue;
 			}
 			CompilationUnit cu = new CompilationUnit();
@@ -70,9 +102,8 @@ public class Emit {
 			// For classes, set Modifier to PUBLIC
 			cu.getClassByName(className).ifPresent(c -> c.setModifier(Modifier.Keyword.PUBLIC, true));
 
-			files.put("models/" + className + ".java", cu.toString());
+			sink.write("models/" + className + ".java", cu.toString());
 		}
-		return files;
 	}
 
 	/**
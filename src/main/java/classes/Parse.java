@@ -49,14 +49,31 @@ public class Parse {
 	 *         components.schemas).
 	 */
 	public static OpenAPI parse(String sourceCode) {
+		CompilationUnit cu;
+		try {
+			cu = StaticJavaParser.parse(sourceCode);
+		} catch (Exception e) {
+			// Ignore unparseable code blocks or fragments
+			cu = new CompilationUnit();
+		}
+		return parse(cu);
+	}
+
+	/**
+	 * Parses an already-parsed compilation unit into an OpenAPI model.
+	 *
+	 * @param cu
+	 *            The compilation unit.
+	 * @return The parsed OpenAPI object (specifically populating
+	 *         components.schemas).
+	 */
+	public static OpenAPI parse(CompilationUnit cu) {
 		OpenAPI api = new OpenAPI();
 		api.openapi = "3.2.0";
 		api.components = new openapi.Components();
 		api.components.schemas = new HashMap<>();
 
 		try {
-			CompilationUnit cu = StaticJavaParser.parse(sourceCode);
-
 			// Handle enums
 			for (EnumDeclaration enumDecl : cu.findAll(EnumDeclaration.class)) {
 				String enumName = enumDecl.getNameAsString();
@@ -0,0 +1,204 @@
+package cli;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import openapi.OpenAPI;
+
+/**
+ * Serves the OpenAPI document extracted from a source tree, keeping every
+ * file's fragment in memory and re-extracting only files whose modification
+ * time or size changed since the last read.
+ */
+public class AstResource implements Closeable {
+
+	/**
+	 * Last extraction of one file.
+	 */
+	private static class Entry {
+		/**
+		 * Modification time when extracted.
+		 */
+		final long modified;
+
+		/**
+		 * Size when extracted.
+		 */
+		final long length;
+
+		/**
+		 * The file's fragment.
+		 */
+		final Fragment fragment;
+
+		/**
+		 * Records an extraction.
+		 *
+		 * @param modified
+		 *            Modification time when extracted.
+		 * @param length
+		 *            Size when extracted.
+		 * @param fragment
+		 *            The file's fragment.
+		 */
+		Entry(long modified, long length, Fragment fragment) {
+			this.modified = modified;
+			this.length = length;
+			this.fragment = fragment;
+		}
+	}
+
+	/**
+	 * Root of the source tree.
+	 */
+	private final File root;
+
+	/**
+	 * Finds the source files.
+	 */
+	private final SourceWalker walker;
+
+	/**
+	 * Fragment cache consulted for changed files, or null.
+	 */
+	private final ExtractionCache cache;
+
+	/**
+	 * Last extraction of every known file.
+	 */
+	private final Map<File, Entry> entries = new HashMap<>();
+
+	/**
+	 * Files in merge order at the last read.
+	 */
+	private List<File> order;
+
+	/**
+	 * Serialized document from the last read, or null before the first one.
+	 */
+	private String text;
+
+	/**
+	 * Number of files extracted so far.
+	 */
+	private int extracted;
+
+	/**
+	 * Watches the tree for subscribers, or null when nobody is subscribed.
+	 */
+	private Watcher watcher;
+
+	/**
+	 * Creates the resource.
+	 *
+	 * @param root
+	 *            Root of the source tree.
+	 * @param walker
+	 *            Finds the source files.
+	 * @param cache
+	 *            Fragment cache consulted for changed files, or null.
+	 */
+	public AstResource(File root, SourceWalker walker, ExtractionCache cache) {
+		this.root = root;
+		this.walker = walker;
+		this.cache = cache;
+	}
+
+	/**
+	 * Returns the current document, re-extracting only changed files. When no
+	 * file was added, removed or changed, the previous text is returned without
+	 * merging or serializing again.
+	 *
+	 * @return The OpenAPI document as JSON.
+	 * @throws IOException
+	 *             if a file cannot be read.
+	 */
+	public synchronized String read() throws IOException {
+		List<File> files = walker.list(root);
+		boolean dirty = text == null || !files.equals(order);
+		for (File f : files) {
+			Entry entry = entries.get(f);
+			long modified = f.lastModified();
+			long length = f.length();
+			if (entry != null && entry.modified == modified && entry.length == length)
+				continue;
+			entries.put(f, new Entry(modified, length, Extractor.extract(f, cache, null)));
+			extracted++;
+			dirty = true;
+		}
+		if (!dirty)
+			return text;
+		entries.keySet().retainAll(files);
+		OpenAPI fullApi = Extractor.newDocument();
+		for (File f : files)
+			entries.get(f).fragment.mergeInto(fullApi);
+		order = files;
+		text = openapi.Emit.toString(fullApi);
+		return text;
+	}
+
+	/**
+	 * Number of files extracted so far, including the first read.
+	 *
+	 * @return The extraction count.
+	 */
+	public synchronized int getExtracted() {
+		return extracted;
+	}
+
+	/**
+	 * Starts watching the tree, calling back after every batch of changes to
+	 * Java sources. Does nothing if already watching.
+	 *
+	 * @param onChange
+	 *            Called from a background thread when the tree changes.
+	 * @throws IOException
+	 *             if the tree cannot be watched.
+	 */
+	public synchronized void watch(Runnable onChange) throws IOException {
+		if (watcher != null)
+			return;
+		Watcher w = new Watcher(root, walker, 1, 50);
+		watcher = w;
+		Thread thread = new Thread(() -> {
+			try {
+				while (true) {
+					w.awaitChanges();
+					onChange.run();
+				}
+			} catch (ClosedWatchServiceException | InterruptedException | IOException e) {
+				// Unwatched or shutting down
+			}
+		}, "cdd-ast-watch");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Stops watching the tree.
+	 *
+	 * @throws IOException
+	 *             if the watch service cannot be closed.
+	 */
+	public synchronized void unwatch() throws IOException {
+		if (watcher == null)
+			return;
+		watcher.close();
+		watcher = null;
+	}
+
+	/**
+	 * Stops watching the tree.
+	 *
+	 * @throws IOException
+	 *             if the watch service cannot be closed.
+	 */
+	@Override
+	public void close() throws IOException {
+		unwatch();
+	}
+}
@@ -1,9 +1,14 @@
 package cli;
 
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
 import java.io.BufferedReader;
 import java.io.InputStreamReader;
 import java.util.List;
@@ -12,13 +17,97 @@ import org.json.JSONObject;
 import org.json.JSONArray;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import openapi.OpenAPI;
+import openapi.RefCache;
+import openapi.RefResolver;
+import sink.FileSink;
+import sink.ZipSink;
 
 /**
  * CLI Entrypoint.
  */
 public @Generated class CddCli {
 
+	/**
+	 * Holds the engine shared by every call, so a long-running server keeps its
+	 * parsed specs warm. Held in its own class so that subcommands which never
+	 * generate do not load it.
+	 */
+	private static final class EngineHolder {
+
+		/**
+		 * The shared engine.
+		 */
+		static final CddEngine engine = new CddEngine();
+	}
+
+	/**
+	 * Holds the {@code cdd://ast/openapi} resource, extracted from the working
+	 * directory and kept warm between reads. Only the JSON-RPC server loads it.
+	 */
+	private static final class AstHolder {
+
+		/**
+		 * The shared resource.
+		 */
+		static final AstResource astResource = new AstResource(new File("."), new SourceWalker(),
+				getCache(new String[0]));
+	}
+
+	/**
+	 * Sends server-initiated notifications on the stdio transport, or null when
+	 * no stdio server is running.
+	 */
+	private static volatile Consumer<String> notifier;
+
+	/**
+	 * Number of {@code "delivery":"resources"} calls whose files are kept.
+	 */
+	private static final int GENERATED_CALLS = 8;
+
+	/**
+	 * Files generated with {@code "delivery":"resources"}, by call id and then by
+	 * path, read as {@code cdd://files/<callId>/<path>}. Only the most recently
+	 * used {@value #GENERATED_CALLS} calls are kept.
+	 */
+	private static final Map<String, Map<String, String>> generatedFiles = new java.util.LinkedHashMap<>(16, 0.75f,
+			true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Map<String, String>> eldest) {
+			return size() > GENERATED_CALLS;
+		}
+	};
+
+	/**
+	 * The tool version: printed by {@code --version}, answered by the
+	 * {@code version} method and {@code serverInfo}, and mixed into extraction
+	 * cache keys. Kept in step with {@code pom.xml}.
+	 */
+	public static final String VERSION = "0.0.3";
+
+	/**
+	 * The newest MCP protocol version served, the first with
+	 * {@code structuredContent} and {@code resource_link} tool results.
+	 */
+	static final String PROTOCOL_VERSION = "2025-06-18";
+
+	/**
+	 * Every MCP protocol version served; clients asking for another get
+	 * {@link #PROTOCOL_VERSION}.
+	 */
+	private static final Set<String> PROTOCOL_VERSIONS = Set.of(PROTOCOL_VERSION, "2025-03-26", "2024-11-05");
+
 	/**
 	 * Default constructor.
 	 */
@@ -275,7 +364,7 @@ public @Generated class CddCli {
 			return 0;
 		}
 		if (args[0].equals("--version") || args[0].equals("-v")) {
-			System.out.println("0.0.3");
+			System.out.println(VERSION);
 			return 0;
 		}
 		String command = args[0];
@@ -297,6 +386,12 @@ public @Generated class CddCli {
 				System.out.println(
 						"  cdd-java from_openapi to_sdk -i <spec.json> [-o <target_directory>] [--no-github-actions] [--no-installable-package] [--tests]");
 				System.out.println("  cdd-java from_openapi to_server -i <spec.json> [-o <target_directory>]");
+				System.out.println(
+						"  cdd-java from_openapi <to_sdk_cli|to_sdk|to_server> --input-dir <specs_dir> [-o <target_directory>] [-j|--jobs <n>]");
+				System.out.println(
+						"  cdd-java from_openapi <to_sdk_cli|to_sdk|to_server> -i <spec.json|specs_dir> --output-archive <file.zip|->");
+				System.out.println(
+						"  cdd-java from_openapi <to_sdk_cli|to_sdk|to_server> -i <spec.json> [--ref-cache] [--ref-cache-dir <dir>] [--offline] [--lazy-refs]");
 				return 0;
 			}
 			// Default for backward compatibility
@@ -328,109 +423,71 @@ public @Generated class CddCli {
 			boolean noInstallablePackage = hasFlag(args, "--no-installable-package", "--no-installable-package",
 					"CDD_NO_INSTALLABLE_PACKAGE");
 			boolean generateTests = hasFlag(args, "--tests", "--tests", "CDD_TESTS");
-			List<File> specFiles = new ArrayList<>();
+			String outputArchive = getArg(args, "--output-archive", "--output-archive", "CDD_OUTPUT_ARCHIVE");
+			Supplier<RefResolver> resolvers = () -> newResolver(args);
 			File targetFile = resolveFile(inputFile);
+			List<File> specFiles = null;
 			if (targetFile.isDirectory()) {
 				File[] files = targetFile.listFiles(
 						(d, name) -> name.endsWith(".json") || name.endsWith(".yaml") || name.endsWith(".yml"));
+				specFiles = new ArrayList<>();
 				if (files != null) {
 					for (File f : files)
 						specFiles.add(f);
 				}
-			} else {
-				specFiles.add(targetFile);
-			}
-			for (File specFile : specFiles) {
-				OpenAPI api = openapi.Parse.fromFile(specFile);
-				File outDir = resolveFile(outputDir);
-				outDir.mkdirs();
-				if (!noInstallablePackage) {
-					generateScaffolding(outDir);
-				}
-				if (!noGithubActions) {
-					generateGithubActions(outDir);
-				}
-				if (subCommand.equals("to_sdk_cli")) {
-					String code = cli.Emit.emitCli(api);
-					writeFile(new File(outDir, "SdkCli.java"), code);
-					System.out.println("Generated SDK CLI in " + outDir.getAbsolutePath());
-					if (generateTests) {
-						String testCode = tests.Emit.emit(api, null);
-						writeFile(new File(outDir, "SdkCliIntegrationTest.java"), testCode);
-						String mockCode = mocks.Emit.emit(api, null);
-						writeFile(new File(outDir, "SdkCliMockServer.java"), mockCode);
-						System.out.println("Generated Composable Tests & Mocks in " + outDir.getAbsolutePath());
-					}
-				} else if (subCommand.equals("to_sdk")) {
-					String code = classes.Emit.emit(api, null);
-					File srcMainJava = new File(outDir, "src/main/java");
-					srcMainJava.mkdirs();
-					File srcTestJava = new File(outDir, "src/test/java");
-					srcTestJava.mkdirs();
-					writeFile(new File(srcMainJava, "Sdk.java"), code);
-					System.out.println("Generated SDK in " + outDir.getAbsolutePath());
-					if (generateTests) {
-						String testCode = tests.Emit.emit(api, null);
-						String title1 = (api.info != null && api.info.title != null)
-								? api.info.title.replaceAll("[^a-zA-Z0-9]", "")
-								: "Api";
-						if (title1.isEmpty())
-							title1 = "Api";
-						writeFile(new File(srcTestJava, title1 + "IntegrationTest.java"), testCode);
-						String mockCode = mocks.Emit.emit(api, null);
-						String title2 = (api.info != null && api.info.title != null)
-								? api.info.title.replaceAll("[^a-zA-Z0-9]", "")
-								: "Api";
-						if (title2.isEmpty())
-							title2 = "Api";
-						writeFile(new File(srcTestJava, title2 + "MockServer.java"), mockCode);
-						System.out.println("Generated Composable Tests & Mocks in " + outDir.getAbsolutePath());
-					}
-				} else if (subCommand.equals("to_server")) {
-					java.util.Map<String, String> modelsCode = classes.Emit.emitModular(api);
-					for (java.util.Map.Entry<String, String> e : modelsCode.entrySet()) {
-						writeFile(new File(outDir, "src/main/java/" + e.getKey()), e.getValue());
-					}
-					java.util.Map<String, String> ormCode = orm.Emit.emitModular(api);
-					for (java.util.Map.Entry<String, String> e : ormCode.entrySet()) {
-						writeFile(new File(outDir, "src/main/java/" + e.getKey()), e.getValue());
-					}
-					java.util.Map<String, String> daoCode = dao.Emit.emitModular(api);
-					for (java.util.Map.Entry<String, String> e : daoCode.entrySet()) {
-						writeFile(new File(outDir, "src/main/java/" + e.getKey()), e.getValue());
-					}
-					java.util.Map<String, String> sRoutes = serverroutes.Emit.emitModular(api);
-					for (java.util.Map.Entry<String, String> e : sRoutes.entrySet()) {
-						writeFile(new File(outDir, "src/main/java/" + e.getKey()), e.getValue());
-					}
-					java.util.Map<String, String> seederCode = seeder.Emit.emitModular(api);
-					for (java.util.Map.Entry<String, String> e : seederCode.entrySet()) {
-						writeFile(new File(outDir, "src/main/java/" + e.getKey()), e.getValue());
-					}
-					java.util.Map<String, String> sMain = servermain.Emit.emitModular(api);
-					for (java.util.Map.Entry<String, String> e : sMain.entrySet()) {
-						writeFile(new File(outDir, "src/main/java/" + e.getKey()), e.getValue());
+				specFiles.sort(null);
+			}
+			if (outputArchive != null) {
+				// With "-" the archive owns stdout, so progress goes to stderr
+				boolean toStdout = outputArchive.equals("-");
+				PrintStream log = toStdout ? System.err : System.out;
+				OutputStream stream = toStdout ? new FilterOutputStream(System.out) {
+					@Override
+					public void write(byte[] b, int off, int len) throws IOException {
+						out.write(b, off, len);
 					}
-					java.util.Map<String, String> sTests = servertests.Emit.emitModular(api);
-					for (java.util.Map.Entry<String, String> e : sTests.entrySet()) {
-						if (e.getKey().startsWith("../main/")) {
-							writeFile(new File(outDir, "src/" + e.getKey().substring(3)), e.getValue());
-						} else {
-							writeFile(new File(outDir, "src/test/java/" + e.getKey()), e.getValue());
-						}
+
+					@Override
+					public void close() throws IOException {
+						flush();
 					}
-					java.util.Map<String, String> sMocks = mocks.Emit.emitModular(api);
-					for (java.util.Map.Entry<String, String> e : sMocks.entrySet()) {
-						writeFile(new File(outDir, "src/test/java/" + e.getKey()), e.getValue());
+				} : new FileOutputStream(resolveFile(outputArchive));
+				String where = toStdout ? "stdout" : resolveFile(outputArchive).getAbsolutePath();
+				try (ZipSink zip = new ZipSink(new BufferedOutputStream(stream))) {
+					Function<String, FileSink> projects = name -> name.isEmpty() ? zip
+							: (path, content) -> zip.write(name + "/" + path, content);
+					if (specFiles != null) {
+						generateBatch(subCommand, specFiles, resolvers, projects, where, noGithubActions,
+								noInstallablePackage, generateTests, getJobs(args), log);
+					} else {
+						generateProject(subCommand, openapi.Parse.fromFile(targetFile, resolvers.get()), projects.apply(""),
+								where, noGithubActions, noInstallablePackage, generateTests, log);
 					}
-					System.out.println("Generated Modular Server in " + outDir.getAbsolutePath());
+					log.println("Files: " + zip.getCount() + " archived to " + where);
 				}
+				return 0;
 			}
+			File outDir = resolveFile(outputDir);
+			OutputWriter out = new OutputWriter();
+			outDir.mkdirs();
+			if (specFiles != null) {
+				String target = subCommand;
+				Function<String, FileSink> projects = name -> name.isEmpty() ? directorySink(outDir, out)
+						: projectDirectory(target, new File(outDir, name), out);
+				generateBatch(subCommand, specFiles, resolvers, projects, outDir.getAbsolutePath(), noGithubActions,
+						noInstallablePackage, generateTests, getJobs(args), System.out);
+			} else {
+				generateProject(subCommand, openapi.Parse.fromFile(targetFile, resolvers.get()),
+						projectDirectory(subCommand, outDir, out), outDir.getAbsolutePath(), noGithubActions,
+						noInstallablePackage, generateTests, System.out);
+			}
+			System.out.println("Files: " + out.summary());
 		} else if (command.equals("to_openapi")) {
 			if (hasFlag(args, "-h", "--help", null)) {
 				System.out.println("cdd-java to_openapi");
 				System.out.println("Usage:");
-				System.out.println("  cdd-java to_openapi -i <path/to/code> [-o <spec.json>]");
+				System.out.println(
+						"  cdd-java to_openapi -i <path/to/code> [-o <spec.json>] [-j|--jobs <n>] [--cache-dir <dir>] [--watch] [--include <globs>] [--exclude <globs>] [--no-gitignore]");
 				return 0;
 			}
 			String filePath = getArg(args, "-i", "--input", "CDD_INPUT");
@@ -442,16 +499,27 @@ public @Generated class CddCli {
 			if (outputFile == null) {
 				outputFile = "spec.json";
 			}
-			OpenAPI fullApi = extractOpenAPI(resolveFile(filePath));
+			int jobs = getJobs(args);
+			if (hasFlag(args, "--watch", "--watch", "CDD_WATCH")) {
+				watchToOpenApi(resolveFile(filePath), outputFile, jobs, getWalker(args));
+				return 0;
+			}
+			ExtractionCache cache = getCache(args);
+			Prescan.Stats prescan = new Prescan.Stats();
+			OpenAPI fullApi = extractOpenAPI(resolveFile(filePath), jobs, cache, getWalker(args), prescan);
 			String spec = openapi.Emit.toString(fullApi);
 			writeFile(resolveFile(outputFile), spec);
+			if (cache != null) {
+				System.out.println("Extraction cache: " + cache.getHits() + " hits, " + cache.getMisses() + " misses");
+			}
+			printPrescanStats(prescan);
 			System.out.println("Emitted OpenAPI to " + outputFile);
 		} else if (command.equals("to_docs_json")) {
 			if (hasFlag(args, "-h", "--help", null)) {
 				System.out.println("cdd-java to_docs_json");
 				System.out.println("Usage:");
 				System.out.println(
-						"  cdd-java to_docs_json [--no-imports] [--no-wrapping] -i <spec.json> [-o <docs.json>]");
+						"  cdd-java to_docs_json [--no-imports] [--no-wrapping] -i <spec.json> [-o <docs.json>] [--ref-cache] [--offline] [--lazy-refs]");
 				return 0;
 			}
 			String inputFile = getArg(args, "-i", "--input", "CDD_INPUT");
@@ -465,7 +533,7 @@ public @Generated class CddCli {
 			if (outputFile == null) {
 				outputFile = "docs.json";
 			}
-			OpenAPI api = openapi.Parse.fromFile(resolveFile(inputFile));
+			OpenAPI api = openapi.Parse.fromFile(resolveFile(inputFile), newResolver(args));
 			String docsJson = docstrings.Emit.emitDocsJson(api, noImports, noWrapping);
 			writeFile(resolveFile(outputFile), docsJson);
 			System.out.println("Emitted docs JSON to " + outputFile);
@@ -482,20 +550,25 @@ public @Generated class CddCli {
 			String listen = getArg(args, "-l", "--listen", "CDD_LISTEN");
 			if (listen == null)
 				listen = "127.0.0.1";
-			// If --wasi is present, continue with STDIO
+			// WASI hosts only offer stdio; everywhere else listen on HTTP
 			if (wasi) {
 				startStdioJsonRpcServer();
 			} else {
-				// For now, standard server behaves same as WASI due to Java's lack of built-in
-				// lightweight HTTP server,
-				// but we parse the flags for consistency.
-				startStdioJsonRpcServer();
+				int port;
+				try {
+					port = Integer.parseInt(portStr.trim());
+				} catch (NumberFormatException e) {
+					System.err.println("Invalid --port value: " + portStr);
+					throw new Exception("Exit 1");
+				}
+				startHttpJsonRpcServer(listen, port);
 			}
 		} else if (command.equals("sync")) {
 			if (hasFlag(args, "-h", "--help", null)) {
 				System.out.println("cdd-java sync");
 				System.out.println("Usage:");
-				System.out.println("  cdd-java sync -i <dir> [-o <dir>] [--truth <type>]");
+				System.out.println(
+						"  cdd-java sync -i <dir> [-o <dir>] [--truth <type>] [-j|--jobs <n>] [--watch] [--include <globs>] [--exclude <globs>] [--no-gitignore]");
 				return 0;
 			}
 			String dirPath = getArg(args, "-i", "--input", "CDD_INPUT");
@@ -505,43 +578,24 @@ public @Generated class CddCli {
 			}
 			String outputDir = getArg(args, "-o", "--output", "CDD_OUTPUT");
 			String truth = getArg(args, "--truth", "--truth", "CDD_TRUTH");
+			int jobs = getJobs(args);
 			File dir = resolveFile(dirPath);
-			OpenAPI fullApi = extractOpenAPI(dir);
-			List<File> javaFiles = new ArrayList<>();
-			findJavaFiles(dir, javaFiles);
-			for (File jf : javaFiles) {
-				String source = readFile(jf);
-				String newSource = source;
-				String absPath = jf.getAbsolutePath().replace('\\', '/');
-				if (absPath.contains("/classes/")) {
-					newSource = classes.Emit.emit(fullApi, source);
-				} else if (absPath.contains("/orm/")) {
-					newSource = orm.Emit.emit(fullApi, source);
-				} else if (absPath.contains("/routes/")) {
-					newSource = routes.Emit.emit(fullApi, source);
-				} else if (absPath.contains("/mocks/")) {
-					newSource = mocks.Emit.emit(fullApi, source);
-				} else if (absPath.contains("/tests/")) {
-					newSource = tests.Emit.emit(fullApi, source);
-				} else if (absPath.contains("/functions/")) {
-				} else if (absPath.contains("/cli/")) {
-					newSource = cli.Emit.emitCli(fullApi);
-					newSource = functions.Emit.emit(fullApi, source);
-				}
-				File targetFile = jf;
-				if (outputDir != null) {
-					String relativePath = jf.getAbsolutePath().substring(dir.getAbsolutePath().length());
-					if (relativePath.startsWith(File.separator)) {
-						relativePath = relativePath.substring(1);
-					}
-					targetFile = new File(resolveFile(outputDir), relativePath);
-				}
-				if (!newSource.equals(source) || outputDir != null) {
-					writeFile(targetFile, newSource);
-					System.out.println("Updated: " + targetFile.getAbsolutePath());
-				}
+			if (hasFlag(args, "--watch", "--watch", "CDD_WATCH")) {
+				watchSync(dir, outputDir, jobs, getWalker(args));
+				return 0;
 			}
-			System.out.println("Sync complete.");
+			List<File> javaFiles = getWalker(args).list(dir);
+			// Each file is read once and the same text feeds both extraction and rewrite.
+			// Not cached: the emitters below need schema details the cached spec form drops.
+			Map<File, String> sources = new java.util.LinkedHashMap<>();
+			for (File jf : javaFiles)
+				sources.put(jf, Extractor.readFile(jf));
+			Prescan.Stats prescan = new Prescan.Stats();
+			OpenAPI fullApi = Extractor.merge(Extractor.extractSources(new ArrayList<>(sources.values()), jobs, prescan));
+			printPrescanStats(prescan);
+			OutputWriter out = new OutputWriter();
+			syncFiles(dir, outputDir, fullApi, sources, out, new HashMap<>());
+			System.out.println("Sync complete: " + out.summary() + ".");
 		} else {
 			System.err.println("Error: Unknown or incomplete command: " + command);
 			printHelp();
@@ -551,12 +605,433 @@ public @Generated class CddCli {
 	}
 
 	/**
-	 * Processes payload in memory.
+	 * Generates one project from a parsed spec, scaffolding included.
+	 *
+	 * @param subCommand
+	 *            One of to_sdk_cli, to_sdk or to_server.
+	 * @param api
+	 *            The parsed spec.
+	 * @param sink
+	 *            Receives the project's files.
+	 * @param where
+	 *            Where the project is written, for messages.
+	 * @param noGithubActions
+	 *            Whether to skip the CI workflow.
+	 * @param noInstallablePackage
+	 *            Whether to skip the pom.xml.
+	 * @param generateTests
+	 *            Whether to generate tests and mocks.
+	 * @param log
+	 *            Receives progress messages.
+	 * @throws Exception
+	 *             if generation or writing fails.
+	 */
+	private static void generateProject(String subCommand, OpenAPI api, FileSink sink, String where,
+			boolean noGithubActions, boolean noInstallablePackage, boolean generateTests, PrintStream log)
+			throws Exception {
+		if (!noInstallablePackage) {
+			generateScaffolding(sink);
+		}
+		if (!noGithubActions) {
+			generateGithubActions(sink);
+		}
+		generateFromSpec(subCommand, api, sink, where, generateTests, log);
+	}
+
+	/**
+	 * Generates code for one parsed spec.
+	 *
+	 * @param subCommand
+	 *            One of to_sdk_cli, to_sdk or to_server.
+	 * @param api
+	 *            The parsed spec.
+	 * @param sink
+	 *            Receives the generated files.
+	 * @param where
+	 *            Where the files are written, for messages.
+	 * @param generateTests
+	 *            Whether to generate tests and mocks.
+	 * @param log
+	 *            Receives progress messages.
+	 * @throws Exception
+	 *             if generation or writing fails.
+	 */
+	private static void generateFromSpec(String subCommand, OpenAPI api, FileSink sink, String where,
+			boolean generateTests, PrintStream log) throws Exception {
+		CddEngine.Target target;
+		try {
+			target = CddEngine.Target.of(subCommand);
+		} catch (IllegalArgumentException e) {
+			return;
+		}
+		// Scaffolding is written by the caller, once per output tree
+		CddEngine.Options options = new CddEngine.Options();
+		options.tests = generateTests;
+		options.githubActions = false;
+		options.installablePackage = false;
+		EngineHolder.engine.generate(api, target, options, sink);
+		if (target == CddEngine.Target.SDK_CLI) {
+			log.println("Generated SDK CLI in " + where);
+		} else if (target == CddEngine.Target.SDK) {
+			log.println("Generated SDK in " + where);
+		} else {
+			log.println("Generated Modular Server in " + where);
+		}
+		if (generateTests && target != CddEngine.Target.SERVER)
+			log.println("Generated Composable Tests & Mocks in " + where);
+	}
+
+	/**
+	 * Generates code for every spec in a directory, each into its own
+	 * subdirectory named after its {@code info.title}. Specs are parsed and
+	 * generated on up to {@code jobs} threads; the scaffolding is written once at
+	 * the top level, and a per-spec timing summary is printed at the end.
+	 *
+	 * @param subCommand
+	 *            One of to_sdk_cli, to_sdk or to_server.
+	 * @param specFiles
+	 *            The spec files, in a stable order.
+	 * @param resolvers
+	 *            Creates the reference resolver for each spec.
+	 * @param projects
+	 *            Maps a subdirectory name to the sink for it; the empty name is
+	 *            the top level.
+	 * @param where
+	 *            Where the top level is written, for messages.
+	 * @param noGithubActions
+	 *            Whether to skip the CI workflow.
+	 * @param noInstallablePackage
+	 *            Whether to skip the pom.xml.
+	 * @param generateTests
+	 *            Whether to generate tests and mocks.
+	 * @param jobs
+	 *            Number of specs processed at once.
+	 * @param log
+	 *            Receives progress messages and the summary.
+	 * @throws Exception
+	 *             if any spec fails, after the summary has been printed.
+	 */
+	private static void generateBatch(String subCommand, List<File> specFiles, Supplier<RefResolver> resolvers,
+			Function<String, FileSink> projects, String where, boolean noGithubActions, boolean noInstallablePackage,
+			boolean generateTests, int jobs, PrintStream log) throws Exception {
+		long start = System.nanoTime();
+		FileSink top = projects.apply("");
+		if (!noInstallablePackage) {
+			generateScaffolding(top);
+		}
+		if (!noGithubActions) {
+			generateGithubActions(top);
+		}
+		int n = specFiles.size();
+		OpenAPI[] apis = new OpenAPI[n];
+		String[] names = new String[n];
+		long[] nanos = new long[n];
+		Exception[] errors = new Exception[n];
+		ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(jobs, n)));
+		try {
+			List<Future<?>> parsed = new ArrayList<>();
+			for (int i = 0; i < n; i++) {
+				int idx = i;
+				parsed.add(pool.submit(() -> {
+					long t = System.nanoTime();
+					try {
+						apis[idx] = openapi.Parse.fromFile(specFiles.get(idx), resolvers.get());
+					} catch (Exception e) {
+						errors[idx] = e;
+					}
+					nanos[idx] += System.nanoTime() - t;
+				}));
+			}
+			for (Future<?> f : parsed)
+				f.get();
+			// Names are assigned in file order so that duplicate titles resolve the same way every run
+			Set<String> taken = new HashSet<>();
+			for (int i = 0; i < n; i++) {
+				String base = specFiles.get(i).getName().replaceAll("\\.(json|ya?ml)$", "");
+				String name = apis[i] != null ? CddEngine.specName(apis[i], base) : base;
+				String unique = name;
+				for (int k = 2; !taken.add(unique.toLowerCase()); k++)
+					unique = name + k;
+				names[i] = unique;
+			}
+			List<Future<?>> generated = new ArrayList<>();
+			for (int i = 0; i < n; i++) {
+				if (errors[i] != null)
+					continue;
+				int idx = i;
+				generated.add(pool.submit(() -> {
+					long t = System.nanoTime();
+					try {
+						generateFromSpec(subCommand, apis[idx], projects.apply(names[idx]),
+								where + File.separator + names[idx], generateTests, log);
+					} catch (Exception e) {
+						errors[idx] = e;
+					}
+					nanos[idx] += System.nanoTime() - t;
+				}));
+			}
+			for (Future<?> f : generated)
+				f.get();
+		} finally {
+			pool.shutdownNow();
+		}
+		log.println("Batch summary (" + n + " specs, " + jobs + " jobs):");
+		Exception failure = null;
+		for (int i = 0; i < n; i++) {
+			String status = errors[i] == null ? "" : "  FAILED: " + errors[i].getMessage();
+			log.println(String.format("  %-32s %7d ms  %s%s", names[i], nanos[i] / 1_000_000,
+					specFiles.get(i).getName(), status));
+			if (failure == null)
+				failure = errors[i];
+		}
+		log.println("Total: " + (System.nanoTime() - start) / 1_000_000 + " ms");
+		if (failure != null)
+			throw failure;
+	}
+
+	/**
+	 * Creates the sink for one generated project directory. SDK projects get
+	 * both Maven source roots up front, even when one stays empty.
+	 *
+	 * @param subCommand
+	 *            One of to_sdk_cli, to_sdk or to_server.
+	 * @param dir
+	 *            The project directory.
+	 * @param out
+	 *            Writes the files, skipping unchanged ones.
+	 * @return The sink.
+	 */
+	private static FileSink projectDirectory(String subCommand, File dir, OutputWriter out) {
+		dir.mkdirs();
+		if (subCommand.equals("to_sdk")) {
+			new File(dir, "src/main/java").mkdirs();
+			new File(dir, "src/test/java").mkdirs();
+		}
+		return directorySink(dir, out);
+	}
+
+	/**
+	 * Creates a sink that writes each generated file below a directory.
+	 *
+	 * @param outDir
+	 *            The project directory.
+	 * @param out
+	 *            Writes the files, skipping unchanged ones.
+	 * @return The sink.
+	 */
+	private static FileSink directorySink(File outDir, OutputWriter out) {
+		return (path, content) -> {
+			try {
+				out.write(new File(outDir, path), content);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		};
+	}
+
+	/**
+	 * Rewrites Java sources from the merged OpenAPI document. Targets whose
+	 * content would not change are left untouched.
+	 *
+	 * @param dir
+	 *            The input directory.
+	 * @param outputDir
+	 *            Output directory, or null to rewrite in place.
+	 * @param fullApi
+	 *            The merged OpenAPI document.
+	 * @param sources
+	 *            The Java files to rewrite, with their current content.
+	 * @param out
+	 *            Writes the rewritten files and counts skipped ones.
+	 * @param written
+	 *            Receives the content written to each target file.
+	 * @throws IOException
+	 *             if a file cannot be read or written.
+	 */
+	private static void syncFiles(File dir, String outputDir, OpenAPI fullApi, Map<File, String> sources,
+			OutputWriter out, Map<File, String> written) throws IOException {
+		for (Map.Entry<File, String> entry : sources.entrySet()) {
+			File jf = entry.getKey();
+			String source = entry.getValue();
+			String newSource = source;
+			String absPath = jf.getAbsolutePath().replace('\\', '/');
+			if (absPath.contains("/classes/")) {
+				newSource = classes.Emit.emit(fullApi, source);
+			} else if (absPath.contains("/orm/")) {
+				newSource = orm.Emit.emit(fullApi, source);
+			} else if (absPath.contains("/routes/")) {
+				newSource = routes.Emit.emit(fullApi, source);
+			} else if (absPath.contains("/mocks/")) {
+				newSource = mocks.Emit.emit(fullApi, source);
+			} else if (absPath.contains("/tests/")) {
+				newSource = tests.Emit.emit(fullApi, source);
+			} else if (absPath.contains("/functions/")) {
+			} else if (absPath.contains("/cli/")) {
+				newSource = cli.Emit.emitCli(fullApi);
+				newSource = functions.Emit.emit(fullApi, source);
+			}
+			File targetFile = jf;
+			if (outputDir != null) {
+				String relativePath = jf.getAbsolutePath().substring(dir.getAbsolutePath().length());
+				if (relativePath.startsWith(File.separator)) {
+					relativePath = relativePath.substring(1);
+				}
+				targetFile = new File(resolveFile(outputDir), relativePath);
+			}
+			// In place the current content is already in hand; an output copy is compared on disk
+			if (out.write(targetFile, newSource, outputDir == null ? source : null)) {
+				written.put(targetFile, newSource);
+				System.out.println("Updated: " + targetFile.getAbsolutePath());
+			}
+		}
+	}
+
+	/**
+	 * Reports how many scanned files the lexical pre-scan let extraction skip.
+	 *
+	 * @param stats
+	 *            The run's pre-scan counts.
+	 */
+	private static void printPrescanStats(Prescan.Stats stats) {
+		System.out.println("Pre-scan: " + stats.getHits() + " files extracted, " + stats.getMisses()
+				+ " skipped without parsing");
+	}
+
+	/**
+	 * Creates a watcher over the Java files below a directory.
+	 *
+	 * @param dir
+	 *            The input directory or file.
+	 * @param jobs
+	 *            Number of worker threads.
+	 * @param walker
+	 *            Finds the source files.
+	 * @return The watcher.
+	 * @throws IOException
+	 *             if the tree cannot be watched.
+	 */
+	private static Watcher newWatcher(File dir, int jobs, SourceWalker walker) throws IOException {
+		return new Watcher(dir, walker, jobs, 50);
+	}
+
+	/**
+	 * Re-emits the OpenAPI document whenever Java sources change, until
+	 * interrupted. The spec is only rewritten when its content changes.
+	 *
+	 * @param dir
+	 *            The input directory.
+	 * @param outputFile
+	 *            The spec path.
+	 * @param jobs
+	 *            Number of worker threads.
+	 * @param walker
+	 *            Finds the source files.
+	 * @throws Exception
+	 *             if extraction or writing fails.
+	 */
+	private static void watchToOpenApi(File dir, String outputFile, int jobs, SourceWalker walker) throws Exception {
+		try (Watcher watcher = newWatcher(dir, jobs, walker)) {
+			String lastSpec = null;
+			Set<File> changed = new HashSet<>();
+			while (true) {
+				String spec = openapi.Emit.toString(watcher.refresh(changed));
+				if (!spec.equals(lastSpec)) {
+					writeFile(resolveFile(outputFile), spec);
+					System.out.println("Emitted OpenAPI to " + outputFile);
+					lastSpec = spec;
+				}
+				System.out.flush();
+				changed = watcher.awaitChanges();
+			}
+		}
+	}
+
+	/**
+	 * Re-runs sync whenever Java sources change, until interrupted. Changes that
+	 * only consist of files this loop wrote itself refresh their fragments but do
+	 * not trigger another rewrite.
+	 *
+	 * @param dir
+	 *            The input directory.
+	 * @param outputDir
+	 *            Output directory, or null to rewrite in place.
+	 * @param jobs
+	 *            Number of worker threads.
+	 * @param walker
+	 *            Finds the source files.
+	 * @throws Exception
+	 *             if extraction or writing fails.
+	 */
+	private static void watchSync(File dir, String outputDir, int jobs, SourceWalker walker) throws Exception {
+		Map<File, String> written = new HashMap<>();
+		try (Watcher watcher = newWatcher(dir, jobs, walker)) {
+			Set<File> changed = new HashSet<>();
+			boolean external = true;
+			while (true) {
+				OpenAPI fullApi = watcher.refresh(changed);
+				if (external) {
+					List<File> javaFiles = walker.list(dir);
+					Map<File, String> sources = new java.util.LinkedHashMap<>();
+					for (File jf : javaFiles)
+						sources.put(jf, Extractor.readFile(jf));
+					OutputWriter out = new OutputWriter();
+					syncFiles(dir, outputDir, fullApi, sources, out, written);
+					System.out.println("Sync complete: " + out.summary() + ".");
+				}
+				System.out.flush();
+				changed = watcher.awaitChanges();
+				external = false;
+				for (File f : changed) {
+					String ours = written.remove(f);
+					if (ours == null || !f.isFile() || !ours.equals(Extractor.readFile(f)))
+						external = true;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Processes payload in memory and prints the result between
+	 * {@code CDD_IN_MEMORY_START} and {@code CDD_IN_MEMORY_END} markers, for
+	 * hosts such as the WASM wrapper that only see stdout.
 	 *
 	 * @param payload
 	 *            json payload
 	 */
 	public static void processInMemory(String payload) {
+		InMemoryResult result = generateInMemory(payload);
+		System.out.println("CDD_IN_MEMORY_START");
+		System.out.println(result.toJson().toString());
+		System.out.println("CDD_IN_MEMORY_END");
+	}
+
+	/**
+	 * Runs a command against in-memory files without touching the filesystem
+	 * or stdout, so calls can run concurrently.
+	 *
+	 * @param payload
+	 *            json payload: {@code command} arguments and input {@code files}
+	 * @return The generated files, or the error.
+	 */
+	public static InMemoryResult generateInMemory(String payload) {
+		return generateInMemory(payload, null, null);
+	}
+
+	/**
+	 * Runs a command against in-memory files, additionally handing each file to
+	 * a sink as soon as it is generated and reporting each finished emitter.
+	 *
+	 * @param payload
+	 *            json payload: {@code command} arguments, input {@code files}
+	 *            and optionally {@code "archive":"zip"} to get the output as
+	 *            one base64 zip instead of a map of sources
+	 * @param sink
+	 *            Receives each generated file as it is produced, or null.
+	 * @param progress
+	 *            Receives each finished {@code to_server} emitter, or null.
+	 * @return The generated files, or the error.
+	 */
+	public static InMemoryResult generateInMemory(String payload, FileSink sink, Progress progress) {
 		try {
 			JSONObject req = new JSONObject(payload);
 			JSONArray cmdArr = req.getJSONArray("command");
@@ -565,7 +1040,23 @@ public @Generated class CddCli {
 				cmdArgs[i] = cmdArr.getString(i);
 			}
 			JSONObject inFiles = req.has("files") ? req.getJSONObject("files") : new JSONObject();
-			JSONObject outFiles = new JSONObject();
+			String archive = req.optString("archive", null);
+			if (archive != null && !archive.equals("zip"))
+				throw new Exception("Unsupported archive format: " + archive);
+			Map<String, String> outFiles = new java.util.LinkedHashMap<>();
+			ByteArrayOutputStream zipped = new ByteArrayOutputStream();
+			ZipSink zip = archive != null ? new ZipSink(zipped) : null;
+			FileSink into = (path, content) -> {
+				// Lets a cancelled JSON-RPC request stop between files
+				if (Thread.currentThread().isInterrupted())
+					throw new java.util.concurrent.CancellationException("Generation cancelled");
+				if (zip != null)
+					zip.write(path, content);
+				else
+					outFiles.put(path, content);
+				if (sink != null)
+					sink.write(path, content);
+			};
 			String command = cmdArgs[0];
 			if (command.equals("from_openapi")) {
 				String subCommand = "to_sdk";
@@ -577,92 +1068,39 @@ public @Generated class CddCli {
 						null);
 				boolean generateTests = hasFlag(cmdArgs, "--tests", "--tests", null);
 				String specContent = inFiles.optString("spec.json", null);
-				OpenAPI api = openapi.Parse.fromString(specContent);
-				if (!noInstallablePackage) {
-					outFiles.put("pom.xml", getScaffoldingPom());
-				}
-				if (!noGithubActions) {
-					outFiles.put(".github/workflows/ci.yml", getGithubActionsCi());
-				}
-				if (subCommand.equals("to_sdk_cli")) {
-					outFiles.put("SdkCli.java", cli.Emit.emitCli(api));
-					if (generateTests) {
-						outFiles.put("SdkCliIntegrationTest.java", tests.Emit.emit(api, null));
-						outFiles.put("SdkCliMockServer.java", mocks.Emit.emit(api, null));
-					}
-				} else if (subCommand.equals("to_sdk")) {
-					outFiles.put("src/main/java/Sdk.java", classes.Emit.emit(api, null));
-					if (generateTests) {
-						String title3 = (api.info != null && api.info.title != null)
-								? api.info.title.replaceAll("[^a-zA-Z0-9]", "")
-								: "Api";
-						if (title3.isEmpty())
-							title3 = "Api";
-						outFiles.put("src/test/java/" + title3 + "IntegrationTest.java", tests.Emit.emit(api, null));
-						String title4 = (api.info != null && api.info.title != null)
-								? api.info.title.replaceAll("[^a-zA-Z0-9]", "")
-								: "Api";
-						if (title4.isEmpty())
-							title4 = "Api";
-						outFiles.put("src/test/java/" + title4 + "MockServer.java", mocks.Emit.emit(api, null));
-					}
-				} else if (subCommand.equals("to_server")) {
-					for (java.util.Map.Entry<String, String> e : classes.Emit.emitModular(api).entrySet()) {
-						outFiles.put(e.getKey(), e.getValue());
-					}
-					for (java.util.Map.Entry<String, String> e : orm.Emit.emitModular(api).entrySet()) {
-						outFiles.put(e.getKey(), e.getValue());
-					}
-					for (java.util.Map.Entry<String, String> e : dao.Emit.emitModular(api).entrySet()) {
-						outFiles.put(e.getKey(), e.getValue());
-					}
-					for (java.util.Map.Entry<String, String> e : serverroutes.Emit.emitModular(api).entrySet()) {
-						outFiles.put(e.getKey(), e.getValue());
-					}
-					for (java.util.Map.Entry<String, String> e : seeder.Emit.emitModular(api).entrySet()) {
-						outFiles.put(e.getKey(), e.getValue());
-					}
-					for (java.util.Map.Entry<String, String> e : servermain.Emit.emitModular(api).entrySet()) {
-						outFiles.put(e.getKey(), e.getValue());
-					}
-					for (java.util.Map.Entry<String, String> e : servertests.Emit.emitModular(api).entrySet()) {
-						outFiles.put(e.getKey(), e.getValue());
-					}
-					for (java.util.Map.Entry<String, String> e : mocks.Emit.emitModular(api).entrySet()) {
-						outFiles.put(e.getKey(), e.getValue());
-					}
-				}
+				OpenAPI api = EngineHolder.engine.parse(specContent, new File(".").toURI().toString());
+				CddEngine.Options options = new CddEngine.Options();
+				options.tests = generateTests;
+				options.githubActions = !noGithubActions;
+				options.installablePackage = !noInstallablePackage;
+				// Concurrent calls already share the cores; one call keeps its file order
+				options.jobs = 1;
+				options.progress = progress;
+				EngineHolder.engine.generate(api, CddEngine.Target.of(subCommand), options, into);
 			} else if (command.equals("to_openapi")) {
-				OpenAPI api = extractOpenAPI(new File("."));
+				OpenAPI api = extractOpenAPI(new File("."), 1, getCache(cmdArgs), getWalker(cmdArgs), null);
 				String spec = openapi.Emit.toString(api);
-				outFiles.put("spec.json", spec);
+				into.write("spec.json", spec);
 			} else if (command.equals("sync")) {
-				OpenAPI api = extractOpenAPI(new File("."));
+				OpenAPI api = extractOpenAPI(new File("."), 1, getCache(cmdArgs), getWalker(cmdArgs), null);
 				String spec = openapi.Emit.toString(api);
-				outFiles.put("spec.json", spec);
+				into.write("spec.json", spec);
 			} else if (command.equals("to_docs_json")) {
 				boolean noImports = hasFlag(cmdArgs, "--no-imports", "--no-imports", null);
 				boolean noWrapping = hasFlag(cmdArgs, "--no-wrapping", "--no-wrapping", null);
 				String specContent = inFiles.optString("spec.json", null);
-				OpenAPI api = openapi.Parse.fromString(specContent);
-				String docsJson = docstrings.Emit.emitDocsJson(api, noImports, noWrapping);
-				outFiles.put("docs.json", docsJson);
+				OpenAPI api = EngineHolder.engine.parse(specContent, new File(".").toURI().toString());
+				into.write("docs.json", EngineHolder.engine.docsJson(api, noImports, noWrapping));
 			} else {
 				throw new Exception("Unsupported in-memory command: " + command);
 			}
-			JSONObject result = new JSONObject();
-			result.put("success", true);
-			result.put("files", outFiles);
-			System.out.println("CDD_IN_MEMORY_START");
-			System.out.println(result.toString());
-			System.out.println("CDD_IN_MEMORY_END");
+			if (zip != null) {
+				zip.close();
+				return InMemoryResult.archived(zipped.toByteArray());
+			}
+			return InMemoryResult.of(outFiles);
 		} catch (Exception e) {
-			JSONObject err = new JSONObject();
-			err.put("success", false);
-			err.put("error", e.getMessage() != null ? e.getMessage() : e.toString());
-			System.out.println("CDD_IN_MEMORY_START");
-			System.out.println(err.toString());
-			System.out.println("CDD_IN_MEMORY_END");
+			return InMemoryResult.failure(e);
 		}
 	}
 
@@ -670,178 +1108,471 @@ public @Generated class CddCli {
 	 * writeFile doc
 	 */
 	private static void writeFile(File file, String content) throws IOException {
-		if (file.getParentFile() != null)
-			file.getParentFile().mkdirs();
-		try (FileOutputStream fos = new FileOutputStream(file)) {
-			fos.write(content.getBytes("UTF-8"));
+		new OutputWriter().write(file, content);
+	}
+
+	/**
+	 * generateScaffolding doc
+	 */
+	private static void generateScaffolding(FileSink sink) {
+		sink.write("pom.xml", CddEngine.scaffoldingPom());
+	}
+
+	/**
+	 * generateGithubActions doc
+	 */
+	private static void generateGithubActions(FileSink sink) {
+		sink.write(".github/workflows/ci.yml", CddEngine.githubActionsCi());
+	}
+
+	/**
+	 * Serves JSON-RPC over stdin and stdout, one message per line, until stdin
+	 * closes or a {@code shutdown} request arrives. Requests run concurrently,
+	 * so a slow generation does not hold up later requests, and responses are
+	 * written by a single thread so lines never interleave.
+	 * {@code $/cancelRequest} and {@code notifications/cancelled} interrupt the
+	 * in-flight request with the given id and drop its response. A request
+	 * reusing the id of one still in flight is rejected.
+	 *
+	 * @throws Exception
+	 *             if stdin cannot be read.
+	 */
+	private static void startStdioJsonRpcServer() throws Exception {
+		BufferedReader reader = new BufferedReader(new InputStreamReader(System.in, "UTF-8"));
+		// Responses always go to the stdout the server started with
+		java.io.PrintStream stdout = System.out;
+		ExecutorService writer = Executors.newSingleThreadExecutor();
+		ExecutorService workers = Executors.newCachedThreadPool();
+		Map<String, Future<?>> inFlight = new java.util.concurrent.ConcurrentHashMap<>();
+		Consumer<String> send = response -> writer.execute(() -> {
+			stdout.println(response);
+			stdout.flush();
+		});
+		notifier = send;
+		// Negotiated by initialize; before that, tool results keep the older text form
+		String protocolVersion = null;
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				line = line.trim();
+				if (line.isEmpty())
+					continue;
+				JSONObject req;
+				try {
+					req = new JSONObject(line);
+				} catch (Exception e) {
+					req = new JSONObject();
+				}
+				String method = req.optString("method", "");
+				if ("initialize".equals(method)) {
+					JSONObject params = req.optJSONObject("params");
+					protocolVersion = negotiate(params == null ? null : params.optString("protocolVersion", null));
+				}
+				if ("$/cancelRequest".equals(method) || "notifications/cancelled".equals(method)
+						|| "cancelled".equals(method)) {
+					JSONObject params = req.optJSONObject("params");
+					Object target = params == null
+							? null
+							: params.has("requestId") ? params.get("requestId") : params.opt("id");
+					Future<?> task = target == null ? null : inFlight.remove(JSONObject.valueToString(target));
+					if (task != null) {
+						task.cancel(true);
+						// LSP expects an answer to the cancelled request; MCP expects none
+						if ("$/cancelRequest".equals(method))
+							send.accept("{\"jsonrpc\":\"2.0\",\"error\":{\"code\":-32800,\"message\":\"Request cancelled\"},\"id\":"
+									+ JSONObject.valueToString(target) + "}");
+					}
+					continue;
+				}
+				if ("shutdown".equals(method)) {
+					// Let in-flight work finish so its responses precede ours
+					drain(workers);
+					String response = handleJsonRpc(line, null, protocolVersion);
+					if (response != null)
+						send.accept(response);
+					break;
+				}
+				String request = line;
+				String version = protocolVersion;
+				Object id = req.has("id") && !req.isNull("id") ? req.get("id") : null;
+				if (id == null) {
+					workers.execute(() -> {
+						String response = handleJsonRpc(request, null, version);
+						if (response != null)
+							send.accept(response);
+					});
+					continue;
+				}
+				// Keyed by the id's JSON text, so 1 and "1" stay distinct
+				String key = JSONObject.valueToString(id);
+				// Registered before it can run, so a fast task always finds its own entry
+				java.util.concurrent.FutureTask<Void> task = new java.util.concurrent.FutureTask<>(() -> {
+					String response = handleJsonRpc(request, null, version);
+					// A cancelled request has already been removed; its response is dropped
+					if (inFlight.remove(key) != null && response != null)
+						send.accept(response);
+					return null;
+				});
+				if (inFlight.putIfAbsent(key, task) != null) {
+					send.accept("{\"jsonrpc\":\"2.0\",\"error\":{\"code\":-32600,\"message\":\"Duplicate request id\"},\"id\":"
+							+ key + "}");
+					continue;
+				}
+				workers.execute(task);
+			}
+		} finally {
+			// Requests still queued read the notifier when they start
+			drain(workers);
+			notifier = null;
+			AstHolder.astResource.unwatch();
+			drain(writer);
 		}
 	}
 
 	/**
-	 * readFile doc
+	 * Runs the {@code cdd_generate} tool. Sends {@code notifications/progress}
+	 * after each {@code to_server} emitter when the client supplied a progress
+	 * token, and delivers files according to the {@code delivery} argument:
+	 * {@code inline} (default) returns them in the result, {@code chunks}
+	 * pushes each one as a {@code notifications/cdd/file} message as soon as it
+	 * is generated, and {@code resources} returns
+	 * {@code cdd://files/<callId>/<path>} links to be fetched with
+	 * {@code resources/read}. Notifications need the
+	 * stdio transport; without it, chunks fall back to inline delivery.
+	 * Clients speaking {@link #PROTOCOL_VERSION} or later get the result as
+	 * {@code structuredContent}; older ones get it as JSON text.
+	 *
+	 * @param args
+	 *            The tool arguments.
+	 * @param progressToken
+	 *            The client's progress token, or null.
+	 * @param protocolVersion
+	 *            The MCP protocol version of the request, or null if unknown.
+	 * @return The tool result.
 	 */
-	private static String readFile(File file) throws IOException {
-		try (FileInputStream fis = new FileInputStream(file)) {
-			byte[] data = new byte[(int) file.length()];
-			fis.read(data);
-			return new String(data, "UTF-8");
+	private static JSONObject callGenerate(JSONObject args, Object progressToken, String protocolVersion) {
+		Consumer<String> notify = notifier;
+		String delivery = args.optString("delivery", "inline");
+		if ("chunks".equals(delivery) && notify == null)
+			delivery = "inline";
+		Progress progress = null;
+		if (progressToken != null && notify != null) {
+			progress = (step, done, total) -> {
+				JSONObject p = new JSONObject();
+				p.put("progressToken", progressToken);
+				p.put("progress", done);
+				p.put("total", total);
+				p.put("message", step);
+				notify.accept("{\"jsonrpc\":\"2.0\",\"method\":\"notifications/progress\",\"params\":" + p + "}");
+			};
 		}
+		FileSink sink = null;
+		String filesUri = null;
+		if ("chunks".equals(delivery)) {
+			sink = (path, content) -> {
+				JSONObject p = new JSONObject();
+				if (progressToken != null)
+					p.put("progressToken", progressToken);
+				p.put("path", path);
+				p.put("content", content);
+				notify.accept("{\"jsonrpc\":\"2.0\",\"method\":\"notifications/cdd/file\",\"params\":" + p + "}");
+			};
+		} else if ("resources".equals(delivery)) {
+			// Each call gets its own namespace, so concurrent calls writing the same path stay apart
+			String callId = java.util.UUID.randomUUID().toString();
+			Map<String, String> files = new java.util.concurrent.ConcurrentHashMap<>();
+			synchronized (generatedFiles) {
+				generatedFiles.put(callId, files);
+			}
+			filesUri = "cdd://files/" + callId + "/";
+			sink = files::put;
+		}
+		InMemoryResult generated = generateInMemory(args.toString(), sink, progress);
+		boolean structuredResults = protocolVersion != null && protocolVersion.compareTo(PROTOCOL_VERSION) >= 0;
+		JSONArray contentArr = new JSONArray();
+		JSONObject content = new JSONObject();
+		content.put("type", "text");
+		contentArr.put(content);
+		JSONObject structured = generated.toJson();
+		if (generated.success && !"inline".equals(delivery)) {
+			// The files already went out another way; only say where
+			structured.remove("files");
+			if ("chunks".equals(delivery)) {
+				structured.put("paths", new JSONArray(generated.files.keySet()));
+			} else {
+				JSONObject uris = new JSONObject();
+				for (String path : generated.files.keySet()) {
+					if (structuredResults) {
+						JSONObject link = new JSONObject();
+						link.put("type", "resource_link");
+						link.put("uri", filesUri + path);
+						link.put("name", path);
+						contentArr.put(link);
+					}
+					uris.put(path, filesUri + path);
+				}
+				structured.put("resources", uris);
+			}
+		}
+		JSONObject resultObj = new JSONObject();
+		resultObj.put("content", contentArr);
+		if (structuredResults) {
+			// The files travel once, as structured JSON, rather than quoted inside the text
+			content.put("text", !generated.success ? generated.error
+					: generated.archive != null ? "Generated a " + generated.archive.length + "-byte zip archive."
+							: "Generated " + generated.files.size() + " files.");
+			resultObj.put("structuredContent", structured);
+		} else {
+			content.put("text", structured.toString());
+		}
+		if (!generated.success)
+			resultObj.put("isError", true);
+		return resultObj;
 	}
 
 	/**
-	 * getScaffoldingPom doc
+	 * Looks up a file kept from a {@code "delivery":"resources"} call.
+	 *
+	 * @param uri
+	 *            The {@code cdd://files/<callId>/<path>} URI.
+	 * @return The content, or null if the call or path is unknown or the call's
+	 *         files have been evicted.
 	 */
-	private static String getScaffoldingPom() {
-		return "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" + "<project xmlns=\"http://maven.apache.org/POM/4.0.0\" "
-				+ "xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\" "
-				+ "xsi:schemaLocation=\"http://maven.apache.org/POM/4.0.0 "
-				+ "http://maven.apache.org/xsd/maven-4.0.0.xsd\">\n" + "    <modelVersion>4.0.0</modelVersion>\n"
-				+ "    <groupId>com.example</groupId>\n" + "    <artifactId>generated-sdk</artifactId>\n"
-				+ "    <version>0.0.3</version>\n" + "    <properties>\n"
-				+ "        <maven.compiler.source>11</maven.compiler.source>\n"
-				+ "        <maven.compiler.target>11</maven.compiler.target>\n" + "    </properties>\n"
-				+ "    <dependencies>\n" + "        <dependency>\n" + "            <groupId>io.javalin</groupId>\n"
-				+ "            <artifactId>javalin</artifactId>\n" + "            <version>5.6.3</version>\n"
-				+ "        </dependency>\n" + "        <dependency>\n"
-				+ "            <groupId>org.hibernate.orm</groupId>\n"
-				+ "            <artifactId>hibernate-core</artifactId>\n"
-				+ "            <version>6.4.4.Final</version>\n" + "        </dependency>\n" + "        <dependency>\n"
-				+ "            <groupId>org.postgresql</groupId>\n"
-				+ "            <artifactId>postgresql</artifactId>\n" + "            <version>42.7.2</version>\n"
-				+ "        </dependency>\n" + "        <dependency>\n"
-				+ "            <groupId>com.fasterxml.jackson.core</groupId>\n"
-				+ "            <artifactId>jackson-databind</artifactId>\n" + "            <version>2.15.2</version>\n"
-				+ "        </dependency>\n" + "        <dependency>\n"
-				+ "            <groupId>net.datafaker</groupId>\n" + "            <artifactId>datafaker</artifactId>\n"
-				+ "            <version>2.0.2</version>\n" + "        </dependency>\n" + "        <dependency>\n"
-				+ "            <groupId>junit</groupId>\n" + "            <artifactId>junit</artifactId>\n"
-				+ "            <version>4.13.2</version>\n" + "            <scope>test</scope>\n"
-				+ "        </dependency>\n" + "    </dependencies>\n" + "</project>";
+	private static String generatedFile(String uri) {
+		String rest = uri.substring("cdd://files/".length());
+		int slash = rest.indexOf('/');
+		if (slash < 0)
+			return null;
+		synchronized (generatedFiles) {
+			Map<String, String> files = generatedFiles.get(rest.substring(0, slash));
+			return files == null ? null : files.get(rest.substring(slash + 1));
+		}
 	}
 
 	/**
-	 * generateScaffolding doc
+	 * Dispatches a JSON-RPC batch, running its elements concurrently and
+	 * collecting their responses, in request order, into one array.
+	 *
+	 * @param line
+	 *            The batch text.
+	 * @param shutdown
+	 *            Run when a {@code shutdown} request is received, may be null.
+	 * @param protocolVersion
+	 *            The negotiated MCP protocol version, or null if unknown.
+	 * @return The array of responses, or null if the batch held only
+	 *         notifications.
 	 */
-	private static void generateScaffolding(File dir) throws IOException {
-		writeFile(new File(dir, "pom.xml"), getScaffoldingPom());
+	private static String handleJsonRpcBatch(String line, Runnable shutdown, String protocolVersion) {
+		JSONArray batch;
+		try {
+			batch = new JSONArray(line);
+		} catch (Exception e) {
+			return "{\"jsonrpc\":\"2.0\",\"error\":{\"code\":-32700,\"message\":\"Parse error\"},\"id\":null}";
+		}
+		if (batch.length() == 0)
+			return "{\"jsonrpc\":\"2.0\",\"error\":{\"code\":-32600,\"message\":\"Invalid Request\"},\"id\":null}";
+		ExecutorService pool = Executors.newCachedThreadPool();
+		List<Future<String>> pending = new ArrayList<>();
+		try {
+			for (int i = 0; i < batch.length(); i++) {
+				Object element = batch.get(i);
+				if (!(element instanceof JSONObject)) {
+					pending.add(java.util.concurrent.CompletableFuture.completedFuture(
+							"{\"jsonrpc\":\"2.0\",\"error\":{\"code\":-32600,\"message\":\"Invalid Request\"},\"id\":null}"));
+					continue;
+				}
+				String request = element.toString();
+				pending.add(pool.submit(() -> handleJsonRpc(request, shutdown, protocolVersion)));
+			}
+			List<String> responses = new ArrayList<>();
+			for (Future<String> f : pending) {
+				String response = f.get();
+				// Notifications get no entry in the reply
+				if (response != null)
+					responses.add(response);
+			}
+			return responses.isEmpty() ? null : "[" + String.join(",", responses) + "]";
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return null;
+		} catch (ExecutionException e) {
+			return "{\"jsonrpc\":\"2.0\",\"error\":{\"code\":-32603,\"message\":\"Internal error\"},\"id\":null}";
+		} finally {
+			pool.shutdownNow();
+		}
 	}
 
 	/**
-	 * getGithubActionsCi doc
+	 * Picks the MCP protocol version to speak: the client's, if served, or else
+	 * the newest one served.
+	 *
+	 * @param requested
+	 *            The version the client asked for, or null.
+	 * @return The version.
 	 */
-	private static String getGithubActionsCi() {
-		return "name: CI\non: [push, pull_request]\njobs:\n  build:\n    runs-on: ubuntu-latest\n    steps:\n    - uses: actions/checkout@v6\n    - name: Set up JDK\n      uses: actions/setup-java@v3\n      with:\n        java-version: '11'\n        distribution: 'temurin'\n    - name: Build with Maven\n      run: mvn clean install\n";
+	static String negotiate(String requested) {
+		return requested != null && PROTOCOL_VERSIONS.contains(requested) ? requested : PROTOCOL_VERSION;
 	}
 
 	/**
-	 * generateGithubActions doc
+	 * Stops accepting tasks and waits for the submitted ones to finish.
+	 *
+	 * @param pool
+	 *            The pool.
+	 * @throws InterruptedException
+	 *             if the wait is interrupted.
 	 */
-	private static void generateGithubActions(File dir) throws IOException {
-		File ghDir = new File(dir, ".github/workflows");
-		ghDir.mkdirs();
-		writeFile(new File(ghDir, "ci.yml"), getGithubActionsCi());
+	private static void drain(ExecutorService pool) throws InterruptedException {
+		pool.shutdown();
+		pool.awaitTermination(Long.MAX_VALUE, java.util.concurrent.TimeUnit.MILLISECONDS);
 	}
 
 	/**
-	 * startStdioJsonRpcServer doc
+	 * Serves JSON-RPC over HTTP until a {@code shutdown} request arrives.
+	 *
+	 * @param listen
+	 *            The address to bind.
+	 * @param port
+	 *            The port to bind; 0 picks a free one.
+	 * @throws Exception
+	 *             if the port cannot be bound.
 	 */
-	private static void startStdioJsonRpcServer() throws Exception {
-		BufferedReader reader = new BufferedReader(new InputStreamReader(System.in, "UTF-8"));
-		String line;
-		while ((line = reader.readLine()) != null) {
-			line = line.trim();
-			if (line.isEmpty())
-				continue;
-			String response;
-			try {
-				JSONObject req = new JSONObject(line);
-				Object idObj = req.has("id") && !req.isNull("id") ? req.get("id") : null;
-				String idStr = idObj != null ? idObj.toString() : "null";
-				if (req.has("jsonrpc") && "2.0".equals(req.getString("jsonrpc"))) {
-					String method = req.has("method") ? req.getString("method") : "";
-					if ("initialize".equals(method)) {
-						response = "{\"jsonrpc\":\"2.0\",\"result\":{\"protocolVersion\":\"2024-11-05\",\"capabilities\":{\"tools\":{},\"resources\":{}},\"serverInfo\":{\"name\":\"cdd-java\",\"version\":\"0.0.3\"}},\"id\":"
+	private static void startHttpJsonRpcServer(String listen, int port) throws Exception {
+		try (JsonRpcHttpServer server = new JsonRpcHttpServer(listen, port, CddCli::handleJsonRpc)) {
+			System.out.println("JSON-RPC server listening on http://" + listen + ":" + server.getPort() + "/");
+			System.out.flush();
+			server.awaitShutdown();
+		}
+	}
+
+	/**
+	 * Dispatches one JSON-RPC message. Shared by the stdio and HTTP transports.
+	 *
+	 * @param line
+	 *            The request text.
+	 * @param shutdown
+	 *            Run when a {@code shutdown} request is received, may be null.
+	 * @param protocolVersion
+	 *            The negotiated MCP protocol version, or null if unknown.
+	 * @return The response text, or null if the message was a notification.
+	 */
+	static String handleJsonRpc(String line, Runnable shutdown, String protocolVersion) {
+		if (line.startsWith("["))
+			return handleJsonRpcBatch(line, shutdown, protocolVersion);
+		String response;
+		try {
+			JSONObject req = new JSONObject(line);
+			Object idObj = req.has("id") && !req.isNull("id") ? req.get("id") : null;
+			String idStr = JSONObject.valueToString(idObj);
+			if (req.has("jsonrpc") && "2.0".equals(req.getString("jsonrpc"))) {
+				String method = req.has("method") ? req.getString("method") : "";
+				if ("initialize".equals(method)) {
+					JSONObject params = req.optJSONObject("params");
+					String version = negotiate(params == null ? null : params.optString("protocolVersion", null));
+					response = "{\"jsonrpc\":\"2.0\",\"result\":{\"protocolVersion\":\"" + version + "\",\"capabilities\":{\"tools\":{},\"resources\":{\"subscribe\":"
+							// Only the stdio transport can push notifications
+							+ (notifier != null) + "}},\"serverInfo\":{\"name\":\"cdd-java\",\"version\":\"" + VERSION
+							+ "\"}},\"id\":" + idStr + "}";
+				} else if ("notifications/initialized".equals(method) || "initialized".equals(method)) {
+					return null;
+				} else if ("shutdown".equals(method)) {
+					if (shutdown != null)
+						shutdown.run();
+					response = "{\"jsonrpc\":\"2.0\",\"result\":null,\"id\":" + idStr + "}";
+				} else if ("ping".equals(method)) {
+					response = "{\"jsonrpc\":\"2.0\",\"result\":{},\"id\":" + idStr + "}";
+				} else if ("$/cancelRequest".equals(method) || "cancelled".equals(method)) {
+					return null;
+				} else if ("tools/list".equals(method)) {
+					response = "{\"jsonrpc\":\"2.0\",\"result\":{\"tools\":[{\"name\":\"cdd_generate\",\"description\":\"Generate code from OpenAPI or sync code\",\"inputSchema\":{\"type\":\"object\",\"properties\":{\"command\":{\"type\":\"array\",\"items\":{\"type\":\"string\"}},\"files\":{\"type\":\"object\"},\"delivery\":{\"type\":\"string\",\"enum\":[\"inline\",\"chunks\",\"resources\"]},\"archive\":{\"type\":\"string\",\"enum\":[\"zip\"]}},\"required\":[\"command\"]}}]},\"id\":"
+							+ idStr + "}";
+				} else if ("resources/list".equals(method)) {
+					response = "{\"jsonrpc\":\"2.0\",\"result\":{\"resources\":[{\"uri\":\"cdd://ast/openapi\",\"name\":\"OpenAPI AST\",\"mimeType\":\"application/json\"}]},\"id\":"
+							+ idStr + "}";
+				} else if ("resources/read".equals(method)) {
+					JSONObject params = req.has("params") ? req.getJSONObject("params") : new JSONObject();
+					String uri = params.has("uri") ? params.getString("uri") : "";
+					String generatedFile = uri.startsWith("cdd://files/") ? generatedFile(uri) : null;
+					if (generatedFile != null) {
+						response = "{\"jsonrpc\":\"2.0\",\"result\":{\"contents\":[{\"uri\":" + JSONObject.quote(uri)
+								+ ",\"mimeType\":\"text/plain\",\"text\":" + JSONObject.quote(generatedFile) + "}]},\"id\":"
 								+ idStr + "}";
-					} else if ("notifications/initialized".equals(method) || "initialized".equals(method)) {
-						continue;
-					} else if ("ping".equals(method)) {
-						response = "{\"jsonrpc\":\"2.0\",\"result\":{},\"id\":" + idStr + "}";
-					} else if ("$/cancelRequest".equals(method) || "cancelled".equals(method)) {
-						continue;
-					} else if ("tools/list".equals(method)) {
-						response = "{\"jsonrpc\":\"2.0\",\"result\":{\"tools\":[{\"name\":\"cdd_generate\",\"description\":\"Generate code from OpenAPI or sync code\",\"inputSchema\":{\"type\":\"object\",\"properties\":{\"command\":{\"type\":\"array\",\"items\":{\"type\":\"string\"}},\"files\":{\"type\":\"object\"}},\"required\":[\"command\"]}}]},\"id\":"
+					} else if ("cdd://ast/openapi".equals(uri)) {
+						String astText = "{}";
+						try {
+							astText = AstHolder.astResource.read();
+						} catch (Exception e) {
+							astText = "{}";
+						}
+						response = "{\"jsonrpc\":\"2.0\",\"result\":{\"contents\":[{\"uri\":\"cdd://ast/openapi\",\"mimeType\":\"application/json\",\"text\":"
+								+ JSONObject.quote(astText) + "}]},\"id\":" + idStr + "}";
+					} else {
+						response = "{\"jsonrpc\":\"2.0\",\"error\":{\"code\":-32602,\"message\":\"Resource not found\"},\"id\":"
 								+ idStr + "}";
-					} else if ("resources/list".equals(method)) {
-						response = "{\"jsonrpc\":\"2.0\",\"result\":{\"resources\":[{\"uri\":\"cdd://ast/openapi\",\"name\":\"OpenAPI AST\",\"mimeType\":\"application/json\"}]},\"id\":"
+					}
+				} else if ("resources/subscribe".equals(method) || "resources/unsubscribe".equals(method)) {
+					JSONObject params = req.has("params") ? req.getJSONObject("params") : new JSONObject();
+					String uri = params.has("uri") ? params.getString("uri") : "";
+					Consumer<String> notify = notifier;
+					if (notify == null) {
+						// Only the stdio transport can push notifications
+						response = "{\"jsonrpc\":\"2.0\",\"error\":{\"code\":-32601,\"message\":\"Subscriptions need the stdio transport\"},\"id\":"
 								+ idStr + "}";
-					} else if ("resources/read".equals(method)) {
-						JSONObject params = req.has("params") ? req.getJSONObject("params") : new JSONObject();
-						String uri = params.has("uri") ? params.getString("uri") : "";
-						if ("cdd://ast/openapi".equals(uri)) {
-							String astText = "{}";
-							try {
-								OpenAPI api = extractOpenAPI(new File("."));
-								astText = openapi.Emit.toString(api);
-							} catch (Exception e) {
-								astText = "{}";
-							}
-							response = "{\"jsonrpc\":\"2.0\",\"result\":{\"contents\":[{\"uri\":\"cdd://ast/openapi\",\"mimeType\":\"application/json\",\"text\":"
-									+ JSONObject.quote(astText) + "}]},\"id\":" + idStr + "}";
-						} else {
-							response = "{\"jsonrpc\":\"2.0\",\"error\":{\"code\":-32602,\"message\":\"Resource not found\"},\"id\":"
-									+ idStr + "}";
+					} else if ("cdd://ast/openapi".equals(uri)) {
+						try {
+							if ("resources/unsubscribe".equals(method))
+								AstHolder.astResource.unwatch();
+							else
+								AstHolder.astResource.watch(() -> notify.accept(
+										"{\"jsonrpc\":\"2.0\",\"method\":\"notifications/resources/updated\",\"params\":{\"uri\":\"cdd://ast/openapi\"}}"));
+							response = "{\"jsonrpc\":\"2.0\",\"result\":{},\"id\":" + idStr + "}";
+						} catch (IOException e) {
+							response = "{\"jsonrpc\":\"2.0\",\"error\":{\"code\":-32603,\"message\":"
+									+ JSONObject.quote("Internal error: " + e.getMessage()) + "},\"id\":" + idStr + "}";
 						}
-					} else if ("tools/call".equals(method)) {
-						JSONObject params = req.has("params") ? req.getJSONObject("params") : new JSONObject();
-						String toolName = params.has("name") ? params.getString("name") : "";
-						if ("cdd_generate".equals(toolName)) {
-							JSONObject args = params.has("arguments")
-									? params.getJSONObject("arguments")
-									: new JSONObject();
-							java.io.ByteArrayOutputStream baos = new java.io.ByteArrayOutputStream();
-							java.io.PrintStream ps = new java.io.PrintStream(baos);
-							java.io.PrintStream oldOut = System.out;
-							System.setOut(ps);
-							try {
-								processInMemory(args.toString());
-							} finally {
-								System.setOut(oldOut);
-							}
-							String output = baos.toString("UTF-8");
-							JSONObject content = new JSONObject();
-							content.put("type", "text");
-							content.put("text", output);
-							JSONArray contentArr = new JSONArray();
-							contentArr.put(content);
-							JSONObject resultObj = new JSONObject();
-							resultObj.put("content", contentArr);
-							response = "{\"jsonrpc\":\"2.0\",\"result\":" + resultObj.toString() + ",\"id\":" + idStr
-									+ "}";
-						} else {
-							response = "{\"jsonrpc\":\"2.0\",\"error\":{\"code\":-32601,\"message\":\"Tool not found\"},\"id\":"
-									+ idStr + "}";
-						}
-					} else if ("version".equals(method)) {
-						response = "{\"jsonrpc\":\"2.0\",\"result\":\"0.0.3\",\"id\":" + idStr + "}";
-					} else if ("notifications/progress".equals(method) || "progress".equals(method)) {
-						continue;
 					} else {
-						if (idObj == null)
-							continue;
-						response = "{\"jsonrpc\":\"2.0\",\"error\":{\"code\":-32601,\"message\":\"Method not found\"},\"id\":"
+						response = "{\"jsonrpc\":\"2.0\",\"error\":{\"code\":-32602,\"message\":\"Resource not found\"},\"id\":"
 								+ idStr + "}";
 					}
+				} else if ("tools/call".equals(method)) {
+					JSONObject params = req.has("params") ? req.getJSONObject("params") : new JSONObject();
+					String toolName = params.has("name") ? params.getString("name") : "";
+					if ("cdd_generate".equals(toolName)) {
+						JSONObject args = params.has("arguments")
+								? params.getJSONObject("arguments")
+								: new JSONObject();
+						JSONObject meta = params.optJSONObject("_meta");
+						JSONObject resultObj = callGenerate(args, meta == null ? null : meta.opt("progressToken"),
+								protocolVersion);
+						response = "{\"jsonrpc\":\"2.0\",\"result\":" + resultObj.toString() + ",\"id\":" + idStr
+								+ "}";
+					} else {
+						response = "{\"jsonrpc\":\"2.0\",\"error\":{\"code\":-32601,\"message\":\"Tool not found\"},\"id\":"
+								+ idStr + "}";
+					}
+				} else if ("stats".equals(method)) {
+					JSONObject stats = new JSONObject();
+					stats.put("specCache", EngineHolder.engine.getSpecCache().toJson());
+					response = "{\"jsonrpc\":\"2.0\",\"result\":" + stats.toString() + ",\"id\":" + idStr + "}";
+				} else if ("version".equals(method)) {
+					response = "{\"jsonrpc\":\"2.0\",\"result\":\"" + VERSION + "\",\"id\":" + idStr + "}";
+				} else if ("notifications/progress".equals(method) || "progress".equals(method)) {
+					return null;
 				} else {
 					if (idObj == null)
-						continue;
-					response = "{\"jsonrpc\":\"2.0\",\"error\":{\"code\":-32600,\"message\":\"Invalid Request\"},\"id\":null}";
+						return null;
+					response = "{\"jsonrpc\":\"2.0\",\"error\":{\"code\":-32601,\"message\":\"Method not found\"},\"id\":"
+							+ idStr + "}";
 				}
-			} catch (Exception e) {
-				response = "{\"jsonrpc\":\"2.0\",\"error\":{\"code\":-32700,\"message\":\"Parse error\"},\"id\":null}";
+			} else {
+				if (idObj == null)
+					return null;
+				response = "{\"jsonrpc\":\"2.0\",\"error\":{\"code\":-32600,\"message\":\"Invalid Request\"},\"id\":null}";
 			}
-			System.out.println(response);
-			System.out.flush();
+		} catch (Exception e) {
+			response = "{\"jsonrpc\":\"2.0\",\"error\":{\"code\":-32700,\"message\":\"Parse error\"},\"id\":null}";
 		}
+		return response;
 	}
 
 	/**
@@ -854,50 +1585,107 @@ public @Generated class CddCli {
 	 * @return return doc
 	 */
 	private static OpenAPI extractOpenAPI(File dir) throws Exception {
-		List<File> javaFiles = new ArrayList<>();
-		findJavaFiles(dir, javaFiles);
-		OpenAPI fullApi = new OpenAPI();
-		fullApi.openapi = "3.2.0";
-		fullApi.info = new openapi.Info();
-		fullApi.info.title = "Extracted API";
-		fullApi.info.version = "0.0.3";
-		fullApi.paths = new openapi.Paths();
-		fullApi.paths.pathItems = new java.util.HashMap<>();
-		fullApi.components = new openapi.Components();
-		fullApi.components.schemas = new java.util.HashMap<>();
-		for (File jf : javaFiles) {
-			String source = readFile(jf);
-			OpenAPI apiPaths = routes.Parse.parse(source);
-			if (apiPaths.paths != null && apiPaths.paths.pathItems != null)
-				fullApi.paths.pathItems.putAll(apiPaths.paths.pathItems);
-			OpenAPI mockPaths = mocks.Parse.parse(source);
-			if (mockPaths.paths != null && mockPaths.paths.pathItems != null) {
-				for (java.util.Map.Entry<String, openapi.PathItem> entry : mockPaths.paths.pathItems.entrySet()) {
-					fullApi.paths.pathItems.putIfAbsent(entry.getKey(), entry.getValue());
-				}
-			}
-			OpenAPI apiClasses = classes.Parse.parse(source);
-			if (apiClasses.components != null && apiClasses.components.schemas != null) {
-				fullApi.components.schemas.putAll(apiClasses.components.schemas);
-			}
-			OpenAPI ormClasses = orm.Parse.parse(source);
-			if (ormClasses.components != null && ormClasses.components.schemas != null) {
-				fullApi.components.schemas.putAll(ormClasses.components.schemas);
-			}
-			OpenAPI testsPaths = tests.Parse.parse(source);
-			OpenAPI cliPaths = cli.Parse.parse(source);
-			if (cliPaths.paths != null && cliPaths.paths.pathItems != null) {
-				for (java.util.Map.Entry<String, openapi.PathItem> entry : cliPaths.paths.pathItems.entrySet()) {
-					fullApi.paths.pathItems.putIfAbsent(entry.getKey(), entry.getValue());
-				}
-			}
-			if (testsPaths.paths != null && testsPaths.paths.pathItems != null) {
-				for (java.util.Map.Entry<String, openapi.PathItem> entry : testsPaths.paths.pathItems.entrySet()) {
-					fullApi.paths.pathItems.putIfAbsent(entry.getKey(), entry.getValue());
-				}
-			}
+		return extractOpenAPI(dir, 1, null, new SourceWalker(), null);
+	}
+
+	/**
+	 * Extracts an OpenAPI document from every Java file under a directory.
+	 *
+	 * @param dir
+	 *            The source directory or file.
+	 * @param jobs
+	 *            Number of worker threads used to parse files.
+	 * @param cache
+	 *            Fragment cache for unchanged files, or null to parse everything.
+	 * @param walker
+	 *            Finds the source files.
+	 * @param prescan
+	 *            Receives the pre-scan counts, or null.
+	 * @throws java.lang.Exception
+	 *             if a file cannot be read.
+	 * @return The merged OpenAPI document.
+	 */
+	private static OpenAPI extractOpenAPI(File dir, int jobs, ExtractionCache cache, SourceWalker walker,
+			Prescan.Stats prescan) throws Exception {
+		return Extractor.extract(walker, dir, jobs, cache, prescan);
+	}
+
+	/**
+	 * Builds the source walker from {@code --include}, {@code --exclude} and
+	 * {@code --no-gitignore}.
+	 *
+	 * @param args
+	 *            Command-line arguments.
+	 * @return The walker.
+	 */
+	private static SourceWalker getWalker(String[] args) {
+		return new SourceWalker(getArg(args, "--include", "--include", "CDD_INCLUDE"),
+				getArg(args, "--exclude", "--exclude", "CDD_EXCLUDE"),
+				!hasFlag(args, "--no-gitignore", "--no-gitignore", "CDD_NO_GITIGNORE"));
+	}
+
+	/**
+	 * Opens the extraction cache named by {@code --cache-dir} or
+	 * {@code CDD_CACHE_DIR}.
+	 *
+	 * @param args
+	 *            Command-line arguments.
+	 * @return The cache, or null if caching is disabled.
+	 */
+	private static ExtractionCache getCache(String[] args) {
+		String cacheDir = getArg(args, "--cache-dir", "--cache-dir", "CDD_CACHE_DIR");
+		return cacheDir == null ? null : new ExtractionCache(resolveFile(cacheDir));
+	}
+
+	/**
+	 * Opens the cache of remote {@code $ref} documents. It is enabled by
+	 * {@code --ref-cache} ({@code CDD_REF_CACHE}) in the default directory, by
+	 * {@code --ref-cache-dir} ({@code CDD_REF_CACHE_DIR}) in another one, and by
+	 * {@code --offline} ({@code CDD_OFFLINE}), which serves documents only from
+	 * the cache.
+	 *
+	 * @param args
+	 *            Command-line arguments.
+	 * @return The cache, or null if caching is disabled.
+	 */
+	private static RefCache getRefCache(String[] args) {
+		String dir = getArg(args, "--ref-cache-dir", "--ref-cache-dir", "CDD_REF_CACHE_DIR");
+		boolean offline = hasFlag(args, "--offline", "--offline", "CDD_OFFLINE");
+		if (dir == null && !offline && !hasFlag(args, "--ref-cache", "--ref-cache", "CDD_REF_CACHE"))
+			return null;
+		return new RefCache(dir != null ? resolveFile(dir) : RefCache.defaultDir(), offline);
+	}
+
+	/**
+	 * Creates the resolver for one spec's external references, using the cache
+	 * from {@link #getRefCache(String[])}. With {@code --lazy-refs}
+	 * ({@code CDD_LAZY_REFS}) referenced documents are only loaded once a
+	 * generator reads their components.
+	 *
+	 * @param args
+	 *            Command-line arguments.
+	 * @return The resolver.
+	 */
+	private static RefResolver newResolver(String[] args) {
+		return new RefResolver(getRefCache(args), hasFlag(args, "--lazy-refs", "--lazy-refs", "CDD_LAZY_REFS"));
+	}
+
+	/**
+	 * Reads the {@code -j/--jobs} option.
+	 *
+	 * @param args
+	 *            Command-line arguments.
+	 * @return Number of worker threads.
+	 * @throws Exception
+	 *             if the value is not an integer.
+	 */
+	private static int getJobs(String[] args) throws Exception {
+		try {
+			return Extractor.parseJobs(getArg(args, "-j", "--jobs", "CDD_JOBS"));
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			throw new Exception("Exit 1");
 		}
-		return fullApi;
 	}
 
 	/**
@@ -931,21 +1719,6 @@ public @Generated class CddCli {
 		return false;
 	}
 
-	/**
-	 * findJavaFiles doc
-	 */
-	private static void findJavaFiles(File dir, List<File> result) {
-		if (dir.isFile() && dir.getName().endsWith(".java")) {
-			result.add(dir);
-		} else if (dir.isDirectory()) {
-			File[] files = dir.listFiles();
-			{
-				for (File f : files)
-					findJavaFiles(f, result);
-			}
-		}
-	}
-
 	/**
 	 * printHelp doc
 	 */
@@ -958,7 +1731,7 @@ public @Generated class CddCli {
 		System.out.println("  to_openapi      Generate an OpenAPI specification from source code.");
 		System.out.println(
 				"  to_docs_json    Generate JSON documentation with code snippets for an OpenAPI specification.");
-		System.out.println("  serve_json_rpc  Expose CLI interface as a JSON-RPC server.");
+		System.out.println("  serve_json_rpc  Expose CLI interface as a JSON-RPC server over HTTP (stdio with --wasi).");
 		System.out.println("  sync            Synchronize database schema to models and OpenAPI specifications.");
 		System.out.println("\nOptions:");
 		System.out.println("  --help, -h      Show this help message.");
@@ -970,8 +1743,15 @@ public @Generated class CddCli {
 		System.out.println(
 				"  cdd-java from_openapi to_sdk -i <spec.json> [-o <target_directory>] [--no-github-actions] [--no-installable-package] [--tests]");
 		System.out.println("  cdd-java from_openapi to_server -i <spec.json> [-o <target_directory>]");
-		System.out.println("  cdd-java to_openapi -i <path/to/code> [-o <spec.json>]");
-		System.out.println("  cdd-java to_docs_json [--no-imports] [--no-wrapping] -i <spec.json> [-o <docs.json>]");
-		System.out.println("  cdd-java sync -i <dir> [-o <dir>] [--truth <type>]");
+		System.out.println(
+				"  cdd-java from_openapi <to_sdk_cli|to_sdk|to_server> -i <spec.json|specs_dir> --output-archive <file.zip|->");
+		System.out.println(
+				"  cdd-java from_openapi <to_sdk_cli|to_sdk|to_server> -i <spec.json> [--ref-cache] [--ref-cache-dir <dir>] [--offline] [--lazy-refs]");
+		System.out.println(
+				"  cdd-java to_openapi -i <path/to/code> [-o <spec.json>] [-j|--jobs <n>] [--cache-dir <dir>] [--watch] [--include <globs>] [--exclude <globs>] [--no-gitignore]");
+		System.out.println(
+				"  cdd-java to_docs_json [--no-imports] [--no-wrapping] -i <spec.json> [-o <docs.json>] [--ref-cache] [--offline] [--lazy-refs]");
+		System.out.println(
+				"  cdd-java sync -i <dir> [-o <dir>] [--truth <type>] [-j|--jobs <n>] [--watch] [--include <globs>] [--exclude <globs>] [--no-gitignore]");
 	}
 }
@@ -0,0 +1,391 @@
+package cli;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import openapi.OpenAPI;
+import sink.FileSink;
+
+/**
+ * Typed, reusable entry point for embedding the generators. Unlike the
+ * {@link CddCli} helpers it takes parsed models and options objects, returns
+ * files instead of writing or printing them, and keeps its caches warm across
+ * calls. An engine is safe to share between threads.
+ */
+public class CddEngine {
+
+	/**
+	 * What to generate from a specification.
+	 */
+	public enum Target {
+		/**
+		 * Client SDK ({@code to_sdk}).
+		 */
+		SDK,
+
+		/**
+		 * Command-line SDK ({@code to_sdk_cli}).
+		 */
+		SDK_CLI,
+
+		/**
+		 * Modular server ({@code to_server}).
+		 */
+		SERVER;
+
+		/**
+		 * Looks up a target by its {@code from_openapi} subcommand.
+		 *
+		 * @param subCommand
+		 *            e.g. {@code to_sdk}.
+		 * @return The target.
+		 * @throws IllegalArgumentException
+		 *             if the subcommand is unknown.
+		 */
+		public static Target of(String subCommand) {
+			if ("to_sdk".equals(subCommand))
+				return SDK;
+			if ("to_sdk_cli".equals(subCommand))
+				return SDK_CLI;
+			if ("to_server".equals(subCommand))
+				return SERVER;
+			throw new IllegalArgumentException("Unknown target: " + subCommand);
+		}
+	}
+
+	/**
+	 * Generation options, mirroring the {@code from_openapi} flags.
+	 */
+	public static class Options {
+		/**
+		 * Also generate integration tests and mock servers.
+		 */
+		public boolean tests;
+
+		/**
+		 * Write {@code .github/workflows/ci.yml}.
+		 */
+		public boolean githubActions = true;
+
+		/**
+		 * Write {@code pom.xml}.
+		 */
+		public boolean installablePackage = true;
+
+		/**
+		 * Number of threads for the server emitters; 1 runs them on the calling
+		 * thread.
+		 */
+		public int jobs = Runtime.getRuntime().availableProcessors();
+
+		/**
+		 * Receives each finished server emitter, or null. With {@link #jobs}
+		 * above 1 it is called from the emitter threads.
+		 */
+		public Progress progress;
+
+		/**
+		 * Default constructor.
+		 */
+		public Options() {
+		}
+	}
+
+	/**
+	 * Parsed specifications, keyed by content.
+	 */
+	private final SpecCache specCache;
+
+	/**
+	 * Per-file extraction fragments, or null to always parse.
+	 */
+	private final ExtractionCache extractionCache;
+
+	/**
+	 * Creates an engine with a 32-entry spec cache and no extraction cache.
+	 */
+	public CddEngine() {
+		this(32, null);
+	}
+
+	/**
+	 * Creates an engine.
+	 *
+	 * @param specCacheSize
+	 *            Maximum number of parsed specs kept; 0 disables the cache.
+	 * @param extractionCache
+	 *            On-disk fragment cache for source extraction, or null.
+	 */
+	public CddEngine(int specCacheSize, ExtractionCache extractionCache) {
+		this.specCache = new SpecCache(specCacheSize);
+		this.extractionCache = extractionCache;
+	}
+
+	/**
+	 * Parses a specification, reusing the model if the same text was parsed
+	 * before. The returned model is shared and must not be modified.
+	 *
+	 * @param spec
+	 *            The JSON or YAML text.
+	 * @param baseUri
+	 *            The base URI that references are resolved against.
+	 * @return The parsed model.
+	 * @throws IOException
+	 *             if the spec cannot be parsed.
+	 */
+	public OpenAPI parse(String spec, String baseUri) throws IOException {
+		return specCache.parse(spec, baseUri);
+	}
+
+	/**
+	 * Parses a UTF-8 encoded specification.
+	 *
+	 * @param spec
+	 *            The JSON or YAML bytes.
+	 * @param baseUri
+	 *            The base URI that references are resolved against.
+	 * @return The parsed model.
+	 * @throws IOException
+	 *             if the spec cannot be parsed.
+	 */
+	public OpenAPI parse(byte[] spec, String baseUri) throws IOException {
+		return parse(new String(spec, StandardCharsets.UTF_8), baseUri);
+	}
+
+	/**
+	 * Generates a project and returns its files.
+	 *
+	 * @param api
+	 *            The specification.
+	 * @param target
+	 *            What to generate.
+	 * @param options
+	 *            Generation options.
+	 * @return Generated files keyed by project-relative path, sorted by path.
+	 * @throws IOException
+	 *             if generation fails.
+	 */
+	public Map<String, String> generate(OpenAPI api, Target target, Options options) throws IOException {
+		// Server emitters may write concurrently
+		Map<String, String> files = new ConcurrentHashMap<>();
+		generate(api, target, options, files::put);
+		return new TreeMap<>(files);
+	}
+
+	/**
+	 * Generates a project, handing each file to a sink as soon as it is ready.
+	 * With {@link Options#jobs} above 1 the server emitters run concurrently, so
+	 * the sink must be thread-safe.
+	 *
+	 * @param api
+	 *            The specification.
+	 * @param target
+	 *            What to generate.
+	 * @param options
+	 *            Generation options.
+	 * @param sink
+	 *            Receives files keyed by project-relative path.
+	 * @throws IOException
+	 *             if generation or the sink fails.
+	 */
+	public void generate(OpenAPI api, Target target, Options options, FileSink sink) throws IOException {
+		try {
+			if (options.installablePackage)
+				sink.write("pom.xml", scaffoldingPom());
+			if (options.githubActions)
+				sink.write(".github/workflows/ci.yml", githubActionsCi());
+			if (target == Target.SDK_CLI) {
+				sink.write("SdkCli.java", cli.Emit.emitCli(api));
+				if (options.tests) {
+					sink.write("SdkCliIntegrationTest.java", tests.Emit.emit(api, null));
+					sink.write("SdkCliMockServer.java", mocks.Emit.emit(api, null));
+				}
+			} else if (target == Target.SDK) {
+				sink.write("src/main/java/Sdk.java", classes.Emit.emit(api, null));
+				if (options.tests) {
+					String title = specName(api, "Api");
+					sink.write("src/test/java/" + title + "IntegrationTest.java", tests.Emit.emit(api, null));
+					sink.write("src/test/java/" + title + "MockServer.java", mocks.Emit.emit(api, null));
+				}
+			} else {
+				emitServer(api, options.jobs, options.progress, sink);
+			}
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * Runs the modular server emitters, in parallel when more than one job is
+	 * allowed.
+	 *
+	 * @param api
+	 *            The specification.
+	 * @param jobs
+	 *            Number of threads; 1 runs on the calling thread.
+	 * @param progress
+	 *            Receives each finished emitter, or null.
+	 * @param sink
+	 *            Receives files keyed by project-relative path.
+	 * @throws IOException
+	 *             if an emitter or the sink fails.
+	 */
+	private static void emitServer(OpenAPI api, int jobs, Progress progress, FileSink sink) throws IOException {
+		FileSink main = (path, content) -> sink.write("src/main/java/" + path, content);
+		FileSink test = (path, content) -> sink
+				.write(path.startsWith("../main/") ? "src/" + path.substring(3) : "src/test/java/" + path, content);
+		Map<String, Runnable> emitters = new LinkedHashMap<>();
+		// orm emits an entity for every non-enum schema, so classes only renders the enums and each model path
+		// reaches the sink once, as archive sinks require
+		emitters.put("classes", () -> classes.Emit.emitModular(api, main, schema -> schema.enumValues != null));
+		emitters.put("orm", () -> orm.Emit.emitModular(api, main));
+		emitters.put("dao", () -> dao.Emit.emitModular(api, main));
+		emitters.put("serverroutes", () -> serverroutes.Emit.emitModular(api, main));
+		emitters.put("seeder", () -> seeder.Emit.emitModular(api, main));
+		emitters.put("servermain", () -> servermain.Emit.emitModular(api, main));
+		emitters.put("servertests", () -> servertests.Emit.emitModular(api, test));
+		emitters.put("mocks", () -> mocks.Emit.emitModular(api, test));
+		AtomicInteger done = new AtomicInteger();
+		List<Runnable> steps = new ArrayList<>();
+		emitters.forEach((name, emitter) -> steps.add(() -> {
+			emitter.run();
+			if (progress != null)
+				progress.report(name, done.incrementAndGet(), emitters.size());
+		}));
+		if (jobs <= 1) {
+			for (Runnable step : steps)
+				step.run();
+			return;
+		}
+		ExecutorService pool = Executors.newFixedThreadPool(Math.min(steps.size(), jobs));
+		try {
+			List<Future<?>> results = new ArrayList<>();
+			for (Runnable step : steps)
+				results.add(pool.submit(step));
+			for (Future<?> result : results)
+				result.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Generation interrupted", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof UncheckedIOException)
+				throw ((UncheckedIOException) e.getCause()).getCause();
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			throw (Error) e.getCause();
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	/**
+	 * Extracts an OpenAPI document from the Java sources below a directory,
+	 * using the engine's extraction cache.
+	 *
+	 * @param root
+	 *            The source directory or file.
+	 * @param walker
+	 *            Finds the source files.
+	 * @param jobs
+	 *            Number of worker threads; 1 extracts on the calling thread.
+	 * @return The merged document.
+	 * @throws IOException
+	 *             if a file cannot be read.
+	 */
+	public OpenAPI extract(File root, SourceWalker walker, int jobs) throws IOException {
+		return Extractor.extract(walker, root, jobs, extractionCache);
+	}
+
+	/**
+	 * Renders the per-operation docs JSON.
+	 *
+	 * @param api
+	 *            The specification.
+	 * @param noImports
+	 *            Omit import statements from snippets.
+	 * @param noWrapping
+	 *            Omit wrapping boilerplate from snippets.
+	 * @return The docs JSON.
+	 */
+	public String docsJson(OpenAPI api, boolean noImports, boolean noWrapping) {
+		return docstrings.Emit.emitDocsJson(api, noImports, noWrapping);
+	}
+
+	/**
+	 * The engine's parsed-spec cache, for statistics.
+	 *
+	 * @return The cache.
+	 */
+	public SpecCache getSpecCache() {
+		return specCache;
+	}
+
+	/**
+	 * Derives a class-name-safe name from the spec title.
+	 *
+	 * @param api
+	 *            The specification.
+	 * @param fallback
+	 *            Name used when the title is missing or has no usable characters.
+	 * @return The name.
+	 */
+	static String specName(OpenAPI api, String fallback) {
+		String title = (api.info != null && api.info.title != null) ? api.info.title.replaceAll("[^a-zA-Z0-9]", "")
+				: "";
+		return title.isEmpty() ? fallback : title;
+	}
+
+	/**
+	 * The Maven build file written next to generated code.
+	 *
+	 * @return The {@code pom.xml} content.
+	 */
+	static String scaffoldingPom() {
+		return "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" + "<project xmlns=\"http://maven.apache.org/POM/4.0.0\" "
+				+ "xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\" "
+				+ "xsi:schemaLocation=\"http://maven.apache.org/POM/4.0.0 "
+				+ "http://maven.apache.org/xsd/maven-4.0.0.xsd\">\n" + "    <modelVersion>4.0.0</modelVersion>\n"
+				+ "    <groupId>com.example</groupId>\n" + "    <artifactId>generated-sdk</artifactId>\n"
+				+ "    <version>0.0.3</version>\n" + "    <properties>\n"
+				+ "        <maven.compiler.source>11</maven.compiler.source>\n"
+				+ "        <maven.compiler.target>11</maven.compiler.target>\n" + "    </properties>\n"
+				+ "    <dependencies>\n" + "        <dependency>\n" + "            <groupId>io.javalin</groupId>\n"
+				+ "            <artifactId>javalin</artifactId>\n" + "            <version>5.6.3</version>\n"
+				+ "        </dependency>\n" + "        <dependency>\n"
+				+ "            <groupId>org.hibernate.orm</groupId>\n"
+				+ "            <artifactId>hibernate-core</artifactId>\n"
+				+ "            <version>6.4.4.Final</version>\n" + "        </dependency>\n" + "        <dependency>\n"
+				+ "            <groupId>org.postgresql</groupId>\n"
+				+ "            <artifactId>postgresql</artifactId>\n" + "            <version>42.7.2</version>\n"
+				+ "        </dependency>\n" + "        <dependency>\n"
+				+ "            <groupId>com.fasterxml.jackson.core</groupId>\n"
+				+ "            <artifactId>jackson-databind</artifactId>\n" + "            <version>2.15.2</version>\n"
+				+ "        </dependency>\n" + "        <dependency>\n"
+				+ "            <groupId>net.datafaker</groupId>\n" + "            <artifactId>datafaker</artifactId>\n"
+				+ "            <version>2.0.2</version>\n" + "        </dependency>\n" + "        <dependency>\n"
+				+ "            <groupId>junit</groupId>\n" + "            <artifactId>junit</artifactId>\n"
+				+ "            <version>4.13.2</version>\n" + "            <scope>test</scope>\n"
+				+ "        </dependency>\n" + "    </dependencies>\n" + "</project>";
+	}
+
+	/**
+	 * The GitHub Actions workflow written next to generated code.
+	 *
+	 * @return The {@code ci.yml} content.
+	 */
+	static String githubActionsCi() {
+		return "name: CI\non: [push, pull_request]\njobs:\n  build:\n    runs-on: ubuntu-latest\n    steps:\n    - uses: actions/checkout@v6\n    - name: Set up JDK\n      uses: actions/setup-java@v3\n      with:\n        java-version: '11'\n        distribution: 'temurin'\n    - name: Build with Maven\n      run: mvn clean install\n";
+	}
+}
@@ -0,0 +1,77 @@
+package cli;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * Training run for the class-data sharing archive built by
+ * {@code make build_cds}. Runs every subcommand over the given specs in one
+ * JVM, so that the archive written at exit holds the classes each of them
+ * loads. Output goes nowhere and failures are ignored: the run only has to
+ * load classes.
+ */
+public class CdsTraining {
+
+	/**
+	 * Default constructor.
+	 */
+	public CdsTraining() {
+	}
+
+	/**
+	 * Runs the training commands.
+	 *
+	 * @param args
+	 *            OpenAPI spec files to generate from.
+	 * @throws IOException
+	 *             if the scratch directory cannot be created or removed.
+	 */
+	public static void main(String[] args) throws IOException {
+		Path scratch = Files.createTempDirectory("cdd-cds");
+		PrintStream out = System.out;
+		PrintStream err = System.err;
+		System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+		System.setErr(new PrintStream(OutputStream.nullOutputStream()));
+		try {
+			run("--version");
+			run("--help");
+			for (int i = 0; i < args.length; i++) {
+				String spec = args[i];
+				String dir = scratch.resolve(Integer.toString(i)).toString();
+				run("to_docs_json", "-i", spec, "-o", dir + "/docs.json");
+				run("from_openapi", "to_sdk", "-i", spec, "-o", dir + "/sdk", "--tests");
+				run("from_openapi", "to_sdk_cli", "-i", spec, "-o", dir + "/sdk_cli", "--tests");
+				run("from_openapi", "to_server", "-i", spec, "-o", dir + "/server");
+				run("from_openapi", "to_sdk", "-i", spec, "--output-archive", dir + "/sdk.zip");
+				run("to_openapi", "-i", dir + "/sdk", "-o", dir + "/spec.json");
+				run("sync", "-i", dir + "/sdk");
+			}
+		} finally {
+			System.setOut(out);
+			System.setErr(err);
+			try (Stream<Path> files = Files.walk(scratch)) {
+				files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+			}
+		}
+	}
+
+	/**
+	 * Runs one command, ignoring its outcome.
+	 *
+	 * @param args
+	 *            The command line.
+	 */
+	private static void run(String... args) {
+		try {
+			CddCli.run(args);
+		} catch (Exception e) {
+			// Loading the classes is all that matters
+		}
+	}
+}
@@ -0,0 +1,134 @@
+package cli;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.json.JSONObject;
+
+/**
+ * On-disk cache of per-file extraction fragments, keyed by a hash of the file
+ * content and the tool version.
+ */
+public class ExtractionCache {
+
+	/**
+	 * Tool version mixed into every key so upgrades invalidate old entries.
+	 */
+	public static final String VERSION = CddCli.VERSION;
+
+	/**
+	 * Directory holding one JSON file per cached fragment.
+	 */
+	private final File dir;
+
+	/**
+	 * Number of lookups served from the cache.
+	 */
+	private final AtomicInteger hits = new AtomicInteger();
+
+	/**
+	 * Number of lookups that required a parse.
+	 */
+	private final AtomicInteger misses = new AtomicInteger();
+
+	/**
+	 * Creates a cache rooted at a directory.
+	 *
+	 * @param dir
+	 *            The cache directory; created on first write.
+	 */
+	public ExtractionCache(File dir) {
+		this.dir = dir;
+	}
+
+	/**
+	 * Computes the cache key for a source file.
+	 *
+	 * @param source
+	 *            The Java source.
+	 * @return Hex SHA-256 of the tool version and the source.
+	 */
+	public static String key(String source) {
+		try {
+			MessageDigest md = MessageDigest.getInstance("SHA-256");
+			md.update(VERSION.getBytes(StandardCharsets.UTF_8));
+			md.update((byte) 0);
+			byte[] digest = md.digest(source.getBytes(StandardCharsets.UTF_8));
+			StringBuilder sb = new StringBuilder();
+			for (byte b : digest)
+				sb.append(String.format("%02x", b));
+			return sb.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Looks up a fragment, counting a hit or a miss.
+	 *
+	 * @param key
+	 *            The key from {@link #key(String)}.
+	 * @return The cached fragment, or null if absent or unreadable.
+	 */
+	public Fragment get(String key) {
+		File f = new File(dir, key + ".json");
+		if (f.isFile()) {
+			try {
+				Fragment fragment = Fragment.fromJson(new JSONObject(Extractor.readFile(f)));
+				hits.incrementAndGet();
+				return fragment;
+			} catch (Exception e) {
+				// Corrupt entry, fall through and re-extract
+			}
+		}
+		misses.incrementAndGet();
+		return null;
+	}
+
+	/**
+	 * Stores a fragment. The entry is written to a temporary file and moved into
+	 * place so concurrent readers never see a partial entry.
+	 *
+	 * @param key
+	 *            The key from {@link #key(String)}.
+	 * @param fragment
+	 *            The fragment.
+	 * @throws IOException
+	 *             if the entry cannot be written.
+	 */
+	public void put(String key, Fragment fragment) throws IOException {
+		dir.mkdirs();
+		Path tmp = Files.createTempFile(dir.toPath(), key, ".tmp");
+		try {
+			Files.write(tmp, fragment.toJson().toString().getBytes(StandardCharsets.UTF_8));
+			Files.move(tmp, new File(dir, key + ".json").toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(tmp);
+		}
+	}
+
+	/**
+	 * Number of lookups served from the cache.
+	 *
+	 * @return The hit count.
+	 */
+	public int getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * Number of lookups that required a parse.
+	 *
+	 * @return The miss count.
+	 */
+	public int getMisses() {
+		return misses.get();
+	}
+}
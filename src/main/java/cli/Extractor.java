@@ -0,0 +1,447 @@
+package cli;
+
+import com.github.javaparser.StaticJavaParser;
+import com.github.javaparser.ast.CompilationUnit;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import openapi.OpenAPI;
+
+/**
+ * Extracts an OpenAPI document from Java sources, one fragment per file.
+ */
+public class Extractor {
+
+	/**
+	 * Default constructor.
+	 */
+	public Extractor() {
+	}
+
+	/**
+	 * Creates the empty document that fragments are merged into.
+	 *
+	 * @return The OpenAPI skeleton.
+	 */
+	public static OpenAPI newDocument() {
+		OpenAPI fullApi = new OpenAPI();
+		fullApi.openapi = "3.2.0";
+		fullApi.info = new openapi.Info();
+		fullApi.info.title = "Extracted API";
+		fullApi.info.version = "0.0.3";
+		fullApi.paths = new openapi.Paths();
+		fullApi.paths.pathItems = new HashMap<>();
+		fullApi.components = new openapi.Components();
+		fullApi.components.schemas = new HashMap<>();
+		return fullApi;
+	}
+
+	/**
+	 * Runs the extractors that the lexical pre-scan says could match over a
+	 * single source file. The source is only parsed if an AST-based extractor is
+	 * needed.
+	 *
+	 * @param source
+	 *            The Java source.
+	 * @return The file's fragment.
+	 */
+	public static Fragment extract(String source) {
+		return extract(source, null);
+	}
+
+	/**
+	 * Runs the extractors that the lexical pre-scan says could match over a
+	 * single source file, counting the scan.
+	 *
+	 * @param source
+	 *            The Java source.
+	 * @param stats
+	 *            Receives the pre-scan outcome, or null.
+	 * @return The file's fragment.
+	 */
+	public static Fragment extract(String source, Prescan.Stats stats) {
+		Fragment fragment = new Fragment();
+		Prescan scan = Prescan.scan(source);
+		if (stats != null)
+			stats.record(scan);
+		if (!scan.contributes())
+			return fragment;
+		// Mock snippets without a class declaration are wrapped before parsing
+		boolean mockSnippet = !source.contains("class ");
+		CompilationUnit cu = null;
+		if (scan.routes || scan.classes || scan.orm || scan.tests || (scan.mocks && !mockSnippet))
+			cu = parseCompilationUnit(source);
+		if (scan.routes)
+			fragment.addPaths(routes.Parse.parse(cu));
+		if (scan.mocks)
+			fragment.addFallbackPaths(mockSnippet ? mocks.Parse.parse(source) : mocks.Parse.parse(cu));
+		if (scan.classes)
+			fragment.addSchemas(classes.Parse.parse(cu));
+		if (scan.orm)
+			fragment.addSchemas(orm.Parse.parse(cu));
+		if (scan.cli)
+			fragment.addFallbackPaths(cli.Parse.parse(source));
+		if (scan.tests)
+			fragment.addFallbackPaths(tests.Parse.parse(cu));
+		return fragment;
+	}
+
+	/**
+	 * Extracts fragments from the given files, in input order.
+	 *
+	 * @param files
+	 *            The Java files.
+	 * @param jobs
+	 *            Number of worker threads; 1 extracts on the calling thread.
+	 * @return One fragment per file, in the same order as {@code files}.
+	 * @throws IOException
+	 *             if a file cannot be read.
+	 */
+	public static List<Fragment> extractAll(List<File> files, int jobs) throws IOException {
+		return extractAll(files, jobs, null);
+	}
+
+	/**
+	 * Extracts fragments from the given files, in input order, reusing cached
+	 * fragments for files whose content has not changed.
+	 *
+	 * @param files
+	 *            The Java files.
+	 * @param jobs
+	 *            Number of worker threads; 1 extracts on the calling thread.
+	 * @param cache
+	 *            The fragment cache, or null to always parse.
+	 * @return One fragment per file, in the same order as {@code files}.
+	 * @throws IOException
+	 *             if a file cannot be read or a cache entry cannot be written.
+	 */
+	public static List<Fragment> extractAll(List<File> files, int jobs, ExtractionCache cache) throws IOException {
+		return map(files, jobs, f -> extract(f, cache, null));
+	}
+
+	/**
+	 * Extracts fragments from sources that have already been read, in input
+	 * order.
+	 *
+	 * @param sources
+	 *            The Java sources.
+	 * @param jobs
+	 *            Number of worker threads; 1 extracts on the calling thread.
+	 * @return One fragment per source, in the same order as {@code sources}.
+	 * @throws IOException
+	 *             never in practice; declared for symmetry with file
+	 *             extraction.
+	 */
+	public static List<Fragment> extractSources(List<String> sources, int jobs) throws IOException {
+		return extractSources(sources, jobs, null);
+	}
+
+	/**
+	 * Extracts fragments from sources that have already been read, in input
+	 * order, counting the pre-scan outcomes.
+	 *
+	 * @param sources
+	 *            The Java sources.
+	 * @param jobs
+	 *            Number of worker threads; 1 extracts on the calling thread.
+	 * @param stats
+	 *            Receives the pre-scan outcomes, or null.
+	 * @return One fragment per source, in the same order as {@code sources}.
+	 * @throws IOException
+	 *             never in practice; declared for symmetry with file
+	 *             extraction.
+	 */
+	public static List<Fragment> extractSources(List<String> sources, int jobs, Prescan.Stats stats)
+			throws IOException {
+		return map(sources, jobs, source -> extract(source, stats));
+	}
+
+	/**
+	 * A unit of extraction work that may fail with an I/O error.
+	 *
+	 * @param <T>
+	 *            The input type.
+	 */
+	private interface Task<T> {
+		/**
+		 * Extracts one input.
+		 *
+		 * @param input
+		 *            The input.
+		 * @return The fragment.
+		 * @throws IOException
+		 *             if the input cannot be read.
+		 */
+		Fragment apply(T input) throws IOException;
+	}
+
+	/**
+	 * Runs a task over every input, in parallel when more than one job is
+	 * requested, keeping the results in input order.
+	 *
+	 * @param <T>
+	 *            The input type.
+	 * @param inputs
+	 *            The inputs.
+	 * @param jobs
+	 *            Number of worker threads; 1 runs on the calling thread.
+	 * @param task
+	 *            The extraction task.
+	 * @return One fragment per input.
+	 * @throws IOException
+	 *             if a task fails.
+	 */
+	private static <T> List<Fragment> map(List<T> inputs, int jobs, Task<T> task) throws IOException {
+		if (jobs <= 1 || inputs.size() < 2) {
+			List<Fragment> fragments = new ArrayList<>();
+			for (T input : inputs)
+				fragments.add(task.apply(input));
+			return fragments;
+		}
+		ForkJoinPool pool = new ForkJoinPool(jobs);
+		try {
+			// Ordered collect keeps the merge deterministic whatever the thread timing
+			return pool.submit(() -> inputs.parallelStream().map(input -> {
+				try {
+					return task.apply(input);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}).collect(Collectors.toList())).get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Extraction interrupted", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof UncheckedIOException)
+				throw ((UncheckedIOException) e.getCause()).getCause();
+			throw new IOException("Extraction failed: " + e.getCause().getMessage(), e.getCause());
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Merges fragments, in order, into a fresh document.
+	 *
+	 * @param fragments
+	 *            The fragments, in merge order.
+	 * @return The merged OpenAPI document.
+	 */
+	public static OpenAPI merge(List<Fragment> fragments) {
+		OpenAPI fullApi = newDocument();
+		for (Fragment fragment : fragments)
+			fragment.mergeInto(fullApi);
+		return fullApi;
+	}
+
+	/**
+	 * Extracts and merges an OpenAPI document from the given files.
+	 *
+	 * @param files
+	 *            The Java files, in merge order.
+	 * @param jobs
+	 *            Number of worker threads.
+	 * @return The merged OpenAPI document.
+	 * @throws IOException
+	 *             if a file cannot be read.
+	 */
+	public static OpenAPI extract(List<File> files, int jobs) throws IOException {
+		return extract(files, jobs, null);
+	}
+
+	/**
+	 * Extracts and merges an OpenAPI document from the given files, reusing
+	 * cached fragments where possible.
+	 *
+	 * @param files
+	 *            The Java files, in merge order.
+	 * @param jobs
+	 *            Number of worker threads.
+	 * @param cache
+	 *            The fragment cache, or null to always parse.
+	 * @return The merged OpenAPI document.
+	 * @throws IOException
+	 *             if a file cannot be read or a cache entry cannot be written.
+	 */
+	public static OpenAPI extract(List<File> files, int jobs, ExtractionCache cache) throws IOException {
+		return merge(extractAll(files, jobs, cache));
+	}
+
+	/**
+	 * Extracts and merges an OpenAPI document from the Java files below a
+	 * directory. Files are submitted for extraction as the walker finds them,
+	 * and finished fragments are merged in discovery order.
+	 *
+	 * @param walker
+	 *            Finds the source files.
+	 * @param root
+	 *            The directory or file to extract.
+	 * @param jobs
+	 *            Number of worker threads; 1 extracts on the calling thread.
+	 * @param cache
+	 *            The fragment cache, or null to always parse.
+	 * @return The merged OpenAPI document.
+	 * @throws IOException
+	 *             if a file cannot be read or a cache entry cannot be written.
+	 */
+	public static OpenAPI extract(SourceWalker walker, File root, int jobs, ExtractionCache cache) throws IOException {
+		return extract(walker, root, jobs, cache, null);
+	}
+
+	/**
+	 * Extracts and merges an OpenAPI document from the Java files below a
+	 * directory, counting the pre-scan outcomes of the files parsed.
+	 *
+	 * @param walker
+	 *            Finds the source files.
+	 * @param root
+	 *            The directory or file to extract.
+	 * @param jobs
+	 *            Number of worker threads; 1 extracts on the calling thread.
+	 * @param cache
+	 *            The fragment cache, or null to always parse.
+	 * @param stats
+	 *            Receives the pre-scan outcomes, or null.
+	 * @return The merged OpenAPI document.
+	 * @throws IOException
+	 *             if a file cannot be read or a cache entry cannot be written.
+	 */
+	public static OpenAPI extract(SourceWalker walker, File root, int jobs, ExtractionCache cache,
+			Prescan.Stats stats) throws IOException {
+		OpenAPI fullApi = newDocument();
+		if (jobs <= 1) {
+			walker.walk(root, f -> {
+				// Lets a cancelled JSON-RPC request stop between files
+				if (Thread.currentThread().isInterrupted())
+					throw new InterruptedIOException("Extraction interrupted");
+				extract(f, cache, stats).mergeInto(fullApi);
+			});
+			return fullApi;
+		}
+		ExecutorService pool = Executors.newFixedThreadPool(jobs);
+		Deque<Future<Fragment>> pending = new ArrayDeque<>();
+		try {
+			walker.walk(root, f -> {
+				pending.add(pool.submit(() -> extract(f, cache, stats)));
+				// Merge what has finished at the front so only the in-flight window is held
+				while (!pending.isEmpty() && pending.peek().isDone())
+					await(pending.poll()).mergeInto(fullApi);
+			});
+			while (!pending.isEmpty())
+				await(pending.poll()).mergeInto(fullApi);
+		} finally {
+			pool.shutdownNow();
+		}
+		return fullApi;
+	}
+
+	/**
+	 * Waits for an extraction task.
+	 *
+	 * @param task
+	 *            The submitted task.
+	 * @return The task's fragment.
+	 * @throws IOException
+	 *             if the task failed or the wait was interrupted.
+	 */
+	private static Fragment await(Future<Fragment> task) throws IOException {
+		try {
+			return task.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Extraction interrupted", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException)
+				throw (IOException) e.getCause();
+			throw new IOException("Extraction failed: " + e.getCause().getMessage(), e.getCause());
+		}
+	}
+
+	/**
+	 * Extracts a single file, consulting the cache first.
+	 *
+	 * @param file
+	 *            The Java file.
+	 * @param cache
+	 *            The fragment cache, or null to always parse.
+	 * @param stats
+	 *            Receives the pre-scan outcome if the file is scanned, or null.
+	 * @return The file's fragment.
+	 * @throws IOException
+	 *             if the file cannot be read or the cache entry cannot be
+	 *             written.
+	 */
+	static Fragment extract(File file, ExtractionCache cache, Prescan.Stats stats) throws IOException {
+		String source = readFile(file);
+		if (cache == null)
+			return extract(source, stats);
+		String key = ExtractionCache.key(source);
+		Fragment fragment = cache.get(key);
+		if (fragment == null) {
+			fragment = extract(source, stats);
+			cache.put(key, fragment);
+		}
+		return fragment;
+	}
+
+	/**
+	 * Parses Java source once so that every extractor can share the same tree.
+	 *
+	 * @param source
+	 *            The Java source.
+	 * @return The compilation unit, or an empty one if the source does not parse.
+	 */
+	static CompilationUnit parseCompilationUnit(String source) {
+		try {
+			return StaticJavaParser.parse(source);
+		} catch (Exception e) {
+			return new CompilationUnit();
+		}
+	}
+
+	/**
+	 * Reads a file as UTF-8.
+	 *
+	 * @param file
+	 *            The file.
+	 * @return The file content.
+	 * @throws IOException
+	 *             if the file cannot be read.
+	 */
+	static String readFile(File file) throws IOException {
+		return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Parses a {@code --jobs} value; zero or negative means one per processor.
+	 *
+	 * @param value
+	 *            The flag value, may be null.
+	 * @return The number of worker threads.
+	 */
+	public static int parseJobs(String value) {
+		if (value == null)
+			return 1;
+		int jobs;
+		try {
+			jobs = Integer.parseInt(value.trim());
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Invalid --jobs value: " + value);
+		}
+		return jobs <= 0 ? Runtime.getRuntime().availableProcessors() : jobs;
+	}
+}
@@ -0,0 +1,125 @@
+package cli;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.json.JSONObject;
+import openapi.OpenAPI;
+import openapi.PathItem;
+import openapi.Schema;
+
+/**
+ * The OpenAPI contribution extracted from a single Java source file.
+ */
+public class Fragment {
+
+	/**
+	 * Paths that replace any previously merged path (route clients).
+	 */
+	public Map<String, PathItem> paths = new LinkedHashMap<>();
+
+	/**
+	 * Paths only merged when nothing else claimed them (mocks, CLI, tests).
+	 */
+	public Map<String, PathItem> fallbackPaths = new LinkedHashMap<>();
+
+	/**
+	 * Schemas that replace any previously merged schema (DTOs and entities).
+	 */
+	public Map<String, Schema> schemas = new LinkedHashMap<>();
+
+	/**
+	 * Default constructor.
+	 */
+	public Fragment() {
+	}
+
+	/**
+	 * Merges this fragment into an accumulated OpenAPI document.
+	 *
+	 * @param fullApi
+	 *            The document being assembled; its paths and schemas must be
+	 *            initialised.
+	 */
+	public void mergeInto(OpenAPI fullApi) {
+		fullApi.paths.pathItems.putAll(paths);
+		for (Map.Entry<String, PathItem> entry : fallbackPaths.entrySet()) {
+			fullApi.paths.pathItems.putIfAbsent(entry.getKey(), entry.getValue());
+		}
+		fullApi.components.schemas.putAll(schemas);
+	}
+
+	/**
+	 * Serializes this fragment using the OpenAPI emitter.
+	 *
+	 * @return JSON object with {@code paths} and {@code fallback} documents.
+	 */
+	public JSONObject toJson() {
+		OpenAPI primary = new OpenAPI();
+		primary.paths = new openapi.Paths();
+		primary.paths.pathItems = paths;
+		primary.components = new openapi.Components();
+		primary.components.schemas = schemas;
+		OpenAPI fallback = new OpenAPI();
+		fallback.paths = new openapi.Paths();
+		fallback.paths.pathItems = fallbackPaths;
+		JSONObject obj = new JSONObject();
+		obj.put("paths", openapi.Emit.toJson(primary));
+		obj.put("fallback", openapi.Emit.toJson(fallback));
+		return obj;
+	}
+
+	/**
+	 * Restores a fragment written by {@link #toJson()}.
+	 *
+	 * @param obj
+	 *            The serialized fragment.
+	 * @return The fragment.
+	 * @throws IOException
+	 *             if the JSON is not a serialized fragment.
+	 */
+	public static Fragment fromJson(JSONObject obj) throws IOException {
+		Fragment fragment = new Fragment();
+		OpenAPI primary = openapi.Parse.fromJson(obj.getJSONObject("paths"));
+		fragment.addPaths(primary);
+		fragment.addSchemas(primary);
+		fragment.addFallbackPaths(openapi.Parse.fromJson(obj.getJSONObject("fallback")));
+		return fragment;
+	}
+
+	/**
+	 * Adds overriding paths from an extractor result.
+	 *
+	 * @param api
+	 *            The extractor result.
+	 */
+	void addPaths(OpenAPI api) {
+		if (api.paths != null && api.paths.pathItems != null)
+			paths.putAll(api.paths.pathItems);
+	}
+
+	/**
+	 * Adds fallback paths from an extractor result, keeping earlier entries.
+	 *
+	 * @param api
+	 *            The extractor result.
+	 */
+	void addFallbackPaths(OpenAPI api) {
+		if (api.paths != null && api.paths.pathItems != null) {
+			for (Map.Entry<String, PathItem> entry : api.paths.pathItems.entrySet()) {
+				fallbackPaths.putIfAbsent(entry.getKey(), entry.getValue());
+			}
+		}
+	}
+
+	/**
+	 * Adds schemas from an extractor result.
+	 *
+	 * @param api
+	 *            The extractor result.
+	 */
+	void addSchemas(OpenAPI api) {
+		if (api.components != null && api.components.schemas != null)
+			schemas.putAll(api.components.schemas);
+	}
+}
@@ -0,0 +1,105 @@
+package cli;
+
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.json.JSONObject;
+
+/**
+ * Outcome of an in-memory generation: either the generated files, a zip
+ * archive of them, or an error message.
+ */
+public class InMemoryResult {
+
+	/**
+	 * Whether generation succeeded.
+	 */
+	public final boolean success;
+
+	/**
+	 * Generated files keyed by relative path; empty on failure.
+	 */
+	public final Map<String, String> files;
+
+	/**
+	 * The generated files as a zip archive, or null when they were returned as
+	 * {@link #files}.
+	 */
+	public final byte[] archive;
+
+	/**
+	 * The error message, or null on success.
+	 */
+	public final String error;
+
+	/**
+	 * Creates a result.
+	 *
+	 * @param success
+	 *            Whether generation succeeded.
+	 * @param files
+	 *            The generated files.
+	 * @param archive
+	 *            The zip archive, or null.
+	 * @param error
+	 *            The error message, or null.
+	 */
+	private InMemoryResult(boolean success, Map<String, String> files, byte[] archive, String error) {
+		this.success = success;
+		this.files = files;
+		this.archive = archive;
+		this.error = error;
+	}
+
+	/**
+	 * A successful result.
+	 *
+	 * @param files
+	 *            The generated files.
+	 * @return The result.
+	 */
+	public static InMemoryResult of(Map<String, String> files) {
+		return new InMemoryResult(true, files, null, null);
+	}
+
+	/**
+	 * A successful result carrying a zip archive instead of individual files.
+	 *
+	 * @param archive
+	 *            The zip archive.
+	 * @return The result.
+	 */
+	public static InMemoryResult archived(byte[] archive) {
+		return new InMemoryResult(true, new LinkedHashMap<>(), archive, null);
+	}
+
+	/**
+	 * A failed result.
+	 *
+	 * @param e
+	 *            The failure.
+	 * @return The result.
+	 */
+	public static InMemoryResult failure(Exception e) {
+		return new InMemoryResult(false, new LinkedHashMap<>(), null, e.getMessage() != null ? e.getMessage() : e.toString());
+	}
+
+	/**
+	 * Serializes the result as {@code {"success":true,"files":{...}}},
+	 * {@code {"success":true,"archive":"<base64 zip>"}} or
+	 * {@code {"success":false,"error":"..."}}.
+	 *
+	 * @return The JSON object.
+	 */
+	public JSONObject toJson() {
+		JSONObject json = new JSONObject();
+		json.put("success", success);
+		if (archive != null)
+			json.put("archive", Base64.getEncoder().encodeToString(archive));
+		else if (success)
+			json.put("files", new JSONObject(files));
+		else
+			json.put("error", error);
+		return json;
+	}
+}
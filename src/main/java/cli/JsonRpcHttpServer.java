@@ -0,0 +1,242 @@
+package cli;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Serves JSON-RPC over HTTP: every {@code POST} body is one message, answered
+ * in the response body. Connections are kept alive between requests and each
+ * request runs on its own pooled thread, so one slow generation does not hold
+ * up other clients. Requests are refused unless their {@code Host} names the
+ * server by address or as {@code localhost}, and any {@code Origin} is a
+ * loopback or the bound address, so neither a web page the user has open nor
+ * a domain rebound to this address can drive the server.
+ */
+public class JsonRpcHttpServer implements Closeable {
+
+	/**
+	 * Answers one JSON-RPC message.
+	 */
+	@FunctionalInterface
+	public interface Dispatcher {
+
+		/**
+		 * Answers one JSON-RPC message.
+		 *
+		 * @param request
+		 *            The request body.
+		 * @param shutdown
+		 *            Run when a {@code shutdown} request is received.
+		 * @param protocolVersion
+		 *            The client's {@code MCP-Protocol-Version} header, or null.
+		 * @return The response body, or null for notifications.
+		 */
+		String dispatch(String request, Runnable shutdown, String protocolVersion);
+	}
+
+	/**
+	 * The underlying server.
+	 */
+	private final HttpServer server;
+
+	/**
+	 * Runs one thread per in-flight request.
+	 */
+	private final ExecutorService executor;
+
+	/**
+	 * Released when a {@code shutdown} request has been answered.
+	 */
+	private final CountDownLatch stopped = new CountDownLatch(1);
+
+	/**
+	 * The address bound, as given.
+	 */
+	private final String listen;
+
+	/**
+	 * Binds and starts the server.
+	 *
+	 * @param listen
+	 *            The address to bind.
+	 * @param port
+	 *            The port to bind; 0 picks a free one.
+	 * @param dispatch
+	 *            Answers each request body.
+	 * @throws IOException
+	 *             if the address cannot be bound.
+	 */
+	public JsonRpcHttpServer(String listen, int port, Dispatcher dispatch)
+			throws IOException {
+		this.listen = listen;
+		server = HttpServer.create(new InetSocketAddress(listen, port), 0);
+		executor = Executors.newCachedThreadPool();
+		server.setExecutor(executor);
+		server.createContext("/", exchange -> handle(exchange, dispatch));
+		server.start();
+	}
+
+	/**
+	 * Handles one HTTP exchange.
+	 *
+	 * @param exchange
+	 *            The exchange.
+	 * @param dispatch
+	 *            The JSON-RPC dispatcher.
+	 * @throws IOException
+	 *             if the connection fails.
+	 */
+	private void handle(HttpExchange exchange, Dispatcher dispatch) throws IOException {
+		boolean[] shutdown = {false};
+		try {
+			String request = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8).trim();
+			if (!allowed(exchange)) {
+				send(exchange, 403, "text/plain", "Forbidden");
+				return;
+			}
+			if (!"POST".equals(exchange.getRequestMethod())) {
+				exchange.getResponseHeaders().set("Allow", "POST");
+				send(exchange, 405, "text/plain", "Method Not Allowed");
+				return;
+			}
+			String response = request.isEmpty()
+					? null
+					: dispatch.dispatch(request, () -> shutdown[0] = true,
+							exchange.getRequestHeaders().getFirst("MCP-Protocol-Version"));
+			if (response == null) {
+				// Notifications have no reply
+				exchange.sendResponseHeaders(204, -1);
+			} else {
+				send(exchange, 200, "application/json", response);
+			}
+		} finally {
+			exchange.close();
+		}
+		// Only release the server once the reply has been flushed
+		if (shutdown[0])
+			stopped.countDown();
+	}
+
+	/**
+	 * Whether a request comes from a local client. Its {@code Host} must be an
+	 * IP address or {@code localhost} on the bound port, not a name that
+	 * resolves here; an {@code Origin}, which browsers send with cross-site
+	 * requests, must be a loopback address or the bound address.
+	 *
+	 * @param exchange
+	 *            The exchange.
+	 * @return true if the request may be served.
+	 */
+	private boolean allowed(HttpExchange exchange) {
+		URI host = authority("http://" + exchange.getRequestHeaders().getFirst("Host"));
+		if (host == null || host.getPort() != -1 && host.getPort() != getPort()
+				|| !isAddress(host.getHost()) && !"localhost".equalsIgnoreCase(host.getHost()))
+			return false;
+		String origin = exchange.getRequestHeaders().getFirst("Origin");
+		if (origin == null)
+			return true;
+		URI uri = authority(origin);
+		if (uri == null)
+			return false;
+		String name = uri.getHost();
+		if ("localhost".equalsIgnoreCase(name) || name.equals(listen))
+			return true;
+		try {
+			return isAddress(name) && InetAddress.getByName(name).isLoopbackAddress();
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Parses a URI that must name a host.
+	 *
+	 * @param text
+	 *            The URI.
+	 * @return The URI, or null if it is malformed or names no host.
+	 */
+	private static URI authority(String text) {
+		try {
+			URI uri = new URI(text);
+			return uri.getHost() != null ? uri : null;
+		} catch (URISyntaxException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Whether a host is an IP address literal, which needs no name lookup.
+	 *
+	 * @param host
+	 *            The host, with IPv6 addresses in brackets.
+	 * @return true for an IPv4 or bracketed IPv6 address.
+	 */
+	private static boolean isAddress(String host) {
+		return host.startsWith("[") || host.matches("\\d{1,3}(\\.\\d{1,3}){3}");
+	}
+
+	/**
+	 * Sends a response body. A fixed length keeps the connection reusable for
+	 * the next request; a status without one would leave the client reading
+	 * until the connection closes.
+	 *
+	 * @param exchange
+	 *            The exchange.
+	 * @param status
+	 *            The HTTP status.
+	 * @param contentType
+	 *            The body's media type.
+	 * @param text
+	 *            The body.
+	 * @throws IOException
+	 *             if the connection fails.
+	 */
+	private static void send(HttpExchange exchange, int status, String contentType, String text) throws IOException {
+		byte[] data = text.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", contentType);
+		exchange.sendResponseHeaders(status, data.length);
+		try (OutputStream body = exchange.getResponseBody()) {
+			body.write(data);
+		}
+	}
+
+	/**
+	 * The bound port.
+	 *
+	 * @return The port, useful when 0 was requested.
+	 */
+	public int getPort() {
+		return server.getAddress().getPort();
+	}
+
+	/**
+	 * Blocks until a {@code shutdown} request has been answered.
+	 *
+	 * @throws InterruptedException
+	 *             if the wait is interrupted.
+	 */
+	public void awaitShutdown() throws InterruptedException {
+		stopped.await();
+	}
+
+	/**
+	 * Stops accepting requests and releases the port.
+	 */
+	@Override
+	public void close() {
+		server.stop(0);
+		executor.shutdownNow();
+		stopped.countDown();
+	}
+}
@@ -0,0 +1,146 @@
+package cli;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Writes generated files, leaving files whose content is already identical
+ * untouched so their timestamps (and incremental build caches) survive.
+ */
+public class OutputWriter {
+
+	/**
+	 * Number of files actually written.
+	 */
+	private final AtomicInteger written = new AtomicInteger();
+
+	/**
+	 * Number of files skipped because they were unchanged.
+	 */
+	private final AtomicInteger skipped = new AtomicInteger();
+
+	/**
+	 * Default constructor.
+	 */
+	public OutputWriter() {
+	}
+
+	/**
+	 * Writes a file unless it already holds exactly this content.
+	 *
+	 * @param file
+	 *            The target file.
+	 * @param content
+	 *            The content to write.
+	 * @return true if the file was written, false if it was unchanged.
+	 * @throws IOException
+	 *             if the file cannot be read or written.
+	 */
+	public boolean write(File file, String content) throws IOException {
+		byte[] data = content.getBytes(StandardCharsets.UTF_8);
+		if (file.isFile() && file.length() == data.length
+				&& Arrays.equals(Files.readAllBytes(file.toPath()), data)) {
+			skipped.incrementAndGet();
+			return false;
+		}
+		writeAtomically(file, data);
+		written.incrementAndGet();
+		return true;
+	}
+
+	/**
+	 * Writes a file whose current content is already known, skipping the
+	 * comparison read.
+	 *
+	 * @param file
+	 *            The target file.
+	 * @param content
+	 *            The content to write.
+	 * @param current
+	 *            The file's current content, or null to compare against disk.
+	 * @return true if the file was written, false if it was unchanged.
+	 * @throws IOException
+	 *             if the file cannot be read or written.
+	 */
+	public boolean write(File file, String content, String current) throws IOException {
+		if (current == null)
+			return write(file, content);
+		if (current.equals(content)) {
+			skipped.incrementAndGet();
+			return false;
+		}
+		writeAtomically(file, content.getBytes(StandardCharsets.UTF_8));
+		written.incrementAndGet();
+		return true;
+	}
+
+	/**
+	 * Permissions given to new files on POSIX file systems, as the usual umask
+	 * would.
+	 */
+	private static final Set<PosixFilePermission> NEW_FILE_PERMISSIONS = PosixFilePermissions.fromString("rw-r--r--");
+
+	/**
+	 * Writes to a temporary file next to the target and moves it into place, so
+	 * readers never see a truncated file. The target keeps its permissions; the
+	 * temporary file is created owner-only, so they are copied over first.
+	 *
+	 * @param file
+	 *            The target file.
+	 * @param data
+	 *            The bytes to write.
+	 * @throws IOException
+	 *             if the file cannot be written.
+	 */
+	private static void writeAtomically(File file, byte[] data) throws IOException {
+		File parent = file.getAbsoluteFile().getParentFile();
+		parent.mkdirs();
+		Path tmp = Files.createTempFile(parent.toPath(), "." + file.getName(), ".tmp");
+		try {
+			Files.write(tmp, data);
+			if (tmp.getFileSystem().supportedFileAttributeViews().contains("posix"))
+				Files.setPosixFilePermissions(tmp,
+						file.exists() ? Files.getPosixFilePermissions(file.toPath()) : NEW_FILE_PERMISSIONS);
+			// A sibling in the same directory can always be renamed over the target
+			Files.move(tmp, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(tmp);
+		}
+	}
+
+	/**
+	 * Number of files actually written.
+	 *
+	 * @return The written count.
+	 */
+	public int getWritten() {
+		return written.get();
+	}
+
+	/**
+	 * Number of files skipped because they were unchanged.
+	 *
+	 * @return The skipped count.
+	 */
+	public int getSkipped() {
+		return skipped.get();
+	}
+
+	/**
+	 * Summarises the counts for the CLI.
+	 *
+	 * @return e.g. {@code "3 written, 12 unchanged"}.
+	 */
+	public String summary() {
+		return getWritten() + " written, " + getSkipped() + " unchanged";
+	}
+}
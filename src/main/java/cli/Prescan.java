@@ -0,0 +1,131 @@
+package cli;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Cheap lexical check of which extractors could possibly match a source file,
+ * run before any AST is built. Each marker is a substring the corresponding
+ * parser cannot match without, so a miss never changes the extracted document.
+ */
+public class Prescan {
+
+	/**
+	 * Hit and miss counts of the scans made during one extraction run. Safe to
+	 * share between extraction threads.
+	 */
+	public static final class Stats {
+
+		/**
+		 * Number of scanned files that needed at least one extractor.
+		 */
+		private final AtomicInteger hits = new AtomicInteger();
+
+		/**
+		 * Number of scanned files skipped entirely.
+		 */
+		private final AtomicInteger misses = new AtomicInteger();
+
+		/**
+		 * Creates empty counts.
+		 */
+		public Stats() {
+		}
+
+		/**
+		 * Counts a scan.
+		 *
+		 * @param scan
+		 *            The scan result.
+		 */
+		void record(Prescan scan) {
+			if (scan.contributes())
+				hits.incrementAndGet();
+			else
+				misses.incrementAndGet();
+		}
+
+		/**
+		 * Number of scanned files that needed at least one extractor.
+		 *
+		 * @return The hit count.
+		 */
+		public int getHits() {
+			return hits.get();
+		}
+
+		/**
+		 * Number of scanned files skipped entirely.
+		 *
+		 * @return The miss count.
+		 */
+		public int getMisses() {
+			return misses.get();
+		}
+	}
+
+	/**
+	 * Route clients: {@code HttpResponse} methods built on {@code baseUrl}, or
+	 * {@code @path*} Javadoc tags.
+	 */
+	public final boolean routes;
+
+	/**
+	 * Mock servers: {@code server.createContext(...)} calls.
+	 */
+	public final boolean mocks;
+
+	/**
+	 * DTO schemas: any class or enum declaration.
+	 */
+	public final boolean classes;
+
+	/**
+	 * JPA entities: classes annotated with {@code Entity}.
+	 */
+	public final boolean orm;
+
+	/**
+	 * Generated CLIs: a {@code printHelp} method.
+	 */
+	public final boolean cli;
+
+	/**
+	 * Integration tests: classes named {@code *IntegrationTest}.
+	 */
+	public final boolean tests;
+
+	/**
+	 * Scans a source file.
+	 *
+	 * @param source
+	 *            The Java source.
+	 */
+	private Prescan(String source) {
+		routes = (source.contains("HttpResponse") && source.contains("baseUrl")) || source.contains("@path");
+		mocks = source.contains("createContext");
+		classes = source.contains("class") || source.contains("enum");
+		orm = source.contains("Entity");
+		cli = source.contains("printHelp");
+		tests = source.contains("IntegrationTest");
+	}
+
+	/**
+	 * Scans a source file.
+	 *
+	 * @param source
+	 *            The Java source.
+	 * @return The scan result.
+	 */
+	public static Prescan scan(String source) {
+		return new Prescan(source);
+	}
+
+	/**
+	 * Whether any extractor could match.
+	 *
+	 * @return true if the file has to be extracted.
+	 */
+	public boolean contributes() {
+		return routes || mocks || classes || orm || cli || tests;
+	}
+}
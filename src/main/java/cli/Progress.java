@@ -0,0 +1,19 @@
+package cli;
+
+/**
+ * Receives progress of a multi-step generation, one call per finished step.
+ */
+@FunctionalInterface
+public interface Progress {
+	/**
+	 * Reports a finished step.
+	 *
+	 * @param step
+	 *            Name of the step that finished, e.g. an emitter.
+	 * @param done
+	 *            Number of steps finished so far.
+	 * @param total
+	 *            Total number of steps.
+	 */
+	void report(String step, int done, int total);
+}
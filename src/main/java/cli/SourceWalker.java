@@ -0,0 +1,385 @@
+package cli;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Finds the Java sources below a directory with {@link Files#walkFileTree},
+ * pruning hidden and build directories, {@code .gitignore}d paths and
+ * {@code --exclude} globs, and handing each file to a listener as soon as it is
+ * found. Build directories are only pruned at the walk's root and next to a
+ * build file, so source packages that happen to be named {@code build} or
+ * {@code out} are still walked.
+ */
+public class SourceWalker {
+
+	/**
+	 * Directory names skipped by default at a module root, in addition to hidden
+	 * directories.
+	 */
+	public static final Set<String> BUILD_DIRS = Set.of("target", "build", "out", "node_modules");
+
+	/**
+	 * Files marking a module root, whose build directories are pruned.
+	 */
+	private static final List<String> MODULE_FILES = List.of("pom.xml", "build.gradle", "build.gradle.kts",
+			"package.json");
+
+	/**
+	 * Receives each source file as it is found.
+	 */
+	@FunctionalInterface
+	public interface Listener {
+		/**
+		 * Handles one source file.
+		 *
+		 * @param file
+		 *            The Java file.
+		 * @throws IOException
+		 *             if handling the file fails; the walk stops.
+		 */
+		void found(File file) throws IOException;
+	}
+
+	/**
+	 * A compiled glob or {@code .gitignore} pattern.
+	 */
+	private static class Rule {
+		/**
+		 * Directory the pattern is relative to.
+		 */
+		final Path base;
+
+		/**
+		 * The compiled glob.
+		 */
+		final PathMatcher matcher;
+
+		/**
+		 * Whether the pattern is matched against the whole relative path rather
+		 * than the file name.
+		 */
+		final boolean anchored;
+
+		/**
+		 * Whether the pattern only matches directories.
+		 */
+		final boolean dirOnly;
+
+		/**
+		 * Whether a match re-includes the path ({@code !pattern}).
+		 */
+		final boolean negate;
+
+		/**
+		 * Compiles a pattern.
+		 *
+		 * @param base
+		 *            Directory the pattern is relative to.
+		 * @param pattern
+		 *            The pattern, in {@code .gitignore} syntax.
+		 */
+		Rule(Path base, String pattern) {
+			boolean neg = pattern.startsWith("!");
+			if (neg)
+				pattern = pattern.substring(1);
+			boolean dir = pattern.endsWith("/");
+			if (dir)
+				pattern = pattern.substring(0, pattern.length() - 1);
+			// A slash anywhere but the end ties the pattern to the base directory
+			boolean anch = pattern.contains("/");
+			if (pattern.startsWith("/"))
+				pattern = pattern.substring(1);
+			if (pattern.startsWith("**/")) {
+				pattern = "{" + pattern.substring(3) + ",**/" + pattern.substring(3) + "}";
+			}
+			this.base = base;
+			this.matcher = FileSystems.getDefault().getPathMatcher("glob:" + pattern);
+			this.anchored = anch;
+			this.dirOnly = dir;
+			this.negate = neg;
+		}
+
+		/**
+		 * Tests a path against this rule.
+		 *
+		 * @param path
+		 *            The absolute path, strictly below the base.
+		 * @param isDir
+		 *            Whether the path is a directory.
+		 * @return true if the pattern matches.
+		 */
+		boolean matches(Path path, boolean isDir) {
+			if (dirOnly && !isDir)
+				return false;
+			return anchored ? matcher.matches(base.relativize(path)) : matcher.matches(path.getFileName());
+		}
+	}
+
+	/**
+	 * Only files matching one of these globs are reported; empty means all.
+	 */
+	private final List<String> includes = new ArrayList<>();
+
+	/**
+	 * Files and directories matching one of these globs are skipped.
+	 */
+	private final List<String> excludes = new ArrayList<>();
+
+	/**
+	 * Whether {@code .gitignore} files are honoured.
+	 */
+	private final boolean gitignore;
+
+	/**
+	 * Creates a walker with the default rules.
+	 */
+	public SourceWalker() {
+		this(null, null, true);
+	}
+
+	/**
+	 * Creates a walker.
+	 *
+	 * @param include
+	 *            Comma-separated include globs, or null for all Java files.
+	 * @param exclude
+	 *            Comma-separated exclude globs, or null.
+	 * @param gitignore
+	 *            Whether {@code .gitignore} files are honoured.
+	 */
+	public SourceWalker(String include, String exclude, boolean gitignore) {
+		this.gitignore = gitignore;
+		split(include, includes);
+		split(exclude, excludes);
+	}
+
+	/**
+	 * Walks a directory, or accepts a single file, reporting Java sources in
+	 * directory order.
+	 *
+	 * @param root
+	 *            The directory or file.
+	 * @param listener
+	 *            Receives each source file.
+	 * @throws IOException
+	 *             if the listener fails.
+	 */
+	public void walk(File root, Listener listener) throws IOException {
+		walk(root, listener, null);
+	}
+
+	/**
+	 * Walks a directory, or accepts a single file, reporting Java sources and
+	 * the directories that are not pruned in directory order.
+	 *
+	 * @param root
+	 *            The directory or file.
+	 * @param listener
+	 *            Receives each source file.
+	 * @param directories
+	 *            Receives each directory walked, the root included, before its
+	 *            contents; may be null.
+	 * @throws IOException
+	 *             if a listener fails.
+	 */
+	public void walk(File root, Listener listener, Listener directories) throws IOException {
+		if (root.isFile()) {
+			if (root.getName().endsWith(".java"))
+				listener.found(root);
+			return;
+		}
+		if (!root.isDirectory())
+			return;
+		// Files are reported relative to the root as given, like File.listFiles would
+		Path start = root.toPath();
+		List<Rule> globs = compile(includes, start);
+		List<Rule> excluded = compile(excludes, start);
+		Deque<List<Rule>> ignores = new ArrayDeque<>();
+		Files.walkFileTree(start, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+				if (!dir.equals(start)) {
+					String name = dir.getFileName().toString();
+					if (name.startsWith(".") || BUILD_DIRS.contains(name) && isModuleRoot(dir.getParent(), start)
+							|| matchesAny(excluded, dir, true) || ignored(ignores, dir, true))
+						return FileVisitResult.SKIP_SUBTREE;
+				}
+				if (directories != null)
+					directories.found(dir.toFile());
+				ignores.push(gitignore ? readGitignore(dir) : List.of());
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+				if (attrs.isRegularFile() && file.getFileName().toString().endsWith(".java")
+						&& (globs.isEmpty() || matchesAny(globs, file, false)) && !matchesAny(excluded, file, false)
+						&& !ignored(ignores, file, false))
+					listener.found(file.toFile());
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFileFailed(Path file, IOException exc) {
+				// Unreadable entries are skipped rather than failing the whole walk
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult postVisitDirectory(Path dir, IOException exc) {
+				ignores.pop();
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+
+	/**
+	 * Walks a directory and collects the Java sources.
+	 *
+	 * @param root
+	 *            The directory or file.
+	 * @return The Java files, in directory order.
+	 */
+	public List<File> list(File root) {
+		List<File> files = new ArrayList<>();
+		try {
+			walk(root, files::add);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return files;
+	}
+
+	/**
+	 * Whether a directory's build directories are pruned: the walk's root and
+	 * any directory holding a build file.
+	 *
+	 * @param dir
+	 *            The directory.
+	 * @param start
+	 *            The walk's root.
+	 * @return true for a module root.
+	 */
+	private static boolean isModuleRoot(Path dir, Path start) {
+		if (dir.equals(start))
+			return true;
+		for (String name : MODULE_FILES) {
+			if (Files.isRegularFile(dir.resolve(name)))
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Splits a comma-separated list of globs.
+	 *
+	 * @param globs
+	 *            The flag value, may be null.
+	 * @param into
+	 *            Receives the non-empty globs.
+	 */
+	private static void split(String globs, List<String> into) {
+		if (globs == null)
+			return;
+		for (String glob : globs.split(",")) {
+			if (!glob.trim().isEmpty())
+				into.add(glob.trim());
+		}
+	}
+
+	/**
+	 * Compiles command-line globs relative to the walk's start directory.
+	 *
+	 * @param globs
+	 *            The globs.
+	 * @param start
+	 *            The start directory.
+	 * @return The compiled rules.
+	 */
+	private static List<Rule> compile(List<String> globs, Path start) {
+		List<Rule> rules = new ArrayList<>();
+		for (String glob : globs)
+			rules.add(new Rule(start, glob));
+		return rules;
+	}
+
+	/**
+	 * Tests a path against a list of rules, ignoring negation.
+	 *
+	 * @param rules
+	 *            The rules.
+	 * @param path
+	 *            The absolute path.
+	 * @param isDir
+	 *            Whether the path is a directory.
+	 * @return true if any rule matches.
+	 */
+	private static boolean matchesAny(List<Rule> rules, Path path, boolean isDir) {
+		for (Rule r : rules) {
+			if (r.matches(path, isDir))
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Applies the {@code .gitignore} rules in scope; the last matching rule
+	 * wins, deeper files override shallower ones.
+	 *
+	 * @param scopes
+	 *            Rules of each open directory, innermost first.
+	 * @param path
+	 *            The absolute path.
+	 * @param isDir
+	 *            Whether the path is a directory.
+	 * @return true if the path is ignored.
+	 */
+	private static boolean ignored(Deque<List<Rule>> scopes, Path path, boolean isDir) {
+		for (List<Rule> rules : scopes) {
+			for (int i = rules.size() - 1; i >= 0; i--) {
+				if (rules.get(i).matches(path, isDir))
+					return !rules.get(i).negate;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Reads the {@code .gitignore} of a directory.
+	 *
+	 * @param dir
+	 *            The directory.
+	 * @return Its rules, or an empty list if it has none.
+	 */
+	private static List<Rule> readGitignore(Path dir) {
+		Path file = dir.resolve(".gitignore");
+		if (!Files.isRegularFile(file))
+			return List.of();
+		List<Rule> rules = new ArrayList<>();
+		try {
+			for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+				String pattern = line.trim();
+				if (!pattern.isEmpty() && !pattern.startsWith("#"))
+					rules.add(new Rule(dir, pattern));
+			}
+		} catch (Exception e) {
+			// An unreadable or malformed .gitignore is treated as empty
+		}
+		return rules;
+	}
+}
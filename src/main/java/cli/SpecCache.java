@@ -0,0 +1,203 @@
+package cli;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import openapi.OpenAPI;
+import openapi.RefResolver;
+import org.json.JSONObject;
+
+/**
+ * Size-bounded, least-recently-used cache of parsed specifications, so a
+ * long-running server does not re-parse and re-bundle the same spec on every
+ * call. Parsed models are shared between callers and must be treated as
+ * read-only. A spec bundled from local files referenced with {@code $ref} is
+ * parsed again once any of them changes modification time or size; specs
+ * referencing remote documents are not cached.
+ */
+public class SpecCache {
+
+	/**
+	 * Maximum number of parsed specs kept.
+	 */
+	private final int capacity;
+
+	/**
+	 * Parsed specs keyed by content hash, in access order.
+	 */
+	private final Map<String, Entry> entries;
+
+	/**
+	 * Number of lookups served from the cache.
+	 */
+	private final AtomicInteger hits = new AtomicInteger();
+
+	/**
+	 * Number of lookups that required a parse.
+	 */
+	private final AtomicInteger misses = new AtomicInteger();
+
+	/**
+	 * A parsed spec and the referenced files it was bundled from.
+	 */
+	private static final class Entry {
+
+		/**
+		 * The parsed model.
+		 */
+		final OpenAPI api;
+
+		/**
+		 * The stamp of each referenced file when it was read.
+		 */
+		final Map<File, String> stamps;
+
+		/**
+		 * Creates an entry.
+		 *
+		 * @param api
+		 *            The parsed model.
+		 * @param stamps
+		 *            The stamp of each referenced file.
+		 */
+		Entry(OpenAPI api, Map<File, String> stamps) {
+			this.api = api;
+			this.stamps = stamps;
+		}
+
+		/**
+		 * Whether no referenced file has changed since the spec was parsed.
+		 *
+		 * @return true if the model is still current.
+		 */
+		boolean isCurrent() {
+			for (Map.Entry<File, String> e : stamps.entrySet()) {
+				if (!stamp(e.getKey()).equals(e.getValue()))
+					return false;
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * Creates a cache.
+	 *
+	 * @param capacity
+	 *            Maximum number of parsed specs kept; 0 disables caching.
+	 */
+	public SpecCache(int capacity) {
+		this.capacity = capacity;
+		this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+				return size() > SpecCache.this.capacity;
+			}
+		};
+	}
+
+	/**
+	 * Returns the parsed spec for this content, parsing it on a miss.
+	 *
+	 * @param content
+	 *            The JSON or YAML spec text.
+	 * @param baseUri
+	 *            The base URI that references are resolved against.
+	 * @return The parsed, bundled model.
+	 * @throws IOException
+	 *             if the spec is missing or cannot be parsed; failures are not
+	 *             cached.
+	 */
+	public OpenAPI parse(String content, String baseUri) throws IOException {
+		if (content == null)
+			throw new IOException("No spec content");
+		// The base URI is part of the key because relative $refs resolve against it
+		String key = ExtractionCache.key(baseUri + "\u0000" + content);
+		Entry entry;
+		synchronized (entries) {
+			entry = entries.get(key);
+		}
+		if (entry != null && entry.isCurrent()) {
+			hits.incrementAndGet();
+			return entry.api;
+		}
+		misses.incrementAndGet();
+		RefResolver resolver = new RefResolver();
+		OpenAPI api;
+		try (BufferedReader in = new BufferedReader(new StringReader(content))) {
+			api = openapi.Parse.fromReader(in, baseUri, resolver);
+		}
+		Map<File, String> stamps = new HashMap<>();
+		for (String uri : resolver.cache.keySet()) {
+			if (!uri.startsWith("file:"))
+				return api;
+			File file = new File(URI.create(uri));
+			stamps.put(file, stamp(file));
+		}
+		synchronized (entries) {
+			entries.put(key, new Entry(api, stamps));
+		}
+		return api;
+	}
+
+	/**
+	 * Identifies a version of a file by its modification time and size.
+	 *
+	 * @param file
+	 *            The file.
+	 * @return The stamp; a missing file has its own.
+	 */
+	private static String stamp(File file) {
+		return file.lastModified() + ":" + file.length();
+	}
+
+	/**
+	 * Number of lookups served from the cache.
+	 *
+	 * @return The hit count.
+	 */
+	public int getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * Number of lookups that required a parse.
+	 *
+	 * @return The miss count.
+	 */
+	public int getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * Number of parsed specs currently held.
+	 *
+	 * @return The entry count.
+	 */
+	public int size() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+
+	/**
+	 * Summarises the cache for the {@code stats} JSON-RPC method.
+	 *
+	 * @return {@code {"hits":..,"misses":..,"size":..,"capacity":..}}.
+	 */
+	public JSONObject toJson() {
+		JSONObject json = new JSONObject();
+		json.put("hits", getHits());
+		json.put("misses", getMisses());
+		json.put("size", size());
+		json.put("capacity", capacity);
+		return json;
+	}
+}
@@ -0,0 +1,227 @@
+package cli;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import openapi.OpenAPI;
+
+/**
+ * Keeps per-file fragments warm and re-extracts only the Java files touched
+ * since the last refresh, using {@link WatchService} to detect changes. Only
+ * the directories the {@link SourceWalker} walks are watched, so hidden,
+ * build, ignored and excluded trees cost no watches and trigger no rebuilds.
+ */
+public class Watcher implements Closeable {
+
+	/**
+	 * Root directory being watched.
+	 */
+	private final File root;
+
+	/**
+	 * Finds the Java files and the directories to watch under the root.
+	 */
+	private final SourceWalker walker;
+
+	/**
+	 * Number of worker threads for re-extraction.
+	 */
+	private final int jobs;
+
+	/**
+	 * Quiet period that ends a batch of events, in milliseconds.
+	 */
+	private final long debounceMillis;
+
+	/**
+	 * Last extracted fragment of every known file.
+	 */
+	private final Map<File, Fragment> fragments = new HashMap<>();
+
+	/**
+	 * Directory watch keys mapped to the directory they watch.
+	 */
+	private final Map<WatchKey, Path> keys = new HashMap<>();
+
+	/**
+	 * Directories registered so far.
+	 */
+	private final Set<Path> registered = new HashSet<>();
+
+	/**
+	 * The underlying watch service.
+	 */
+	private final WatchService service;
+
+	/**
+	 * Creates a watcher.
+	 *
+	 * @param root
+	 *            The directory to watch.
+	 * @param walker
+	 *            Finds the Java files, in merge order, and the directories to
+	 *            watch.
+	 * @param jobs
+	 *            Number of worker threads for re-extraction.
+	 * @param debounceMillis
+	 *            Quiet period that ends a batch of events.
+	 * @throws IOException
+	 *             if the watch service cannot be created.
+	 */
+	public Watcher(File root, SourceWalker walker, int jobs, long debounceMillis) throws IOException {
+		this.root = root;
+		this.walker = walker;
+		this.jobs = jobs;
+		this.debounceMillis = debounceMillis;
+		this.service = FileSystems.getDefault().newWatchService();
+		if (root.isDirectory())
+			registerAll();
+		else
+			register(root.getAbsoluteFile().getParentFile().toPath());
+	}
+
+	/**
+	 * Re-extracts the given files, plus any file not seen before, and merges all
+	 * fragments. Fragments of deleted files are dropped.
+	 *
+	 * @param changed
+	 *            Files known to have changed.
+	 * @return The merged OpenAPI document.
+	 * @throws IOException
+	 *             if a file cannot be read.
+	 */
+	public OpenAPI refresh(Set<File> changed) throws IOException {
+		List<File> files = walker.list(root);
+		List<File> stale = new ArrayList<>();
+		for (File f : files) {
+			if (changed.contains(f) || !fragments.containsKey(f))
+				stale.add(f);
+		}
+		List<Fragment> fresh = Extractor.extractAll(stale, jobs);
+		fragments.keySet().retainAll(new LinkedHashSet<>(files));
+		for (int i = 0; i < stale.size(); i++)
+			fragments.put(stale.get(i), fresh.get(i));
+		OpenAPI fullApi = Extractor.newDocument();
+		for (File f : files)
+			fragments.get(f).mergeInto(fullApi);
+		return fullApi;
+	}
+
+	/**
+	 * Blocks until Java files change, then keeps collecting events until the
+	 * tree has been quiet for the debounce period.
+	 *
+	 * @return The changed, created or deleted Java files.
+	 * @throws InterruptedException
+	 *             if interrupted while waiting.
+	 * @throws IOException
+	 *             if a new directory cannot be registered.
+	 */
+	public Set<File> awaitChanges() throws InterruptedException, IOException {
+		Set<File> changed = new LinkedHashSet<>();
+		WatchKey key = service.take();
+		while (key != null) {
+			collect(key, changed);
+			key = service.poll(debounceMillis, TimeUnit.MILLISECONDS);
+			if (key == null && changed.isEmpty())
+				key = service.take();
+		}
+		return changed;
+	}
+
+	/**
+	 * Drains one watch key into the changed set.
+	 *
+	 * @param key
+	 *            The signalled key.
+	 * @param changed
+	 *            Accumulated changed Java files.
+	 * @throws IOException
+	 *             if a new directory cannot be registered.
+	 */
+	private void collect(WatchKey key, Set<File> changed) throws IOException {
+		Path dir = keys.get(key);
+		for (WatchEvent<?> event : key.pollEvents()) {
+			if (dir == null || event.kind() == StandardWatchEventKinds.OVERFLOW) {
+				// Lost events: treat every known file as changed
+				changed.addAll(fragments.keySet());
+				continue;
+			}
+			Path child = dir.resolve((Path) event.context());
+			if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(child)) {
+				// Walked from the root, so the new tree is pruned with the same rules
+				changed.addAll(registerAll());
+			} else if (child.toString().endsWith(".java")) {
+				changed.add(child.toFile());
+			}
+		}
+		if (!key.reset()) {
+			// Forgotten, so the directory is registered again if it is recreated
+			keys.remove(key);
+			registered.remove(dir);
+		}
+	}
+
+	/**
+	 * Registers the directories the walker visits that are not watched yet.
+	 *
+	 * @return The Java files in those directories.
+	 * @throws IOException
+	 *             if a directory cannot be registered.
+	 */
+	private List<File> registerAll() throws IOException {
+		List<File> found = new ArrayList<>();
+		Set<Path> fresh = new HashSet<>();
+		walker.walk(root, file -> {
+			if (fresh.contains(file.toPath().getParent()))
+				found.add(file);
+		}, dir -> {
+			if (!registered.contains(dir.toPath())) {
+				register(dir.toPath());
+				fresh.add(dir.toPath());
+			}
+		});
+		return found;
+	}
+
+	/**
+	 * Registers a single directory with the watch service.
+	 *
+	 * @param dir
+	 *            The directory.
+	 * @throws IOException
+	 *             if the directory cannot be registered.
+	 */
+	private void register(Path dir) throws IOException {
+		WatchKey key = dir.register(service, StandardWatchEventKinds.ENTRY_CREATE,
+				StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+		keys.put(key, dir);
+		registered.add(dir);
+	}
+
+	/**
+	 * Closes the watch service.
+	 *
+	 * @throws IOException
+	 *             if closing fails.
+	 */
+	@Override
+	public void close() throws IOException {
+		service.close();
+	}
+}
@@ -2,6 +2,8 @@ package dao;
 
 import openapi.OpenAPI;
 import openapi.Schema;
+import sink.FileSink;
+import sink.MapSink;
 import com.github.javaparser.StaticJavaParser;
 import com.github.javaparser.ast.CompilationUnit;
 import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
@@ -28,9 +30,23 @@ public class Emit {
 	 * @return Map of filenames to generated Java source.
 	 */
 	public static Map<String, String> emitModular(OpenAPI model) {
-		Map<String, String> files = new java.util.HashMap<>();
+		MapSink sink = new MapSink();
+		emitModular(model, sink);
+		return sink.files;
+	}
+
+	/**
+	 * Emits Modular Java code for DAOs based on the OpenAPI models, handing each
+	 * file to the sink as soon as it is printed.
+	 *
+	 * @param model
+	 *            The OpenAPI model.
+	 * @param sink
+	 *            Receives each generated file.
+	 */
+	public static void emitModular(OpenAPI model, FileSink sink) {
 		if (model.components == null || model.components.schemas == null)
-			return files;
+			return;
 
 		// Base Dao interface
 		CompilationUnit genericDaoCu = new CompilationUnit();
@@ -56,7 +72,7 @@ public class Emit {
 		genericDao.addMethod("list", Modifier.Keyword.PUBLIC).setBody(null).setType("List<T>")
 				.addThrownException(StaticJavaParser.parseClassOrInterfaceType("exceptions.ServerException"))
 				.setJavadocComment("Lists all entities.");
-		files.put("mocks/Dao.java", genericDaoCu.toString());
+		sink.write("mocks/Dao.java", genericDaoCu.toString());
 
 		for (Map.Entry<String, Schema> entry : model.components.schemas.entrySet()) {
 			String className = entry.getKey().replaceAll("[^a-zA-Z0-9_]", "");
@@ -74,7 +90,7 @@ public class Emit {
 				cu.findAll(ClassOrInterfaceDeclaration.class)
 						.forEach(c -> c.setModifier(Modifier.Keyword.PUBLIC, true));
 
-				files.put("mocks/" + className + "Daos.java", cu.toString());
+				sink.write("mocks/" + className + "Daos.java", cu.toString());
 			}
 		}
 
@@ -82,7 +98,7 @@ public class Emit {
 		cfgCu.setPackageDeclaration("mocks");
 		emitDbConfig(cfgCu);
 		cfgCu.findAll(ClassOrInterfaceDeclaration.class).forEach(c -> c.setModifier(Modifier.Keyword.PUBLIC, true));
-		files.put("mocks/DbConfig.java", cfgCu.toString());
+		sink.write("mocks/DbConfig.java", cfgCu.toString());
 
 		CompilationUnit factCu = new CompilationUnit();
 		factCu.setPackageDeclaration("mocks");
@@ -93,9 +109,7 @@ public class Emit {
 		factCu.addImport("jakarta.persistence.Persistence");
 		emitDaoFactory(factCu, model);
 		factCu.findAll(ClassOrInterfaceDeclaration.class).forEach(c -> c.setModifier(Modifier.Keyword.PUBLIC, true));
-		files.put("mocks/DaoFactory.java", factCu.toString());
-
-		return files;
+		sink.write("mocks/DaoFactory.java", factCu.toString());
 	}
 
 	/**
@@ -28,10 +28,8 @@ public class Emit {
 	 * @param noWrapping
 	 *            Whether to remove the outer wrapper (paths/components).
 	 * @return Generated JSON.
-	 * @throws Exception
-	 *             If generation fails.
 	 */
-	public static String emitDocsJson(OpenAPI api, boolean noImports, boolean noWrapping) throws Exception {
+	public static String emitDocsJson(OpenAPI api, boolean noImports, boolean noWrapping) {
 		JSONObject result = new JSONObject();
 		JSONObject endpoints = new JSONObject();
 		if (api != null && api.paths != null && api.paths.pathItems != null) {
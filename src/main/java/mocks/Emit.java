@@ -1,6 +1,8 @@
 package mocks;
 
 import openapi.OpenAPI;
+import sink.FileSink;
+import sink.MapSink;
 import com.github.javaparser.StaticJavaParser;
 import com.github.javaparser.ast.CompilationUnit;
 import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
@@ -117,11 +119,25 @@ public class Emit {
 	 * @return A map of file paths to generated Java source code.
 	 */
 	public static java.util.Map<String, String> emitModular(OpenAPI model) {
-		java.util.Map<String, String> files = new java.util.HashMap<>();
+		MapSink sink = new MapSink();
+		emitModular(model, sink);
+		return sink.files;
+	}
+
+	/**
+	 * Emits modular Java code for mock servers, handing each file to the sink as
+	 * soon as it is printed.
+	 *
+	 * @param model
+	 *            The OpenAPI model.
+	 * @param sink
+	 *            Receives each generated file.
+	 */
+	public static void emitModular(OpenAPI model, FileSink sink) {
 		if (model.paths == null)
-			return files;
+			return;
 		if (model.paths.pathItems == null)
-			return files;
+			return;
 
 		for (java.util.Map.Entry<String, openapi.PathItem> entry : model.paths.pathItems.entrySet()) {
 			String path = entry.getKey();
@@ -184,10 +200,8 @@ public class Emit {
 			stopBody.append("}\n");
 			stopMethod.setBody(StaticJavaParser.parseBlock(stopBody.toString()));
 
-			files.put("mocks/" + className + ".java", cu.toString());
+			sink.write("mocks/" + className + ".java", cu.toString());
 		}
-
-		return files;
 	}
 
 	private static String getResourceName(String path) {
@@ -25,15 +25,32 @@ public class Parse {
 	 * @return The parsed OpenAPI object.
 	 */
 	public static OpenAPI parse(String sourceCode) {
-		OpenAPI api = new OpenAPI();
-		api.paths = new openapi.Paths();
-
+		CompilationUnit cu;
 		try {
 			String toParse = sourceCode;
 			if (!sourceCode.contains("class ")) {
 				toParse = "class Dummy { void dummy() { " + sourceCode + " } }";
 			}
-			CompilationUnit cu = StaticJavaParser.parse(toParse);
+			cu = StaticJavaParser.parse(toParse);
+		} catch (Exception e) {
+			// ignore
+			cu = new CompilationUnit();
+		}
+		return parse(cu);
+	}
+
+	/**
+	 * Parses an already-parsed mock server compilation unit to an OpenAPI object.
+	 *
+	 * @param cu
+	 *            The compilation unit.
+	 * @return The parsed OpenAPI object.
+	 */
+	public static OpenAPI parse(CompilationUnit cu) {
+		OpenAPI api = new OpenAPI();
+		api.paths = new openapi.Paths();
+
+		try {
 			for (MethodCallExpr methodCall : cu.findAll(MethodCallExpr.class)) {
 				if (methodCall.getNameAsString().equals("createContext")) {
 					if (methodCall.getScope().isPresent() && methodCall.getScope().get().toString().equals("server")) {
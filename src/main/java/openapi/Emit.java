@@ -26,6 +26,17 @@ public class Emit {
 	 * @return JSON string.
 	 */
 	public static String toString(OpenAPI api) {
+		return toJson(api).toString(2);
+	}
+
+	/**
+	 * Emits OpenAPI description to a JSON object.
+	 *
+	 * @param api
+	 *            The OpenAPI object.
+	 * @return JSON object.
+	 */
+	public static JSONObject toJson(OpenAPI api) {
 		JSONObject root = new JSONObject();
 		if (api.openapi != null)
 			root.put("openapi", api.openapi);
@@ -105,7 +116,7 @@ public class Emit {
 			compObj.put("schemas", schemasObj);
 			root.put("components", compObj);
 		}
-		return root.toString(2);
+		return root;
 	}
 
 	/**
@@ -199,7 +210,7 @@ public class Emit {
 	/**
 	 * serializeSchema doc
 	 */
-	private static JSONObject serializeSchema(Schema s) {
+	static JSONObject serializeSchema(Schema s) {
 		JSONObject obj = new JSONObject();
 		if (s.type != null)
 			obj.put("type", s.type);
@@ -0,0 +1,413 @@
+package openapi;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Pull tokenizer for JSON. Like {@code org.json}, it accepts single-quoted and
+ * unquoted strings, tolerates a trailing comma before a closing bracket,
+ * rejects a member name repeated within one object and ignores anything after
+ * the top-level value.
+ */
+class JsonTokens extends SpecTokens {
+
+	/**
+	 * Level state: an object expecting a member name.
+	 */
+	private static final int KEY = 0;
+
+	/**
+	 * Level state: a container expecting a value.
+	 */
+	private static final int VALUE = 1;
+
+	/**
+	 * Level state: a container that has just read a value.
+	 */
+	private static final int AFTER = 2;
+
+	/**
+	 * Characters that end an unquoted string.
+	 */
+	private static final String UNQUOTED_END = ",:]}/\\\"[{;=#";
+
+	/**
+	 * The document.
+	 */
+	private final Reader in;
+
+	/**
+	 * Read buffer.
+	 */
+	private final char[] buf = new char[8192];
+
+	/**
+	 * Position of the next unread character in {@link #buf}.
+	 */
+	private int pos;
+
+	/**
+	 * Number of valid characters in {@link #buf}.
+	 */
+	private int len;
+
+	/**
+	 * Characters consumed before the current buffer, for error positions.
+	 */
+	private long offset;
+
+	/**
+	 * Whether each open level is an object.
+	 */
+	private boolean[] objects = new boolean[32];
+
+	/**
+	 * State of each open level.
+	 */
+	private int[] states = new int[32];
+
+	/**
+	 * Member names read so far in each open object level; sets are reused
+	 * across levels at the same depth.
+	 */
+	private final List<Set<String>> names = new ArrayList<>();
+
+	/**
+	 * Number of open levels.
+	 */
+	private int depth;
+
+	/**
+	 * Whether the top-level value has been read.
+	 */
+	private boolean done;
+
+	/**
+	 * Reusable buffer for string and number text.
+	 */
+	private final StringBuilder sb = new StringBuilder();
+
+	/**
+	 * Creates a tokenizer.
+	 *
+	 * @param in
+	 *            The document.
+	 */
+	JsonTokens(Reader in) {
+		this.in = in;
+	}
+
+	/**
+	 * Advances to the next token.
+	 *
+	 * @return The token.
+	 * @throws IOException
+	 *             if the document is malformed or cannot be read.
+	 */
+	@Override
+	Token next() throws IOException {
+		if (depth == 0) {
+			if (done)
+				return Token.EOF;
+			done = true;
+			return value(skipSpace());
+		}
+		int c = skipSpace();
+		int level = depth - 1;
+		if (states[level] == AFTER) {
+			if (c == ',') {
+				states[level] = objects[level] ? KEY : VALUE;
+				c = skipSpace();
+				if (c == '}' && objects[level] || c == ']' && !objects[level])
+					return close(c);
+			} else {
+				return close(c);
+			}
+		} else if (objects[level] ? states[level] == KEY && c == '}' : c == ']') {
+			return close(c);
+		}
+		if (states[level] == KEY) {
+			if (c == '"' || c == '\'')
+				text = string((char) c);
+			else if (c >= 0 && UNQUOTED_END.indexOf(c) < 0)
+				text = unquoted(c);
+			else
+				throw error("Expected a member name");
+			if (!names.get(level).add(text))
+				throw error("Duplicate key \"" + text + "\"");
+			if (skipSpace() != ':')
+				throw error("Expected ':'");
+			states[level] = VALUE;
+			return Token.NAME;
+		}
+		states[level] = AFTER;
+		return value(c);
+	}
+
+	/**
+	 * JSON keeps null members.
+	 *
+	 * @return false.
+	 */
+	@Override
+	boolean dropsNulls() {
+		return false;
+	}
+
+	/**
+	 * Closes the current level.
+	 *
+	 * @param c
+	 *            The closing character.
+	 * @return The end token.
+	 * @throws IOException
+	 *             if the character does not close the current level.
+	 */
+	private Token close(int c) throws IOException {
+		boolean object = objects[depth - 1];
+		if (c != (object ? '}' : ']'))
+			throw error(c < 0 ? "Unexpected end of JSON" : "Expected ',' or '" + (object ? '}' : ']') + "'");
+		depth--;
+		return object ? Token.END_OBJECT : Token.END_ARRAY;
+	}
+
+	/**
+	 * Reads a value starting with the given character.
+	 *
+	 * @param c
+	 *            The first character.
+	 * @return The token.
+	 * @throws IOException
+	 *             if the value is malformed.
+	 */
+	private Token value(int c) throws IOException {
+		switch (c) {
+			case '{' :
+				return open(true);
+			case '[' :
+				return open(false);
+			case '"' :
+			case '\'' :
+				text = string((char) c);
+				return Token.STRING;
+			default :
+				if (c < 0 || UNQUOTED_END.indexOf(c) >= 0)
+					throw error(c < 0 ? "Unexpected end of JSON" : "Unexpected character '" + (char) c + "'");
+				text = unquoted(c);
+				return type(text);
+		}
+	}
+
+	/**
+	 * Opens a level.
+	 *
+	 * @param object
+	 *            Whether the level is an object.
+	 * @return The start token.
+	 */
+	private Token open(boolean object) {
+		if (depth == states.length) {
+			states = java.util.Arrays.copyOf(states, depth * 2);
+			objects = java.util.Arrays.copyOf(objects, depth * 2);
+		}
+		if (object) {
+			while (names.size() <= depth)
+				names.add(new HashSet<>());
+			names.get(depth).clear();
+		}
+		objects[depth] = object;
+		states[depth] = object ? KEY : VALUE;
+		depth++;
+		return object ? Token.START_OBJECT : Token.START_ARRAY;
+	}
+
+	/**
+	 * Reads the rest of a string whose opening quote has been consumed.
+	 *
+	 * @param quote
+	 *            The quote character.
+	 * @return The unescaped string.
+	 * @throws IOException
+	 *             if the string is unterminated or has a bad escape.
+	 */
+	private String string(char quote) throws IOException {
+		sb.setLength(0);
+		while (true) {
+			if (pos == len && !fill())
+				throw error("Unterminated string");
+			int start = pos;
+			while (pos < len && buf[pos] != quote && buf[pos] != '\\')
+				pos++;
+			sb.append(buf, start, pos - start);
+			if (pos == len)
+				continue;
+			char c = buf[pos++];
+			if (c == quote)
+				return sb.toString();
+			int e = read();
+			switch (e) {
+				case '"' :
+				case '\'' :
+				case '\\' :
+				case '/' :
+					sb.append((char) e);
+					break;
+				case 'b' :
+					sb.append('\b');
+					break;
+				case 'f' :
+					sb.append('\f');
+					break;
+				case 'n' :
+					sb.append('\n');
+					break;
+				case 'r' :
+					sb.append('\r');
+					break;
+				case 't' :
+					sb.append('\t');
+					break;
+				case 'u' :
+					int code = 0;
+					for (int i = 0; i < 4; i++) {
+						int digit = Character.digit(read(), 16);
+						if (digit < 0)
+							throw error("Bad unicode escape");
+						code = code * 16 + digit;
+					}
+					sb.append((char) code);
+					break;
+				default :
+					throw error("Bad escape");
+			}
+		}
+	}
+
+	/**
+	 * Reads an unquoted word, which runs to whitespace or punctuation.
+	 *
+	 * @param first
+	 *            The first character.
+	 * @return The word, trimmed.
+	 * @throws IOException
+	 *             if the document cannot be read.
+	 */
+	private String unquoted(int first) throws IOException {
+		sb.setLength(0);
+		sb.append((char) first);
+		while (true) {
+			if (pos == len && !fill())
+				break;
+			char c = buf[pos];
+			if (c == ' ' || c == '\n' || c == '\r' || c == '\t' || UNQUOTED_END.indexOf(c) >= 0)
+				break;
+			sb.append(c);
+			pos++;
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Types an unquoted word the way {@code org.json} does: the literals
+	 * {@code true}, {@code false} and {@code null} in any case, numbers, and
+	 * strings otherwise.
+	 *
+	 * @param word
+	 *            The word.
+	 * @return The token.
+	 */
+	private Token type(String word) {
+		if (word.equalsIgnoreCase("true") || word.equalsIgnoreCase("false")) {
+			text = word.toLowerCase();
+			return Token.BOOLEAN;
+		}
+		if (word.equalsIgnoreCase("null")) {
+			text = null;
+			return Token.NULL;
+		}
+		char c = word.charAt(0);
+		if ((c == '-' || c >= '0' && c <= '9') && isNumber(word))
+			return Token.NUMBER;
+		return Token.STRING;
+	}
+
+	/**
+	 * Whether a word is a decimal number.
+	 *
+	 * @param word
+	 *            The word.
+	 * @return true for a number.
+	 */
+	private static boolean isNumber(String word) {
+		try {
+			new java.math.BigDecimal(word);
+			return true;
+		} catch (NumberFormatException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Skips whitespace and returns the next character.
+	 *
+	 * @return The character, or -1 at the end of input.
+	 * @throws IOException
+	 *             if the document cannot be read.
+	 */
+	private int skipSpace() throws IOException {
+		while (true) {
+			int c = read();
+			if (c != ' ' && c != '\n' && c != '\r' && c != '\t')
+				return c;
+		}
+	}
+
+	/**
+	 * Reads one character.
+	 *
+	 * @return The character, or -1 at the end of input.
+	 * @throws IOException
+	 *             if the document cannot be read.
+	 */
+	private int read() throws IOException {
+		if (pos == len && !fill())
+			return -1;
+		return buf[pos++];
+	}
+
+	/**
+	 * Refills the buffer.
+	 *
+	 * @return false at the end of input.
+	 * @throws IOException
+	 *             if the document cannot be read.
+	 */
+	private boolean fill() throws IOException {
+		offset += len;
+		pos = 0;
+		len = 0;
+		int n;
+		do {
+			n = in.read(buf, 0, buf.length);
+		} while (n == 0);
+		if (n < 0)
+			return false;
+		len = n;
+		return true;
+	}
+
+	/**
+	 * Creates a syntax error at the current position.
+	 *
+	 * @param message
+	 *            What went wrong.
+	 * @return The exception.
+	 */
+	private IOException error(String message) {
+		return new IOException(message + " at character " + (offset + pos));
+	}
+}
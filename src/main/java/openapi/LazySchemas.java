@@ -0,0 +1,297 @@
+package openapi;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.AbstractMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * The {@code components/schemas} map of a spec parsed with lazy references.
+ * Each external reference is given a component name up front, but the
+ * document behind it is only fetched, parsed and resolved when that component
+ * is first read. References inside a resolved component become further
+ * pending components in turn.
+ *
+ * Looking a component up by name, or asking whether it exists, loads just the
+ * documents on its reference chain, so the two always agree. Iterating, or
+ * asking for the size, loads everything still pending, since the full set of
+ * names is only known then. Every target is named once, so reference cycles
+ * end at the already named component.
+ *
+ * A document that cannot be loaded fails the read with an
+ * {@link UncheckedIOException}, which {@code CddEngine} turns back into the
+ * {@link IOException} its callers expect.
+ */
+final class LazySchemas extends AbstractMap<String, Schema> {
+
+	/**
+	 * Fetches and parses the referenced documents.
+	 */
+	private final RefResolver resolver;
+
+	/**
+	 * Components available so far.
+	 */
+	private final Map<String, Schema> schemas;
+
+	/**
+	 * Components not loaded yet, by name.
+	 */
+	private final Map<String, Target> pending = new LinkedHashMap<>();
+
+	/**
+	 * The name given to each target, keyed by document URI and fragment.
+	 */
+	private final Map<String, String> names = new HashMap<>();
+
+	/**
+	 * Names whose targets turned out not to be objects. They stay taken, since
+	 * references already point at them.
+	 */
+	private final Set<String> empty = new HashSet<>();
+
+	/**
+	 * Counter for naming conflicts.
+	 */
+	private int nameCounter = 1;
+
+	/**
+	 * What a pending component refers to.
+	 */
+	private static final class Target {
+
+		/**
+		 * The reference as written, for errors.
+		 */
+		final String ref;
+
+		/**
+		 * The URI of the referenced document, without fragment.
+		 */
+		final String document;
+
+		/**
+		 * The JSON pointer into the document, or null for all of it.
+		 */
+		final String fragment;
+
+		/**
+		 * Creates a target.
+		 *
+		 * @param ref
+		 *            The reference as written.
+		 * @param document
+		 *            The document URI.
+		 * @param fragment
+		 *            The JSON pointer, or null.
+		 */
+		Target(String ref, String document, String fragment) {
+			this.ref = ref;
+			this.document = document;
+			this.fragment = fragment;
+		}
+	}
+
+	/**
+	 * Creates the map.
+	 *
+	 * @param schemas
+	 *            The components defined in the root document.
+	 * @param resolver
+	 *            Fetches and parses the referenced documents.
+	 */
+	LazySchemas(Map<String, Schema> schemas, RefResolver resolver) {
+		this.schemas = schemas;
+		this.resolver = resolver;
+	}
+
+	/**
+	 * Names the target of an external reference, without loading it.
+	 *
+	 * @param ref
+	 *            The reference.
+	 * @param baseUri
+	 *            The base URI to resolve it against.
+	 * @return The component name the reference should point to.
+	 * @throws IOException
+	 *             If the reference is malformed.
+	 */
+	synchronized String register(String ref, String baseUri) throws IOException {
+		try {
+			URI uri = new URI(baseUri).resolve(ref);
+			String document = new URI(uri.getScheme(), uri.getSchemeSpecificPart(), null).toString();
+			String key = document + "#" + (uri.getFragment() != null ? uri.getFragment() : "");
+			String name = names.get(key);
+			if (name == null) {
+				name = RefResolver.extractNameFromRef(ref);
+				while (schemas.containsKey(name) || pending.containsKey(name) || empty.contains(name))
+					name = name + "_" + (nameCounter++);
+				names.put(key, name);
+				pending.put(name, new Target(ref, document, uri.getFragment()));
+			}
+			return name;
+		} catch (URISyntaxException | IllegalArgumentException e) {
+			throw new IOException("Failed to resolve reference: " + ref, e);
+		}
+	}
+
+	/**
+	 * Returns a component, loading it if it is still pending.
+	 *
+	 * @param key
+	 *            The component name.
+	 * @return The component, or null if there is none.
+	 * @throws UncheckedIOException
+	 *             If its document cannot be loaded.
+	 */
+	@Override
+	public synchronized Schema get(Object key) {
+		load(key);
+		return schemas.get(key);
+	}
+
+	/**
+	 * Whether a component exists, loading it if it is still pending: a
+	 * reference to something other than an object names no component.
+	 *
+	 * @param key
+	 *            The component name.
+	 * @return true if it exists.
+	 * @throws UncheckedIOException
+	 *             If its document cannot be loaded.
+	 */
+	@Override
+	public synchronized boolean containsKey(Object key) {
+		load(key);
+		return schemas.containsKey(key);
+	}
+
+	/**
+	 * Adds or replaces a component.
+	 *
+	 * @param key
+	 *            The component name.
+	 * @param value
+	 *            The component.
+	 * @return The previous loaded component, or null.
+	 */
+	@Override
+	public synchronized Schema put(String key, Schema value) {
+		pending.remove(key);
+		return schemas.put(key, value);
+	}
+
+	/**
+	 * Removes a component without loading it.
+	 *
+	 * @param key
+	 *            The component name.
+	 * @return The removed loaded component, or null.
+	 */
+	@Override
+	public synchronized Schema remove(Object key) {
+		pending.remove(key);
+		return schemas.remove(key);
+	}
+
+	/**
+	 * Number of components, after loading all of them.
+	 *
+	 * @return The size.
+	 * @throws UncheckedIOException
+	 *             If a document cannot be loaded.
+	 */
+	@Override
+	public synchronized int size() {
+		loadAll();
+		return schemas.size();
+	}
+
+	/**
+	 * The components, after loading all of them.
+	 *
+	 * @return The entries.
+	 * @throws UncheckedIOException
+	 *             If a document cannot be loaded.
+	 */
+	@Override
+	public synchronized Set<Map.Entry<String, Schema>> entrySet() {
+		loadAll();
+		return schemas.entrySet();
+	}
+
+	/**
+	 * Loads every pending component, including those found while loading.
+	 */
+	private void loadAll() {
+		while (!pending.isEmpty())
+			load(pending.keySet().iterator().next());
+	}
+
+	/**
+	 * Loads a component if it is pending. A reference to something other than
+	 * an object leaves no component, as bundling does.
+	 *
+	 * @param key
+	 *            The component name.
+	 * @throws UncheckedIOException
+	 *             If its document cannot be loaded.
+	 */
+	private void load(Object key) {
+		Target target = pending.remove(key);
+		if (target == null)
+			return;
+		try {
+			JSONObject doc = resolver.loadDocument(target.ref, target.document);
+			Object component = target.fragment != null ? resolver.resolvePointer(doc, "/" + target.fragment) : doc;
+			if (component instanceof JSONObject) {
+				localize(component, target.document);
+				schemas.put((String) key, Parse.parseSchema((JSONObject) component));
+			} else {
+				empty.add((String) key);
+			}
+		} catch (IOException | RuntimeException e) {
+			// Left pending, so every later read fails the same way
+			pending.put((String) key, target);
+			throw new UncheckedIOException("Failed to bundle reference: " + target.ref,
+					e instanceof IOException ? (IOException) e : new IOException(e));
+		}
+	}
+
+	/**
+	 * Points the external references inside a component at pending components
+	 * of their own.
+	 *
+	 * @param node
+	 *            The component or a node inside it.
+	 * @param baseUri
+	 *            The URI of the document it came from.
+	 * @throws IOException
+	 *             If a reference is malformed.
+	 */
+	private void localize(Object node, String baseUri) throws IOException {
+		if (node instanceof JSONObject) {
+			JSONObject obj = (JSONObject) node;
+			Object ref = obj.opt("$ref");
+			if (ref instanceof String) {
+				if (!((String) ref).startsWith("#"))
+					obj.put("$ref", "#/components/schemas/" + register((String) ref, baseUri));
+			} else {
+				for (String key : obj.keySet())
+					localize(obj.get(key), baseUri);
+			}
+		} else if (node instanceof JSONArray) {
+			JSONArray arr = (JSONArray) node;
+			for (int i = 0; i < arr.length(); i++)
+				localize(arr.get(i), baseUri);
+		}
+	}
+}
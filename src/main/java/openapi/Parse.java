@@ -2,9 +2,13 @@ package openapi;
 
 import org.json.JSONArray;
 import org.json.JSONObject;
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.HashMap;
 
@@ -45,24 +49,62 @@ public class Parse {
 	 *             If parsing fails.
 	 */
 	public static OpenAPI fromString(String content, String baseUri) throws IOException {
+		try (BufferedReader in = new BufferedReader(new StringReader(content))) {
+			return fromReader(in, baseUri, new RefResolver());
+		}
+	}
+
+	/**
+	 * Parse OpenAPI description from a reader in one streaming pass, without
+	 * loading the whole document as a tree. JSON is recognised by its leading
+	 * brace; anything else is read as YAML.
+	 *
+	 * @param in
+	 *            The JSON/YAML document.
+	 * @param baseUri
+	 *            The base URI.
+	 * @param resolver
+	 *            Resolves external references; see {@link RefResolver#lazy}.
+	 * @return OpenAPI object.
+	 * @throws IOException
+	 *             If parsing fails.
+	 */
+	public static OpenAPI fromReader(BufferedReader in, String baseUri, RefResolver resolver) throws IOException {
 		try {
-			String trimmed = content.trim();
-			JSONObject root;
-			if (trimmed.startsWith("{")) {
-				root = new JSONObject(trimmed);
-			} else {
-				org.yaml.snakeyaml.Yaml yaml = new org.yaml.snakeyaml.Yaml();
-				java.util.Map<String, Object> map = yaml.load(content);
-				root = new JSONObject(map);
-			}
-			RefResolver resolver = new RefResolver();
-			resolver.bundle(root, baseUri);
-			return fromJson(root);
+			SpecTokens tokens = firstNonSpace(in) == '{' ? SpecTokens.json(in) : SpecTokens.yaml(in);
+			return StreamParse.parse(tokens, baseUri, resolver);
 		} catch (Exception e) {
 			throw new IOException("Failed to parse OpenAPI: " + e.getMessage(), e);
 		}
 	}
 
+	/**
+	 * Peeks at the first non-whitespace character, leaving the reader where it
+	 * was so that YAML indentation is kept.
+	 *
+	 * @param in
+	 *            The reader.
+	 * @return The character, or -1 if there is none.
+	 * @throws IOException
+	 *             If reading fails.
+	 */
+	private static int firstNonSpace(BufferedReader in) throws IOException {
+		char[] buf = new char[8192];
+		in.mark(buf.length);
+		int n;
+		while ((n = in.read(buf)) > 0) {
+			for (int i = 0; i < n; i++) {
+				if (!Character.isWhitespace(buf[i])) {
+					in.reset();
+					return buf[i];
+				}
+			}
+			// Whitespace only so far; skip it for good and look further
+			in.mark(buf.length);
+		}
+		return -1;
+	}
+
 	/**
 	 * Parse OpenAPI description from JSONObject.
 	 *
@@ -186,7 +228,7 @@ public class Parse {
 	/**
 	 * parseSchema doc
 	 */
-	private static Schema parseSchema(JSONObject sObj) {
+	static Schema parseSchema(JSONObject sObj) {
 		Schema s = new Schema();
 		if (sObj.has("type"))
 			s.type = sObj.getString("type");
@@ -313,10 +355,25 @@ public class Parse {
 	 *             If parsing fails.
 	 */
 	public static OpenAPI fromFile(File file) throws IOException {
-		try (FileInputStream fis = new FileInputStream(file)) {
-			byte[] data = new byte[(int) file.length()];
-			fis.read(data);
-			return fromString(new String(data, "UTF-8"), file.toURI().toString());
+		return fromFile(file, new RefResolver());
+	}
+
+	/**
+	 * Parse OpenAPI description from file with a configured resolver, e.g. one
+	 * with a persistent cache or lazy resolution.
+	 *
+	 * @param file
+	 *            The file.
+	 * @param resolver
+	 *            Resolves external references; used for this parse only.
+	 * @return OpenAPI object.
+	 * @throws IOException
+	 *             If parsing fails.
+	 */
+	public static OpenAPI fromFile(File file, RefResolver resolver) throws IOException {
+		try (BufferedReader in = new BufferedReader(
+				new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+			return fromReader(in, file.toURI().toString(), resolver);
 		}
 	}
 }
@@ -0,0 +1,234 @@
+package openapi;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import org.json.JSONObject;
+
+/**
+ * On-disk cache of remote {@code $ref} documents, keyed by a hash of their
+ * URI. Each entry keeps the validators the server sent ({@code ETag},
+ * {@code Last-Modified}) so the document can be revalidated with a conditional
+ * GET, and how long it stays fresh per {@code Cache-Control: max-age}. The
+ * document is stored parsed, as compact JSON, and read back as a tree, so a
+ * hit costs one JSON parse whatever the document's original format.
+ */
+public class RefCache {
+
+	/**
+	 * Directory holding one JSON file per cached document.
+	 */
+	private final File dir;
+
+	/**
+	 * Whether documents may only come from the cache.
+	 */
+	private final boolean offline;
+
+	/**
+	 * A cached document.
+	 */
+	static final class Entry {
+
+		/**
+		 * The entity tag, or null.
+		 */
+		final String etag;
+
+		/**
+		 * The Last-Modified date, or null.
+		 */
+		final String lastModified;
+
+		/**
+		 * When the entry stops being fresh, in milliseconds since the epoch.
+		 */
+		final long expires;
+
+		/**
+		 * The document as fetched, or null when only its parsed form is known.
+		 */
+		final String text;
+
+		/**
+		 * The parsed document, or null if it did not parse.
+		 */
+		final JSONObject document;
+
+		/**
+		 * Creates an entry.
+		 *
+		 * @param etag
+		 *            The entity tag, or null.
+		 * @param lastModified
+		 *            The Last-Modified date, or null.
+		 * @param expires
+		 *            When the entry stops being fresh.
+		 * @param text
+		 *            The document as fetched, or null.
+		 * @param document
+		 *            The parsed document, or null.
+		 */
+		Entry(String etag, String lastModified, long expires, String text, JSONObject document) {
+			this.etag = etag;
+			this.lastModified = lastModified;
+			this.expires = expires;
+			this.text = text;
+			this.document = document;
+		}
+
+		/**
+		 * The document as text, serializing the parsed form if that is all
+		 * there is.
+		 *
+		 * @return The document.
+		 */
+		String content() {
+			return text != null ? text : document.toString();
+		}
+
+		/**
+		 * Whether the entry can be used without revalidation.
+		 *
+		 * @return true until it expires.
+		 */
+		boolean isFresh() {
+			return System.currentTimeMillis() < expires;
+		}
+	}
+
+	/**
+	 * Creates a cache rooted at a directory.
+	 *
+	 * @param dir
+	 *            The cache directory; created on first write.
+	 * @param offline
+	 *            Whether to serve documents only from the cache.
+	 */
+	public RefCache(File dir, boolean offline) {
+		this.dir = dir;
+		this.offline = offline;
+	}
+
+	/**
+	 * The default cache directory: {@code cdd-java/refs} under
+	 * {@code XDG_CACHE_HOME}, or under {@code ~/.cache} if that is unset.
+	 *
+	 * @return The directory.
+	 */
+	public static File defaultDir() {
+		return defaultDir(System.getenv("XDG_CACHE_HOME"), System.getProperty("user.home"));
+	}
+
+	/**
+	 * The default cache directory for a given environment.
+	 *
+	 * @param xdg
+	 *            The value of {@code XDG_CACHE_HOME}, or null.
+	 * @param home
+	 *            The user's home directory.
+	 * @return The directory.
+	 */
+	static File defaultDir(String xdg, String home) {
+		File base = xdg != null && !xdg.isEmpty() ? new File(xdg) : new File(home, ".cache");
+		return new File(base, "cdd-java" + File.separator + "refs");
+	}
+
+	/**
+	 * Whether documents may only come from the cache.
+	 *
+	 * @return true in offline mode.
+	 */
+	public boolean isOffline() {
+		return offline;
+	}
+
+	/**
+	 * Looks up a document.
+	 *
+	 * @param uri
+	 *            The document URI, without fragment.
+	 * @return The entry, or null if absent or unreadable.
+	 */
+	Entry get(String uri) {
+		File f = file(uri);
+		if (!f.isFile())
+			return null;
+		try {
+			JSONObject obj = new JSONObject(Files.readString(f.toPath()));
+			if (!uri.equals(obj.optString("uri", null)))
+				return null;
+			JSONObject document = obj.optJSONObject("document");
+			return new Entry(obj.optString("etag", null), obj.optString("lastModified", null),
+					obj.optLong("expires", 0), document != null ? null : obj.getString("text"), document);
+		} catch (Exception e) {
+			// Corrupt entry, fetch again
+			return null;
+		}
+	}
+
+	/**
+	 * Stores a document, parsed if the entry has its parsed form and as text
+	 * otherwise. The entry is written to a temporary file and moved into place
+	 * so concurrent readers never see a partial entry.
+	 *
+	 * @param uri
+	 *            The document URI, without fragment.
+	 * @param entry
+	 *            The entry.
+	 * @throws IOException
+	 *             if the entry cannot be written.
+	 */
+	void put(String uri, Entry entry) throws IOException {
+		JSONObject obj = new JSONObject().put("uri", uri).put("expires", entry.expires);
+		obj.putOpt("etag", entry.etag);
+		obj.putOpt("lastModified", entry.lastModified);
+		if (entry.document != null)
+			obj.put("document", entry.document);
+		else
+			obj.put("text", entry.text);
+		dir.mkdirs();
+		Path tmp = Files.createTempFile(dir.toPath(), key(uri), ".tmp");
+		try {
+			Files.write(tmp, obj.toString().getBytes(StandardCharsets.UTF_8));
+			Files.move(tmp, file(uri).toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(tmp);
+		}
+	}
+
+	/**
+	 * The entry file of a document.
+	 *
+	 * @param uri
+	 *            The document URI.
+	 * @return The file.
+	 */
+	private File file(String uri) {
+		return new File(dir, key(uri) + ".json");
+	}
+
+	/**
+	 * Computes the cache key for a document URI.
+	 *
+	 * @param uri
+	 *            The URI.
+	 * @return Hex SHA-256 of the URI.
+	 */
+	private static String key(String uri) {
+		try {
+			byte[] digest = MessageDigest.getInstance("SHA-256").digest(uri.getBytes(StandardCharsets.UTF_8));
+			StringBuilder sb = new StringBuilder();
+			for (byte b : digest)
+				sb.append(String.format("%02x", b));
+			return sb.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
@@ -3,16 +3,29 @@ package openapi;
 import org.json.JSONObject;
 import org.json.JSONArray;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.net.URI;
+import java.net.URISyntaxException;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
 
 /**
  * Resolves external references in OpenAPI specifications.
@@ -29,15 +42,95 @@ public class RefResolver {
 	 */
 	public Map<String, JSONObject> jsonCache = new HashMap<>();
 
+	/**
+	 * Most remote documents {@link #prefetch} requests at once.
+	 */
+	public int maxConcurrentFetches = 16;
+
+	/**
+	 * Whether the streaming parser leaves external references unresolved until
+	 * their component is first read, instead of bundling them all up front.
+	 */
+	private final boolean lazy;
+
+	/**
+	 * Documents parsed by {@link #prefetch} and not yet bundled, by URI.
+	 */
+	private final Map<String, JSONObject> prefetched = new HashMap<>();
+
+	/**
+	 * Persistent cache of remote documents, or null to always fetch them.
+	 */
+	private final RefCache diskCache;
+
 	/**
 	 * Counter for naming conflicts.
 	 */
 	private int nameCounter = 1;
 
+	/**
+	 * Names given to bundled components, by the name derived from their
+	 * reference; later names carry a numeric suffix.
+	 */
+	private final Map<String, List<String>> bundledNames = new HashMap<>();
+
+	/**
+	 * Structural hashes of the objects and arrays hashed so far, by identity.
+	 */
+	private final Map<Object, Long> hashes = new IdentityHashMap<>();
+
+	/**
+	 * Holds the HTTP client shared by all resolvers, created on first use so
+	 * that specs without remote references never start one.
+	 */
+	private static final class ClientHolder {
+
+		/**
+		 * The client; HTTP/2 lets requests to one host share a connection.
+		 */
+		static final HttpClient CLIENT = HttpClient.newBuilder().version(HttpClient.Version.HTTP_2)
+				.followRedirects(HttpClient.Redirect.ALWAYS).build();
+	}
+
 	/**
 	 * Default constructor.
 	 */
 	public RefResolver() {
+		this(null);
+	}
+
+	/**
+	 * Creates a resolver that keeps remote documents in a persistent cache.
+	 *
+	 * @param diskCache
+	 *            The cache, or null to always fetch remote documents.
+	 */
+	public RefResolver(RefCache diskCache) {
+		this(diskCache, false);
+	}
+
+	/**
+	 * Creates a resolver that keeps remote documents in a persistent cache and
+	 * may leave references unresolved until they are read.
+	 *
+	 * @param diskCache
+	 *            The cache, or null to always fetch remote documents.
+	 * @param lazy
+	 *            Whether the streaming parser loads each referenced component
+	 *            only when it is first read.
+	 */
+	public RefResolver(RefCache diskCache, boolean lazy) {
+		this.diskCache = diskCache;
+		this.lazy = lazy;
+	}
+
+	/**
+	 * Whether referenced components are loaded only when first read.
+	 *
+	 * @return true for lazy references.
+	 */
+	public boolean isLazy() {
+		return lazy;
 	}
 
 	/**
@@ -52,33 +145,381 @@ public class RefResolver {
 	 *             If fetching fails.
 	 */
 	public String fetch(String ref, String baseUri) throws IOException {
+		return retrieve(ref, baseUri).content();
+	}
+
+	/**
+	 * Fetches a remote or local reference, keeping the parsed form of a
+	 * document the disk cache holds parsed. Documents fetched as text are
+	 * cached in {@link #cache}.
+	 *
+	 * @param ref
+	 *            The reference URI.
+	 * @param baseUri
+	 *            The base URI to resolve relative paths against.
+	 * @return The document.
+	 * @throws IOException
+	 *             If fetching fails.
+	 */
+	private RefCache.Entry retrieve(String ref, String baseUri) throws IOException {
 		try {
 			URI uri = new URI(baseUri).resolve(ref);
 			// Strip fragment for fetching
 			String uriStr = new URI(uri.getScheme(), uri.getSchemeSpecificPart(), null).toString();
-			if (cache.containsKey(uriStr)) {
-				return cache.get(uriStr);
-			}
-			String content;
+			String content = cache.get(uriStr);
+			if (content != null)
+				return new RefCache.Entry(null, null, 0, content, null);
+			RefCache.Entry entry;
 			if (uri.getScheme() != null && (uri.getScheme().equals("http") || uri.getScheme().equals("https"))) {
-				HttpClient client = HttpClient.newBuilder().followRedirects(HttpClient.Redirect.ALWAYS).build();
-				HttpRequest req = HttpRequest.newBuilder(new URI(uriStr)).GET().build();
-				HttpResponse<String> res = client.send(req, HttpResponse.BodyHandlers.ofString());
-				if (res.statusCode() >= 400) {
-					throw new IOException("Failed to fetch " + uriStr + ": HTTP " + res.statusCode());
+				entry = lookup(uriStr);
+				if (entry == null || !diskCache.isOffline() && !entry.isFresh()) {
+					HttpResponse<String> res = ClientHolder.CLIENT.send(request(uriStr, entry),
+							HttpResponse.BodyHandlers.ofString());
+					entry = accept(uriStr, entry, res);
 				}
-				content = res.body();
 			} else {
 				Path path = Paths.get(uri.getPath());
-				content = Files.readString(path);
+				entry = new RefCache.Entry(null, null, 0, Files.readString(path), null);
 			}
-			cache.put(uriStr, content);
-			return content;
+			if (entry.text != null)
+				cache.put(uriStr, entry.text);
+			return entry;
 		} catch (Exception e) {
 			throw new IOException("Failed to resolve reference: " + ref, e);
 		}
 	}
 
+	/**
+	 * Fetches the documents behind external references ahead of bundling.
+	 * Remote documents are requested concurrently, at most
+	 * {@link #maxConcurrentFetches} at a time, in waves: the references found
+	 * in each wave's documents make up the next wave. Fetched documents are
+	 * cached, so bundling then reads them without network round-trips.
+	 * Documents that cannot be fetched or parsed are skipped here and left for
+	 * bundling to report.
+	 *
+	 * @param refs
+	 *            The external references.
+	 * @param baseUri
+	 *            The base URI to resolve them against.
+	 * @throws IOException
+	 *             If interrupted while waiting for a fetch.
+	 */
+	public void prefetch(Collection<String> refs, String baseUri) throws IOException {
+		Set<String> seen = new HashSet<>(cache.keySet());
+		seen.addAll(jsonCache.keySet());
+		seen.addAll(prefetched.keySet());
+		Set<String> wave = new LinkedHashSet<>();
+		for (String ref : refs)
+			addTarget(ref, baseUri, seen, wave);
+		while (!wave.isEmpty()) {
+			fetchWave(wave);
+			Set<String> next = new LinkedHashSet<>();
+			for (String uri : wave) {
+				try {
+					JSONObject doc = prefetched.get(uri);
+					if (doc == null) {
+						String content = cache.get(uri);
+						if (content == null && !isRemote(uri)) {
+							content = Files.readString(Paths.get(new URI(uri).getPath()));
+							cache.put(uri, content);
+						}
+						if (content == null)
+							continue;
+						doc = parseDocument(content);
+						prefetched.put(uri, doc);
+					}
+					List<String> found = new ArrayList<>();
+					collectRefs(doc, found);
+					for (String ref : found)
+						addTarget(ref, uri, seen, next);
+				} catch (Exception e) {
+					// Bundling fetches it again and reports the failure
+				}
+			}
+			wave = next;
+		}
+	}
+
+	/**
+	 * Requests the remote documents of a wave concurrently and caches the
+	 * successful responses. Documents the disk cache holds fresh, or any it
+	 * holds in offline mode, are taken from it without a request. Documents
+	 * already parsed, by the disk cache or on arrival, are kept parsed.
+	 *
+	 * @param uris
+	 *            The document URIs; local ones are ignored.
+	 * @throws IOException
+	 *             If interrupted while waiting for a fetch slot.
+	 */
+	private void fetchWave(Collection<String> uris) throws IOException {
+		Semaphore slots = new Semaphore(Math.max(1, maxConcurrentFetches));
+		Map<String, RefCache.Entry> entries = new HashMap<>();
+		Map<String, CompletableFuture<HttpResponse<String>>> pending = new LinkedHashMap<>();
+		for (String uri : uris) {
+			if (!isRemote(uri))
+				continue;
+			RefCache.Entry entry;
+			try {
+				entry = lookup(uri);
+			} catch (IOException e) {
+				// Not cached in offline mode; bundling reports it
+				continue;
+			}
+			if (entry != null && (diskCache.isOffline() || entry.isFresh())) {
+				keep(uri, entry);
+				continue;
+			}
+			entries.put(uri, entry);
+			try {
+				slots.acquire();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while fetching references");
+			}
+			try {
+				pending.put(uri, ClientHolder.CLIENT.sendAsync(request(uri, entry), HttpResponse.BodyHandlers.ofString())
+						.whenComplete((res, e) -> slots.release()));
+			} catch (URISyntaxException | IllegalArgumentException e) {
+				slots.release();
+			}
+		}
+		for (Map.Entry<String, CompletableFuture<HttpResponse<String>>> e : pending.entrySet()) {
+			try {
+				String uri = e.getKey();
+				keep(uri, accept(uri, entries.get(uri), e.getValue().join()));
+			} catch (CompletionException | IOException ex) {
+				// Bundling fetches it again and reports the failure
+			}
+		}
+	}
+
+	/**
+	 * Keeps a fetched document for bundling: parsed if it already is, as text
+	 * otherwise.
+	 *
+	 * @param uri
+	 *            The document URI.
+	 * @param entry
+	 *            The document.
+	 */
+	private void keep(String uri, RefCache.Entry entry) {
+		if (entry.document != null)
+			prefetched.put(uri, entry.document);
+		else
+			cache.put(uri, entry.text);
+	}
+
+	/**
+	 * Looks up a remote document in the disk cache.
+	 *
+	 * @param uri
+	 *            The document URI.
+	 * @return The entry, or null if there is no cache or no entry.
+	 * @throws IOException
+	 *             If the document is not cached in offline mode.
+	 */
+	private RefCache.Entry lookup(String uri) throws IOException {
+		if (diskCache == null)
+			return null;
+		RefCache.Entry entry = diskCache.get(uri);
+		if (entry == null && diskCache.isOffline())
+			throw new IOException("Not in the reference cache (offline): " + uri);
+		return entry;
+	}
+
+	/**
+	 * Builds the GET for a remote document, conditional on the cached copy's
+	 * validators when there is one.
+	 *
+	 * @param uri
+	 *            The document URI.
+	 * @param entry
+	 *            The cached copy, or null.
+	 * @return The request.
+	 * @throws URISyntaxException
+	 *             If the URI is malformed.
+	 */
+	private static HttpRequest request(String uri, RefCache.Entry entry) throws URISyntaxException {
+		HttpRequest.Builder req = HttpRequest.newBuilder(new URI(uri)).GET();
+		if (entry != null && entry.etag != null)
+			req.header("If-None-Match", entry.etag);
+		if (entry != null && entry.lastModified != null)
+			req.header("If-Modified-Since", entry.lastModified);
+		return req.build();
+	}
+
+	/**
+	 * Takes the document from a response, updating the disk cache.
+	 *
+	 * @param uri
+	 *            The document URI.
+	 * @param entry
+	 *            The cached copy the request was conditional on, or null.
+	 * @param res
+	 *            The response.
+	 * @return The document, parsed too if it went into the disk cache.
+	 * @throws IOException
+	 *             If the server answered with an error.
+	 */
+	private RefCache.Entry accept(String uri, RefCache.Entry entry, HttpResponse<String> res) throws IOException {
+		if (res.statusCode() == 304 && entry != null) {
+			long expires = expires(res);
+			if (expires != entry.expires)
+				store(uri, new RefCache.Entry(entry.etag, entry.lastModified, expires, entry.text, entry.document), res);
+			return entry;
+		}
+		if (res.statusCode() >= 400) {
+			throw new IOException("Failed to fetch " + uri + ": HTTP " + res.statusCode());
+		}
+		RefCache.Entry fetched = new RefCache.Entry(res.headers().firstValue("ETag").orElse(null),
+				res.headers().firstValue("Last-Modified").orElse(null), expires(res), res.body(), null);
+		return diskCache != null ? store(uri, fetched, res) : fetched;
+	}
+
+	/**
+	 * Writes a document to the disk cache, parsed when possible. Responses
+	 * marked {@code no-store} are not kept, and write failures only cost a
+	 * later fetch.
+	 *
+	 * @param uri
+	 *            The document URI.
+	 * @param entry
+	 *            The entry.
+	 * @param res
+	 *            The response it came from.
+	 * @return The entry, with the parsed document if it was stored parsed.
+	 */
+	private RefCache.Entry store(String uri, RefCache.Entry entry, HttpResponse<String> res) {
+		if (cacheControl(res).contains("no-store"))
+			return entry;
+		if (entry.document == null) {
+			try {
+				entry = new RefCache.Entry(entry.etag, entry.lastModified, entry.expires, entry.text,
+						parseDocument(entry.text));
+			} catch (Exception e) {
+				// Stored as text
+			}
+		}
+		try {
+			diskCache.put(uri, entry);
+		} catch (IOException e) {
+			// The cache is an optimization
+		}
+		return entry;
+	}
+
+	/**
+	 * When a response stops being fresh, from its {@code max-age}.
+	 *
+	 * @param res
+	 *            The response.
+	 * @return Milliseconds since the epoch; 0 if it must always be revalidated.
+	 */
+	private static long expires(HttpResponse<String> res) {
+		String cc = cacheControl(res);
+		if (cc.contains("no-cache"))
+			return 0;
+		for (String directive : cc.split(",")) {
+			directive = directive.trim();
+			if (directive.startsWith("max-age=")) {
+				try {
+					return System.currentTimeMillis() + Long.parseLong(directive.substring(8).trim()) * 1000;
+				} catch (NumberFormatException e) {
+					return 0;
+				}
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * The {@code Cache-Control} header of a response.
+	 *
+	 * @param res
+	 *            The response.
+	 * @return The header in lower case, or an empty string.
+	 */
+	private static String cacheControl(HttpResponse<String> res) {
+		return String.join(",", res.headers().allValues("Cache-Control")).toLowerCase();
+	}
+
+	/**
+	 * Adds the document a reference points to, if not seen yet.
+	 *
+	 * @param ref
+	 *            The reference.
+	 * @param baseUri
+	 *            The base URI to resolve it against.
+	 * @param seen
+	 *            Documents already fetched or queued.
+	 * @param wave
+	 *            The wave to add it to.
+	 */
+	private static void addTarget(String ref, String baseUri, Set<String> seen, Set<String> wave) {
+		try {
+			URI uri = new URI(baseUri).resolve(ref);
+			String uriStr = new URI(uri.getScheme(), uri.getSchemeSpecificPart(), null).toString();
+			if (seen.add(uriStr))
+				wave.add(uriStr);
+		} catch (URISyntaxException | IllegalArgumentException e) {
+			// Bundling reports the malformed reference
+		}
+	}
+
+	/**
+	 * Collects the external references that bundling a node would follow.
+	 *
+	 * @param current
+	 *            The node.
+	 * @param refs
+	 *            Where to add the references.
+	 */
+	private static void collectRefs(Object current, List<String> refs) {
+		if (current instanceof JSONObject) {
+			JSONObject obj = (JSONObject) current;
+			if (obj.has("$ref")) {
+				Object ref = obj.get("$ref");
+				if (ref instanceof String && !((String) ref).startsWith("#"))
+					refs.add((String) ref);
+			} else {
+				for (String key : obj.keySet())
+					collectRefs(obj.get(key), refs);
+			}
+		} else if (current instanceof JSONArray) {
+			JSONArray arr = (JSONArray) current;
+			for (int i = 0; i < arr.length(); i++)
+				collectRefs(arr.get(i), refs);
+		}
+	}
+
+	/**
+	 * Whether a document URI is fetched over HTTP.
+	 *
+	 * @param uri
+	 *            The URI.
+	 * @return true for http and https URIs.
+	 */
+	private static boolean isRemote(String uri) {
+		return uri.startsWith("http:") || uri.startsWith("https:");
+	}
+
+	/**
+	 * Parses a fetched JSON or YAML document.
+	 *
+	 * @param content
+	 *            The document.
+	 * @return The document as a JSON object.
+	 */
+	private static JSONObject parseDocument(String content) {
+		String trimmed = content.trim();
+		if (trimmed.startsWith("{"))
+			return new JSONObject(trimmed);
+		org.yaml.snakeyaml.Yaml yaml = new org.yaml.snakeyaml.Yaml();
+		Map<String, Object> map = yaml.load(content);
+		return new JSONObject(map);
+	}
+
 	/**
 	 * Resolves a JSON pointer against a JSON object.
 	 *
@@ -131,9 +572,207 @@ public class RefResolver {
 		if (!components.has("schemas")) {
 			components.put("schemas", new JSONObject());
 		}
+		List<String> refs = new ArrayList<>();
+		collectRefs(root, refs);
+		prefetch(refs, baseUri);
 		traverseAndBundle(root, baseUri, root);
 	}
 
+	/**
+	 * Returns the document an external reference points into, fetching and
+	 * parsing it on first use.
+	 *
+	 * @param ref
+	 *            The external reference.
+	 * @param baseUri
+	 *            The base URI to resolve it against.
+	 * @return The whole document, whatever the reference's fragment.
+	 * @throws IOException
+	 *             If fetching or parsing fails.
+	 */
+	JSONObject loadDocument(String ref, String baseUri) throws IOException {
+		try {
+			URI resolvedUri = new URI(baseUri).resolve(ref);
+			String fetchUri = new URI(resolvedUri.getScheme(), resolvedUri.getSchemeSpecificPart(), null).toString();
+			JSONObject doc = jsonCache.get(fetchUri);
+			if (doc == null) {
+				doc = prefetched.remove(fetchUri);
+				if (doc == null) {
+					RefCache.Entry entry = retrieve(ref, baseUri);
+					doc = entry.document != null ? entry.document : parseDocument(entry.text);
+				}
+				jsonCache.put(fetchUri, doc);
+			}
+			return doc;
+		} catch (URISyntaxException e) {
+			throw new IOException("Failed to resolve reference: " + ref, e);
+		}
+	}
+
+	/**
+	 * Copies the target of one external reference into the root document's
+	 * {@code components/schemas}, bundling the references of the fetched
+	 * document first.
+	 *
+	 * @param ref
+	 *            The external reference.
+	 * @param baseUri
+	 *            The base URI to resolve the reference against.
+	 * @param rootDocument
+	 *            The root document, which must have {@code components/schemas}.
+	 * @return The local reference to the bundled component.
+	 * @throws IOException
+	 *             If fetching or bundling fails.
+	 */
+	String bundleRef(String ref, String baseUri, JSONObject rootDocument) throws IOException {
+		try {
+			URI resolvedUri = new URI(baseUri).resolve(ref);
+			String fetchUri = new URI(resolvedUri.getScheme(), resolvedUri.getSchemeSpecificPart(), null).toString();
+
+			boolean loaded = jsonCache.containsKey(fetchUri);
+			JSONObject fetchedObj = loadDocument(ref, baseUri);
+			if (!loaded) {
+				// Recursively bundle the fetched document before extracting
+				traverseAndBundle(fetchedObj, fetchUri, rootDocument);
+			}
+
+			String fragment = resolvedUri.getFragment();
+			Object resolvedComponent = fragment != null ? resolvePointer(fetchedObj, "/" + fragment) : fetchedObj;
+
+			// Generate a safe name for the bundled component
+			String baseName = extractNameFromRef(ref);
+			JSONObject schemas = rootDocument.getJSONObject("components").getJSONObject("schemas");
+
+			// An identical component already bundled under this name, from any file, is reused
+			String componentName = findIdentical(baseName, resolvedComponent, schemas);
+			if (componentName == null) {
+				componentName = baseName;
+				while (schemas.has(componentName)) {
+					componentName = componentName + "_" + (nameCounter++);
+				}
+				schemas.put(componentName, resolvedComponent);
+				bundledNames.computeIfAbsent(baseName, k -> new ArrayList<>()).add(componentName);
+			}
+			return "#/components/schemas/" + componentName;
+		} catch (Exception e) {
+			throw new IOException("Failed to bundle reference: " + ref, e);
+		}
+	}
+
+	/**
+	 * Finds a component identical to the one being bundled among those named
+	 * after the same reference: the one with that exact name and the suffixed
+	 * ones bundled before.
+	 *
+	 * @param baseName
+	 *            The name derived from the reference.
+	 * @param component
+	 *            The component being bundled.
+	 * @param schemas
+	 *            The root document's {@code components/schemas}.
+	 * @return The identical component's name, or null if there is none.
+	 */
+	private String findIdentical(String baseName, Object component, JSONObject schemas) {
+		if (schemas.has(baseName) && same(schemas.get(baseName), component))
+			return baseName;
+		for (String name : bundledNames.getOrDefault(baseName, List.of())) {
+			if (schemas.has(name) && same(schemas.get(name), component))
+				return name;
+		}
+		return null;
+	}
+
+	/**
+	 * Whether two JSON values are structurally equal. Their hashes are compared
+	 * first, so most mismatches cost no walk at all.
+	 *
+	 * @param a
+	 *            A value.
+	 * @param b
+	 *            Another value.
+	 * @return true if they are equal.
+	 */
+	private boolean same(Object a, Object b) {
+		if (a == b)
+			return true;
+		if (a == null || b == null || hash(a) != hash(b))
+			return false;
+		if (a instanceof JSONObject && b instanceof JSONObject) {
+			JSONObject x = (JSONObject) a;
+			JSONObject y = (JSONObject) b;
+			if (x.length() != y.length())
+				return false;
+			for (String key : x.keySet()) {
+				if (!y.has(key) || !same(x.get(key), y.get(key)))
+					return false;
+			}
+			return true;
+		}
+		if (a instanceof JSONArray && b instanceof JSONArray) {
+			JSONArray x = (JSONArray) a;
+			JSONArray y = (JSONArray) b;
+			if (x.length() != y.length())
+				return false;
+			for (int i = 0; i < x.length(); i++) {
+				if (!same(x.get(i), y.get(i)))
+					return false;
+			}
+			return true;
+		}
+		return !(a instanceof JSONObject || b instanceof JSONObject || a instanceof JSONArray
+				|| b instanceof JSONArray) && (a instanceof String) == (b instanceof String)
+				&& a.toString().equals(b.toString());
+	}
+
+	/**
+	 * Computes the structural hash of a JSON value, memoized for objects and
+	 * arrays. Object members are combined independently of their order; scalars
+	 * hash by their text and whether they are strings, as they serialize.
+	 *
+	 * @param value
+	 *            The value.
+	 * @return The hash.
+	 */
+	private long hash(Object value) {
+		if (value instanceof JSONObject) {
+			Long memo = hashes.get(value);
+			if (memo != null)
+				return memo;
+			JSONObject obj = (JSONObject) value;
+			long h = 0x6a09e667f3bcc908L;
+			for (String key : obj.keySet())
+				h += mix(key.hashCode() * 0x9e3779b97f4a7c15L ^ hash(obj.get(key)));
+			hashes.put(value, h);
+			return h;
+		}
+		if (value instanceof JSONArray) {
+			Long memo = hashes.get(value);
+			if (memo != null)
+				return memo;
+			JSONArray arr = (JSONArray) value;
+			long h = 0xbb67ae8584caa73bL;
+			for (int i = 0; i < arr.length(); i++)
+				h = mix(h * 31 + hash(arr.get(i)));
+			hashes.put(value, h);
+			return h;
+		}
+		// Strings serialize quoted, so "1" and 1 must differ
+		return mix(value.toString().hashCode() ^ (value instanceof String ? 0x5bd1e995L : 0));
+	}
+
+	/**
+	 * Scrambles the bits of a hash (the SplitMix64 finalizer).
+	 *
+	 * @param z
+	 *            The input.
+	 * @return The mixed value.
+	 */
+	private static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+
 	private void traverseAndBundle(Object current, String currentBaseUri, JSONObject rootDocument) throws IOException {
 		if (current instanceof JSONObject) {
 			JSONObject obj = (JSONObject) current;
@@ -141,56 +780,11 @@ public class RefResolver {
 				String ref = obj.getString("$ref");
 				if (!ref.startsWith("#")) {
 					// External reference
-					try {
-						URI resolvedUri = new URI(currentBaseUri).resolve(ref);
-						String fetchUri = new URI(resolvedUri.getScheme(), resolvedUri.getSchemeSpecificPart(), null)
-								.toString();
-
-						JSONObject fetchedObj;
-						if (jsonCache.containsKey(fetchUri)) {
-							fetchedObj = jsonCache.get(fetchUri);
-						} else {
-							String content = fetch(ref, currentBaseUri);
-							String trimmed = content.trim();
-							if (trimmed.startsWith("{")) {
-								fetchedObj = new JSONObject(trimmed);
-							} else {
-								org.yaml.snakeyaml.Yaml yaml = new org.yaml.snakeyaml.Yaml();
-								Map<String, Object> map = yaml.load(content);
-								fetchedObj = new JSONObject(map);
-							}
-							jsonCache.put(fetchUri, fetchedObj);
-							// Recursively bundle the fetched document before extracting
-							traverseAndBundle(fetchedObj, fetchUri, rootDocument);
-						}
-
-						String fragment = resolvedUri.getFragment();
-						Object resolvedComponent = fragment != null
-								? resolvePointer(fetchedObj, "/" + fragment)
-								: fetchedObj;
-
-						// Generate a safe name for the bundled component
-						String componentName = extractNameFromRef(ref);
-						JSONObject schemas = rootDocument.getJSONObject("components").getJSONObject("schemas");
-
-						while (schemas.has(componentName)) {
-							// If it's already exactly the same object, we don't need to rename
-							if (schemas.get(componentName).toString().equals(resolvedComponent.toString())) {
-								break;
-							}
-							componentName = componentName + "_" + (nameCounter++);
-						}
-
-						schemas.put(componentName, resolvedComponent);
-
-						// Rewrite the $ref to point to the local bundled component
-						obj.put("$ref", "#/components/schemas/" + componentName);
-					} catch (Exception e) {
-						throw new IOException("Failed to bundle reference: " + ref, e);
-					}
+					obj.put("$ref", bundleRef(ref, currentBaseUri, rootDocument));
 				}
 			} else {
-				Iterator<String> keys = obj.keys();
+				// Bundling adds to components/schemas, which may be this object
+				Iterator<String> keys = new ArrayList<>(obj.keySet()).iterator();
 				while (keys.hasNext()) {
 					String key = keys.next();
 					traverseAndBundle(obj.get(key), currentBaseUri, rootDocument);
@@ -204,7 +798,14 @@ public class RefResolver {
 		}
 	}
 
-	private String extractNameFromRef(String ref) {
+	/**
+	 * Derives a component name from a reference's last path segment.
+	 *
+	 * @param ref
+	 *            The reference.
+	 * @return The name.
+	 */
+	static String extractNameFromRef(String ref) {
 		String[] parts = ref.split("/");
 		String name = parts[parts.length - 1];
 		if (name.contains(".")) {
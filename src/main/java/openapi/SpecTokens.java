@@ -0,0 +1,99 @@
+package openapi;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Pull tokenizer over a JSON or YAML document, letting {@link StreamParse}
+ * build the model in one pass without first materializing the document as a
+ * tree.
+ */
+abstract class SpecTokens {
+
+	/**
+	 * Kinds of token.
+	 */
+	enum Token {
+		/** Start of an object or mapping. */
+		START_OBJECT,
+		/** End of an object or mapping. */
+		END_OBJECT,
+		/** Start of an array or sequence. */
+		START_ARRAY,
+		/** End of an array or sequence. */
+		END_ARRAY,
+		/** A member name; {@link SpecTokens#text()} holds it. */
+		NAME,
+		/** A string value. */
+		STRING,
+		/** A number, or any other scalar that is not a string or boolean. */
+		NUMBER,
+		/** A boolean; the text is {@code true} or {@code false}. */
+		BOOLEAN,
+		/** A null value. */
+		NULL,
+		/** End of the document. */
+		EOF
+	}
+
+	/**
+	 * Text of the current name or scalar token.
+	 */
+	protected String text;
+
+	/**
+	 * Default constructor.
+	 */
+	SpecTokens() {
+	}
+
+	/**
+	 * Creates a tokenizer for a JSON document.
+	 *
+	 * @param in
+	 *            The document.
+	 * @return The tokenizer.
+	 */
+	static SpecTokens json(Reader in) {
+		return new JsonTokens(in);
+	}
+
+	/**
+	 * Creates a tokenizer for a YAML document.
+	 *
+	 * @param in
+	 *            The document.
+	 * @return The tokenizer.
+	 */
+	static SpecTokens yaml(Reader in) {
+		return new YamlTokens(in);
+	}
+
+	/**
+	 * Advances to the next token.
+	 *
+	 * @return The token.
+	 * @throws IOException
+	 *             if the document is malformed or cannot be read.
+	 */
+	abstract Token next() throws IOException;
+
+	/**
+	 * Text of the current {@link Token#NAME}, {@link Token#STRING},
+	 * {@link Token#NUMBER} or {@link Token#BOOLEAN} token.
+	 *
+	 * @return The text.
+	 */
+	String text() {
+		return text;
+	}
+
+	/**
+	 * Whether a null member value means the member is absent. Loading YAML into
+	 * a tree drops such members, while a JSON tree keeps them as
+	 * {@code JSONObject.NULL}; the reader keeps that difference.
+	 *
+	 * @return true for YAML.
+	 */
+	abstract boolean dropsNulls();
+}
@@ -0,0 +1,782 @@
+package openapi;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import openapi.SpecTokens.Token;
+import org.json.JSONObject;
+
+/**
+ * Builds an {@link OpenAPI} model straight from a token stream, reading the
+ * same members as {@link Parse#fromJson(JSONObject)} without first loading the
+ * document into a tree. Unread members are skipped token by token.
+ *
+ * External {@code $ref}s are noted wherever the tree-based bundler would have
+ * found them, and bundled once the document has been read, so peak memory is
+ * the model plus the referenced documents. With a lazy resolver they are only
+ * named, and loaded when their component is first read.
+ */
+final class StreamParse {
+
+	/**
+	 * The document.
+	 */
+	private final SpecTokens in;
+
+	/**
+	 * External references found so far, in document order.
+	 */
+	private final List<ExternalRef> refs = new ArrayList<>();
+
+	/**
+	 * An external reference and the schema whose {@code $ref} it is, if any.
+	 */
+	private static final class ExternalRef {
+
+		/**
+		 * The schema to point at the bundled component, or null when the
+		 * reference is outside a schema.
+		 */
+		final Schema schema;
+
+		/**
+		 * The reference.
+		 */
+		final String ref;
+
+		/**
+		 * Creates a reference.
+		 *
+		 * @param schema
+		 *            The referring schema, or null.
+		 * @param ref
+		 *            The reference.
+		 */
+		ExternalRef(Schema schema, String ref) {
+			this.schema = schema;
+			this.ref = ref;
+		}
+	}
+
+	/**
+	 * Creates a builder.
+	 *
+	 * @param in
+	 *            The document.
+	 */
+	private StreamParse(SpecTokens in) {
+		this.in = in;
+	}
+
+	/**
+	 * Reads a document and bundles its external references.
+	 *
+	 * @param in
+	 *            The document.
+	 * @param baseUri
+	 *            The base URI for resolving references.
+	 * @param resolver
+	 *            Resolves the external references.
+	 * @return The model.
+	 * @throws IOException
+	 *             if the document is malformed or a reference cannot be
+	 *             bundled.
+	 */
+	static OpenAPI parse(SpecTokens in, String baseUri, RefResolver resolver) throws IOException {
+		StreamParse parser = new StreamParse(in);
+		OpenAPI api = parser.readRoot();
+		if (api.components == null)
+			api.components = new Components();
+		if (api.components.schemas == null)
+			api.components.schemas = new HashMap<>();
+		// Definitions override same-named components whichever comes first
+		if (api.definitions != null)
+			api.components.schemas.putAll(api.definitions);
+		if (resolver.isLazy())
+			parser.defer(api, baseUri, resolver);
+		else
+			parser.bundle(api, baseUri, resolver);
+		return api;
+	}
+
+	/**
+	 * Bundles the external references into {@code components/schemas}. The
+	 * resolver sees the existing schemas in serialized form, so a referenced
+	 * component identical to one of them reuses its name.
+	 *
+	 * @param api
+	 *            The model.
+	 * @param baseUri
+	 *            The document's base URI.
+	 * @param resolver
+	 *            Resolves the references.
+	 * @throws IOException
+	 *             if a reference cannot be bundled.
+	 */
+	private void bundle(OpenAPI api, String baseUri, RefResolver resolver) throws IOException {
+		if (refs.isEmpty())
+			return;
+		JSONObject schemas = new JSONObject();
+		for (Map.Entry<String, Schema> e : api.components.schemas.entrySet())
+			schemas.put(e.getKey(), Emit.serializeSchema(e.getValue()));
+		JSONObject root = new JSONObject().put("components", new JSONObject().put("schemas", schemas));
+		List<String> targets = new ArrayList<>();
+		for (ExternalRef ref : refs)
+			targets.add(ref.ref);
+		resolver.prefetch(targets, baseUri);
+		for (ExternalRef ref : refs) {
+			String local = resolver.bundleRef(ref.ref, baseUri, root);
+			if (ref.schema != null)
+				ref.schema.$ref = local;
+		}
+		for (String name : schemas.keySet()) {
+			if (!api.components.schemas.containsKey(name))
+				api.components.schemas.put(name, Parse.parseSchema(schemas.getJSONObject(name)));
+		}
+	}
+
+	/**
+	 * Points the external references at components that are loaded only when
+	 * first read. Nothing is fetched here.
+	 *
+	 * @param api
+	 *            The model.
+	 * @param baseUri
+	 *            The document's base URI.
+	 * @param resolver
+	 *            Loads the referenced documents later.
+	 * @throws IOException
+	 *             if a reference is malformed.
+	 */
+	private void defer(OpenAPI api, String baseUri, RefResolver resolver) throws IOException {
+		if (refs.isEmpty())
+			return;
+		LazySchemas schemas = new LazySchemas(api.components.schemas, resolver);
+		for (ExternalRef ref : refs) {
+			String name = schemas.register(ref.ref, baseUri);
+			if (ref.schema != null)
+				ref.schema.$ref = "#/components/schemas/" + name;
+		}
+		api.components.schemas = schemas;
+	}
+
+	/**
+	 * Reads the root object.
+	 *
+	 * @return The model.
+	 * @throws IOException
+	 *             if the document is malformed.
+	 */
+	private OpenAPI readRoot() throws IOException {
+		OpenAPI api = new OpenAPI();
+		Token t = in.next();
+		// An empty or null YAML document loads as an empty object
+		if (in.dropsNulls() && (t == Token.EOF || t == Token.NULL))
+			return api;
+		if (t != Token.START_OBJECT)
+			throw new IOException("An OpenAPI document must be an object");
+		while ((t = in.next()) == Token.NAME) {
+			String key = in.text();
+			switch (key) {
+				case "openapi" :
+					api.openapi = string(key);
+					break;
+				case "swagger" :
+					api.swagger = string(key);
+					break;
+				case "host" :
+					api.host = string(key);
+					break;
+				case "basePath" :
+					api.basePath = string(key);
+					break;
+				case "schemes" :
+					api.schemes = strings(key);
+					break;
+				case "consumes" :
+					api.consumes = strings(key);
+					break;
+				case "produces" :
+					api.produces = strings(key);
+					break;
+				case "servers" :
+					if (array(key)) {
+						api.servers = new ArrayList<>();
+						while ((t = in.next()) != Token.END_ARRAY) {
+							expectObject(t, key);
+							api.servers.add(readServer());
+						}
+					}
+					break;
+				case "info" :
+					if (object(key))
+						api.info = readInfo();
+					break;
+				case "paths" :
+					if (object(key))
+						api.paths = readPaths();
+					break;
+				case "components" :
+					if (object(key))
+						api.components = readComponents();
+					break;
+				case "definitions" :
+					if (object(key))
+						api.definitions = readSchemas();
+					break;
+				default :
+					skipValue(key);
+			}
+		}
+		return api;
+	}
+
+	/**
+	 * Reads a server object.
+	 *
+	 * @return The server.
+	 * @throws IOException
+	 *             if the object is malformed.
+	 */
+	private Server readServer() throws IOException {
+		Server s = new Server();
+		while (in.next() == Token.NAME) {
+			String key = in.text();
+			if (key.equals("url"))
+				s.url = string(key);
+			else if (key.equals("description"))
+				s.description = string(key);
+			else
+				skipValue(key);
+		}
+		return s;
+	}
+
+	/**
+	 * Reads the info object.
+	 *
+	 * @return The info.
+	 * @throws IOException
+	 *             if the object is malformed.
+	 */
+	private Info readInfo() throws IOException {
+		Info info = new Info();
+		while (in.next() == Token.NAME) {
+			String key = in.text();
+			if (key.equals("title")) {
+				info.title = string(key);
+			} else if (key.equals("version")) {
+				info.version = string(key);
+			} else if (key.equals("description")) {
+				Token t = in.next();
+				if (t == Token.STRING)
+					info.description = in.text();
+				else if (t != Token.NULL)
+					throw notA(key, "a string");
+			} else {
+				skipValue(key);
+			}
+		}
+		return info;
+	}
+
+	/**
+	 * Reads the paths object; extension members are skipped.
+	 *
+	 * @return The paths.
+	 * @throws IOException
+	 *             if the object is malformed.
+	 */
+	private Paths readPaths() throws IOException {
+		Paths paths = new Paths();
+		paths.pathItems = new HashMap<>();
+		while (in.next() == Token.NAME) {
+			String key = in.text();
+			if (key.startsWith("x-")) {
+				skipValue(key);
+			} else if (object(key)) {
+				paths.pathItems.put(key, readPathItem());
+			}
+		}
+		return paths;
+	}
+
+	/**
+	 * Reads a path item.
+	 *
+	 * @return The path item.
+	 * @throws IOException
+	 *             if the object is malformed.
+	 */
+	private PathItem readPathItem() throws IOException {
+		PathItem pi = new PathItem();
+		while (in.next() == Token.NAME) {
+			String key = in.text();
+			switch (key) {
+				case "get" :
+					if (object(key))
+						pi.get = readOperation();
+					break;
+				case "post" :
+					if (object(key))
+						pi.post = readOperation();
+					break;
+				case "put" :
+					if (object(key))
+						pi.put = readOperation();
+					break;
+				case "delete" :
+					if (object(key))
+						pi.delete = readOperation();
+					break;
+				case "patch" :
+					if (object(key))
+						pi.patch = readOperation();
+					break;
+				case "parameters" :
+					if (array(key))
+						pi.parameters = readParameters();
+					break;
+				default :
+					skipValue(key);
+			}
+		}
+		return pi;
+	}
+
+	/**
+	 * Reads an operation.
+	 *
+	 * @return The operation.
+	 * @throws IOException
+	 *             if the object is malformed.
+	 */
+	private Operation readOperation() throws IOException {
+		Operation op = new Operation();
+		while (in.next() == Token.NAME) {
+			String key = in.text();
+			switch (key) {
+				case "operationId" :
+					op.operationId = string(key);
+					break;
+				case "summary" :
+					op.summary = string(key);
+					break;
+				case "description" :
+					op.description = string(key);
+					break;
+				case "parameters" :
+					if (array(key))
+						op.parameters = readParameters();
+					break;
+				case "requestBody" :
+					if (object(key))
+						op.requestBody = readRequestBody();
+					break;
+				case "responses" :
+					if (object(key))
+						op.responses = readResponses();
+					break;
+				default :
+					skipValue(key);
+			}
+		}
+		return op;
+	}
+
+	/**
+	 * Reads a request body.
+	 *
+	 * @return The request body.
+	 * @throws IOException
+	 *             if the object is malformed.
+	 */
+	private RequestBody readRequestBody() throws IOException {
+		RequestBody body = new RequestBody();
+		while (in.next() == Token.NAME) {
+			String key = in.text();
+			if (key.equals("description")) {
+				body.description = string(key);
+			} else if (key.equals("required")) {
+				Boolean required = bool(key);
+				if (required != null)
+					body.required = required;
+			} else if (key.equals("content")) {
+				if (object(key))
+					body.content = readContent();
+			} else {
+				skipValue(key);
+			}
+		}
+		return body;
+	}
+
+	/**
+	 * Reads the responses of an operation.
+	 *
+	 * @return The responses.
+	 * @throws IOException
+	 *             if the object is malformed.
+	 */
+	private Responses readResponses() throws IOException {
+		Responses responses = new Responses();
+		responses.statusCodes = new HashMap<>();
+		while (in.next() == Token.NAME) {
+			String code = in.text();
+			if (!object(code))
+				continue;
+			Response r = new Response();
+			while (in.next() == Token.NAME) {
+				String key = in.text();
+				if (key.equals("description")) {
+					r.description = string(key);
+				} else if (key.equals("content")) {
+					if (object(key))
+						r.content = readContent();
+				} else {
+					skipValue(key);
+				}
+			}
+			responses.statusCodes.put(code, r);
+		}
+		return responses;
+	}
+
+	/**
+	 * Reads a content map of media types.
+	 *
+	 * @return The media types by content type.
+	 * @throws IOException
+	 *             if the object is malformed.
+	 */
+	private Map<String, MediaType> readContent() throws IOException {
+		Map<String, MediaType> content = new HashMap<>();
+		while (in.next() == Token.NAME) {
+			String contentType = in.text();
+			if (!object(contentType))
+				continue;
+			MediaType mt = new MediaType();
+			while (in.next() == Token.NAME) {
+				String key = in.text();
+				if (key.equals("schema")) {
+					if (object(key))
+						mt.schema = readSchema();
+				} else {
+					skipValue(key);
+				}
+			}
+			content.put(contentType, mt);
+		}
+		return content;
+	}
+
+	/**
+	 * Reads a parameter list. Parameter schemas keep only their type and
+	 * reference.
+	 *
+	 * @return The parameters.
+	 * @throws IOException
+	 *             if the array is malformed.
+	 */
+	private List<Object> readParameters() throws IOException {
+		List<Object> list = new ArrayList<>();
+		Token t;
+		while ((t = in.next()) != Token.END_ARRAY) {
+			expectObject(t, "parameters");
+			Parameter p = new Parameter();
+			while (in.next() == Token.NAME) {
+				String key = in.text();
+				switch (key) {
+					case "name" :
+						p.name = string(key);
+						break;
+					case "in" :
+						p.in = string(key);
+						break;
+					case "description" :
+						p.description = string(key);
+						break;
+					case "required" :
+						Boolean required = bool(key);
+						if (required != null)
+							p.required = required;
+						break;
+					case "schema" :
+						if (object(key)) {
+							Schema schema = new Schema();
+							while (in.next() == Token.NAME) {
+								String member = in.text();
+								if (member.equals("type"))
+									schema.type = string(member);
+								else if (member.equals("$ref"))
+									schemaRef(schema);
+								else
+									skipValue(member);
+							}
+							p.schema = schema;
+						}
+						break;
+					default :
+						skipValue(key);
+				}
+			}
+			list.add(p);
+		}
+		return list;
+	}
+
+	/**
+	 * Reads the components object; only schemas are kept.
+	 *
+	 * @return The components.
+	 * @throws IOException
+	 *             if the object is malformed.
+	 */
+	private Components readComponents() throws IOException {
+		Components components = new Components();
+		while (in.next() == Token.NAME) {
+			String key = in.text();
+			if (key.equals("schemas")) {
+				if (object(key))
+					components.schemas = readSchemas();
+			} else {
+				skipValue(key);
+			}
+		}
+		return components;
+	}
+
+	/**
+	 * Reads a map of named schemas whose opening brace has been consumed.
+	 *
+	 * @return The schemas by name.
+	 * @throws IOException
+	 *             if the object is malformed.
+	 */
+	private Map<String, Schema> readSchemas() throws IOException {
+		Map<String, Schema> schemas = new HashMap<>();
+		while (in.next() == Token.NAME) {
+			String name = in.text();
+			if (object(name))
+				schemas.put(name, readSchema());
+		}
+		return schemas;
+	}
+
+	/**
+	 * Reads a schema whose opening brace has been consumed.
+	 *
+	 * @return The schema.
+	 * @throws IOException
+	 *             if the object is malformed.
+	 */
+	private Schema readSchema() throws IOException {
+		Schema s = new Schema();
+		while (in.next() == Token.NAME) {
+			String key = in.text();
+			switch (key) {
+				case "type" :
+					s.type = string(key);
+					break;
+				case "format" :
+					s.format = string(key);
+					break;
+				case "description" :
+					s.description = string(key);
+					break;
+				case "$ref" :
+					schemaRef(s);
+					break;
+				case "items" :
+					if (object(key))
+						s.items = readSchema();
+					break;
+				case "properties" :
+					if (object(key))
+						s.properties = new HashMap<>(readSchemas());
+					break;
+				default :
+					skipValue(key);
+			}
+		}
+		return s;
+	}
+
+	/**
+	 * Reads a schema's {@code $ref}, noting it for bundling when external.
+	 *
+	 * @param s
+	 *            The schema.
+	 * @throws IOException
+	 *             if the value is not a string.
+	 */
+	private void schemaRef(Schema s) throws IOException {
+		s.$ref = string("$ref");
+		if (s.$ref != null && !s.$ref.startsWith("#"))
+			refs.add(new ExternalRef(s, s.$ref));
+	}
+
+	/**
+	 * Reads a string member value.
+	 *
+	 * @param key
+	 *            The member name, for errors.
+	 * @return The string, or null for a YAML null.
+	 * @throws IOException
+	 *             if the value is not a string.
+	 */
+	private String string(String key) throws IOException {
+		Token t = in.next();
+		if (t == Token.STRING)
+			return in.text();
+		if (t == Token.NULL && in.dropsNulls())
+			return null;
+		throw notA(key, "a string");
+	}
+
+	/**
+	 * Reads a boolean member value; the strings {@code true} and {@code false}
+	 * are accepted too.
+	 *
+	 * @param key
+	 *            The member name, for errors.
+	 * @return The boolean, or null for a YAML null.
+	 * @throws IOException
+	 *             if the value is not a boolean.
+	 */
+	private Boolean bool(String key) throws IOException {
+		Token t = in.next();
+		if (t == Token.BOOLEAN)
+			return Boolean.valueOf(in.text());
+		if (t == Token.STRING && (in.text().equalsIgnoreCase("true") || in.text().equalsIgnoreCase("false")))
+			return Boolean.valueOf(in.text().toLowerCase());
+		if (t == Token.NULL && in.dropsNulls())
+			return null;
+		throw notA(key, "a boolean");
+	}
+
+	/**
+	 * Reads a string array member value.
+	 *
+	 * @param key
+	 *            The member name, for errors.
+	 * @return The strings, or null for a YAML null.
+	 * @throws IOException
+	 *             if the value is not an array of strings.
+	 */
+	private List<String> strings(String key) throws IOException {
+		if (!array(key))
+			return null;
+		List<String> list = new ArrayList<>();
+		Token t;
+		while ((t = in.next()) != Token.END_ARRAY) {
+			if (t != Token.STRING)
+				throw notA(key + "[" + list.size() + "]", "a string");
+			list.add(in.text());
+		}
+		return list;
+	}
+
+	/**
+	 * Enters an object member value.
+	 *
+	 * @param key
+	 *            The member name, for errors.
+	 * @return true if an object was entered, false for a YAML null.
+	 * @throws IOException
+	 *             if the value is not an object.
+	 */
+	private boolean object(String key) throws IOException {
+		Token t = in.next();
+		if (t == Token.NULL && in.dropsNulls())
+			return false;
+		expectObject(t, key);
+		return true;
+	}
+
+	/**
+	 * Enters an array member value.
+	 *
+	 * @param key
+	 *            The member name, for errors.
+	 * @return true if an array was entered, false for a YAML null.
+	 * @throws IOException
+	 *             if the value is not an array.
+	 */
+	private boolean array(String key) throws IOException {
+		Token t = in.next();
+		if (t == Token.NULL && in.dropsNulls())
+			return false;
+		if (t != Token.START_ARRAY)
+			throw notA(key, "an array");
+		return true;
+	}
+
+	/**
+	 * Checks that a token starts an object.
+	 *
+	 * @param t
+	 *            The token.
+	 * @param key
+	 *            The member name, for errors.
+	 * @throws IOException
+	 *             if it does not.
+	 */
+	private static void expectObject(Token t, String key) throws IOException {
+		if (t != Token.START_OBJECT)
+			throw notA(key, "an object");
+	}
+
+	/**
+	 * Skips a member value, noting any external references inside it.
+	 *
+	 * @param key
+	 *            The member name.
+	 * @throws IOException
+	 *             if the document is malformed.
+	 */
+	private void skipValue(String key) throws IOException {
+		Token t = in.next();
+		if (t == Token.STRING && key.equals("$ref")) {
+			if (!in.text().startsWith("#"))
+				refs.add(new ExternalRef(null, in.text()));
+		} else {
+			skip(t);
+		}
+	}
+
+	/**
+	 * Skips the rest of a value.
+	 *
+	 * @param t
+	 *            The value's first token.
+	 * @throws IOException
+	 *             if the document is malformed.
+	 */
+	private void skip(Token t) throws IOException {
+		if (t == Token.START_OBJECT) {
+			while ((t = in.next()) == Token.NAME)
+				skipValue(in.text());
+		} else if (t == Token.START_ARRAY) {
+			while ((t = in.next()) != Token.END_ARRAY)
+				skip(t);
+		} else if (t == Token.EOF) {
+			throw new IOException("Unexpected end of document");
+		}
+	}
+
+	/**
+	 * Creates a type error for a member.
+	 *
+	 * @param key
+	 *            The member name.
+	 * @param what
+	 *            The expected type.
+	 * @return The exception.
+	 */
+	private static IOException notA(String key, String what) {
+		return new IOException("\"" + key + "\" is not " + what);
+	}
+}
@@ -0,0 +1,365 @@
+package openapi;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.yaml.snakeyaml.LoaderOptions;
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.events.AliasEvent;
+import org.yaml.snakeyaml.events.CollectionStartEvent;
+import org.yaml.snakeyaml.events.Event;
+import org.yaml.snakeyaml.events.NodeEvent;
+import org.yaml.snakeyaml.events.ScalarEvent;
+import org.yaml.snakeyaml.nodes.NodeId;
+import org.yaml.snakeyaml.nodes.Tag;
+import org.yaml.snakeyaml.resolver.Resolver;
+
+/**
+ * Pull tokenizer for YAML, driven by SnakeYAML's event API. Scalars are typed
+ * with SnakeYAML's implicit resolver, as {@code Yaml.load} would type them.
+ * Aliases are expanded by replaying the events recorded for their anchor, so
+ * only anchored nodes are ever held in memory, and merge keys ({@code <<})
+ * splice the merged mappings into the current one.
+ */
+class YamlTokens extends SpecTokens {
+
+	/**
+	 * Plain scalars SnakeYAML loads as {@code true}.
+	 */
+	private static final Set<String> TRUE = Set.of("yes", "true", "on");
+
+	/**
+	 * Types plain scalars.
+	 */
+	private static final Resolver RESOLVER = new Resolver();
+
+	/**
+	 * Events from the parser.
+	 */
+	private final Iterator<Event> events;
+
+	/**
+	 * Events to replay before reading on, for aliases and merge keys.
+	 */
+	private final Deque<Iterator<Event>> replay = new ArrayDeque<>();
+
+	/**
+	 * Events of each anchored node, by anchor.
+	 */
+	private final Map<String, List<Event>> anchors = new HashMap<>();
+
+	/**
+	 * Anchored nodes still being recorded, innermost last.
+	 */
+	private final List<Recording> recording = new ArrayList<>();
+
+	/**
+	 * How many more aliases of collections may be expanded.
+	 */
+	private int aliasBudget;
+
+	/**
+	 * The configured limit on aliases of collections, for errors.
+	 */
+	private final int maxAliases;
+
+	/**
+	 * For each open collection, whether it is a mapping.
+	 */
+	private final Deque<Boolean> mappings = new ArrayDeque<>();
+
+	/**
+	 * Whether the innermost open mapping expects a key.
+	 */
+	private boolean key;
+
+	/**
+	 * For each open mapping, whether it expected a key when a nested collection
+	 * was opened.
+	 */
+	private final Deque<Boolean> keys = new ArrayDeque<>();
+
+	/**
+	 * An anchored node being recorded.
+	 */
+	private static final class Recording {
+
+		/**
+		 * The anchor.
+		 */
+		final String anchor;
+
+		/**
+		 * The node's events so far.
+		 */
+		final List<Event> events = new ArrayList<>();
+
+		/**
+		 * Collections opened and not yet closed within the node.
+		 */
+		int depth;
+
+		/**
+		 * Creates a recording.
+		 *
+		 * @param anchor
+		 *            The anchor.
+		 */
+		Recording(String anchor) {
+			this.anchor = anchor;
+		}
+	}
+
+	/**
+	 * Creates a tokenizer. Every expansion of an alias to a collection, including
+	 * those nested in replayed anchors, counts against SnakeYAML's limit on
+	 * aliases for collections, so replaying stays linear in the size of the
+	 * document.
+	 *
+	 * @param in
+	 *            The document.
+	 */
+	YamlTokens(Reader in) {
+		LoaderOptions options = new LoaderOptions();
+		// Aggregated specs easily exceed the default 3 MB document limit
+		options.setCodePointLimit(Integer.MAX_VALUE);
+		this.maxAliases = options.getMaxAliasesForCollections();
+		this.aliasBudget = maxAliases;
+		this.events = new Yaml(options).parse(in).iterator();
+	}
+
+	/**
+	 * Advances to the next token.
+	 *
+	 * @return The token.
+	 * @throws IOException
+	 *             if the document uses an unsupported construct.
+	 */
+	@Override
+	Token next() throws IOException {
+		while (true) {
+			Event e = event();
+			if (e == null)
+				return Token.EOF;
+			switch (e.getEventId()) {
+				case MappingStart :
+					open(true);
+					return Token.START_OBJECT;
+				case SequenceStart :
+					open(false);
+					return Token.START_ARRAY;
+				case MappingEnd :
+				case SequenceEnd :
+					mappings.pop();
+					key = !keys.isEmpty() && keys.pop();
+					return e.getEventId() == Event.ID.MappingEnd ? Token.END_OBJECT : Token.END_ARRAY;
+				case Scalar :
+					ScalarEvent scalar = (ScalarEvent) e;
+					Tag tag = tag(scalar);
+					if (inMapping() && key) {
+						if (tag.equals(Tag.MERGE)) {
+							merge();
+							continue;
+						}
+						key = false;
+						text = scalar.getValue();
+						return Token.NAME;
+					}
+					valueRead();
+					text = scalar.getValue();
+					if (tag.equals(Tag.STR))
+						return Token.STRING;
+					if (tag.equals(Tag.NULL))
+						return Token.NULL;
+					if (tag.equals(Tag.BOOL)) {
+						text = Boolean.toString(TRUE.contains(text.toLowerCase()));
+						return Token.BOOLEAN;
+					}
+					return Token.NUMBER;
+				case StreamEnd :
+				case DocumentEnd :
+					// SnakeYAML closes every collection before the document ends
+					return Token.EOF;
+				default :
+					// Stream and document starts carry nothing
+					continue;
+			}
+		}
+	}
+
+	/**
+	 * YAML members with null values are dropped when loaded into a tree.
+	 *
+	 * @return true.
+	 */
+	@Override
+	boolean dropsNulls() {
+		return true;
+	}
+
+	/**
+	 * Tracks the opening of a collection.
+	 *
+	 * @param mapping
+	 *            Whether the collection is a mapping.
+	 * @throws IOException
+	 *             if a collection is used as a mapping key.
+	 */
+	private void open(boolean mapping) throws IOException {
+		if (inMapping() && key)
+			throw new IOException("Unsupported YAML mapping key: only scalar keys are allowed");
+		if (!mappings.isEmpty()) {
+			valueRead();
+			keys.push(key);
+		}
+		mappings.push(mapping);
+		key = mapping;
+	}
+
+	/**
+	 * Notes that a value was read in the innermost collection.
+	 */
+	private void valueRead() {
+		if (inMapping())
+			key = true;
+	}
+
+	/**
+	 * Whether the innermost open collection is a mapping.
+	 *
+	 * @return true inside a mapping.
+	 */
+	private boolean inMapping() {
+		return !mappings.isEmpty() && mappings.peek();
+	}
+
+	/**
+	 * Splices the value of a merge key into the current mapping. The value is a
+	 * mapping or a sequence of mappings; earlier mappings in a sequence take
+	 * precedence, so they are replayed last.
+	 *
+	 * @throws IOException
+	 *             if the value is not a mapping or sequence of mappings.
+	 */
+	private void merge() throws IOException {
+		Event first = event();
+		List<List<Event>> merged = new ArrayList<>();
+		if (first.is(Event.ID.SequenceStart)) {
+			for (Event e = event(); !e.is(Event.ID.SequenceEnd); e = event())
+				merged.add(node(e));
+		} else {
+			merged.add(node(first));
+		}
+		for (List<Event> mapping : merged) {
+			if (!mapping.get(0).is(Event.ID.MappingStart))
+				throw new IOException("Merge key values must be mappings");
+			replay.push(mapping.subList(1, mapping.size() - 1).iterator());
+		}
+	}
+
+	/**
+	 * Reads the remaining events of a node.
+	 *
+	 * @param first
+	 *            The node's first event.
+	 * @return All of the node's events.
+	 * @throws IOException
+	 *             if an alias inside the node cannot be expanded.
+	 */
+	private List<Event> node(Event first) throws IOException {
+		List<Event> node = new ArrayList<>();
+		node.add(first);
+		int depth = first instanceof CollectionStartEvent ? 1 : 0;
+		while (depth > 0) {
+			Event e = event();
+			node.add(e);
+			if (e instanceof CollectionStartEvent)
+				depth++;
+			else if (e.is(Event.ID.MappingEnd) || e.is(Event.ID.SequenceEnd))
+				depth--;
+		}
+		return node;
+	}
+
+	/**
+	 * Returns the next event with aliases expanded, recording anchored nodes
+	 * as they are read.
+	 *
+	 * @return The event, or null at the end of the stream.
+	 * @throws IOException
+	 *             if an alias names an unknown anchor, or too many aliases of
+	 *             collections are expanded.
+	 */
+	private Event event() throws IOException {
+		while (true) {
+			while (!replay.isEmpty() && !replay.peek().hasNext())
+				replay.pop();
+			Event e;
+			if (!replay.isEmpty()) {
+				e = replay.peek().next();
+			} else if (events.hasNext()) {
+				e = events.next();
+				record(e);
+			} else {
+				return null;
+			}
+			if (e instanceof AliasEvent) {
+				String anchor = ((AliasEvent) e).getAnchor();
+				List<Event> target = anchors.get(anchor);
+				if (target == null)
+					throw new IOException("Unknown YAML alias: *" + anchor);
+				if (target.get(0) instanceof CollectionStartEvent && aliasBudget-- <= 0)
+					throw new IOException("Number of aliases for non-scalar nodes exceeds the specified max=" + maxAliases);
+				replay.push(target.iterator());
+				continue;
+			}
+			return e;
+		}
+	}
+
+	/**
+	 * Adds a parser event to the anchored nodes being recorded, starting a new
+	 * recording when the event carries an anchor.
+	 *
+	 * @param e
+	 *            The event.
+	 */
+	private void record(Event e) {
+		if (e instanceof NodeEvent && !(e instanceof AliasEvent) && ((NodeEvent) e).getAnchor() != null)
+			recording.add(new Recording(((NodeEvent) e).getAnchor()));
+		for (int i = recording.size() - 1; i >= 0; i--) {
+			Recording r = recording.get(i);
+			r.events.add(e);
+			if (e instanceof CollectionStartEvent)
+				r.depth++;
+			else if (e.is(Event.ID.MappingEnd) || e.is(Event.ID.SequenceEnd))
+				r.depth--;
+			if (r.depth == 0) {
+				anchors.put(r.anchor, r.events);
+				recording.remove(i);
+			}
+		}
+	}
+
+	/**
+	 * Resolves the tag of a scalar: its explicit tag, or the type SnakeYAML
+	 * infers from a plain scalar's text.
+	 *
+	 * @param scalar
+	 *            The scalar.
+	 * @return The tag.
+	 */
+	private static Tag tag(ScalarEvent scalar) {
+		String explicit = scalar.getTag();
+		if (explicit != null && !explicit.equals("!"))
+			return new Tag(explicit);
+		return RESOLVER.resolve(NodeId.scalar, scalar.getValue(), scalar.getImplicit().canOmitTagInPlainScalar());
+	}
+}
@@ -2,6 +2,8 @@ package orm;
 
 import openapi.OpenAPI;
 import openapi.Schema;
+import sink.FileSink;
+import sink.MapSink;
 import com.github.javaparser.StaticJavaParser;
 import com.github.javaparser.ast.CompilationUnit;
 import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
@@ -29,9 +31,23 @@ public class Emit {
 	 * @return Map of filenames to generated Java source.
 	 */
 	public static Map<String, String> emitModular(OpenAPI model) {
-		Map<String, String> files = new java.util.HashMap<>();
+		MapSink sink = new MapSink();
+		emitModular(model, sink);
+		return sink.files;
+	}
+
+	/**
+	 * Emits Modular Java code for JPA entities, handing each file to the sink as
+	 * soon as it is printed.
+	 *
+	 * @param model
+	 *            The OpenAPI model.
+	 * @param sink
+	 *            Receives each generated file.
+	 */
+	public static void emitModular(OpenAPI model, FileSink sink) {
 		if (model.components == null || model.components.schemas == null)
-			return files;
+			return;
 
 		for (Map.Entry<String, Schema> entry : model.components.schemas.entrySet()) {
 			String className = entry.getKey().replaceAll("[^a-zA-Z0-9_]", "");
@@ -56,10 +72,9 @@ public class Emit {
 				emitEntity(cu, className, schemaMap, model);
 
 				cu.getClassByName(className).ifPresent(c -> c.setModifier(Modifier.Keyword.PUBLIC, true));
-				files.put("models/" + className + ".java", cu.toString());
+				sink.write("models/" + className + ".java", cu.toString());
 			}
 		}
-		return files;
 	}
 
 	/**
@@ -32,14 +32,29 @@ public class Parse {
 	 * @return The parsed OpenAPI object.
 	 */
 	public static OpenAPI parse(String sourceCode) {
+		CompilationUnit cu;
+		try {
+			cu = StaticJavaParser.parse(sourceCode);
+		} catch (Exception e) {
+			cu = new CompilationUnit();
+		}
+		return parse(cu);
+	}
+
+	/**
+	 * Parses an already-parsed compilation unit into an OpenAPI model.
+	 *
+	 * @param cu
+	 *            The compilation unit.
+	 * @return The parsed OpenAPI object.
+	 */
+	public static OpenAPI parse(CompilationUnit cu) {
 		OpenAPI api = new OpenAPI();
 		api.openapi = "3.2.0";
 		api.components = new openapi.Components();
 		api.components.schemas = new HashMap<>();
 
 		try {
-			CompilationUnit cu = StaticJavaParser.parse(sourceCode);
-
 			for (ClassOrInterfaceDeclaration classDecl : cu.findAll(ClassOrInterfaceDeclaration.class)) {
 				if (classDecl.isInterface() || !classDecl.getAnnotationByName("Entity").isPresent()) {
 					continue;
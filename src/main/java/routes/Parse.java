@@ -40,6 +40,24 @@ public class Parse {
 	 * @return The parsed OpenAPI object.
 	 */
 	public static OpenAPI parse(String sourceCode) {
+		CompilationUnit cu;
+		try {
+			cu = StaticJavaParser.parse(sourceCode);
+		} catch (Exception e) {
+			// Ignore unparseable code
+			cu = new CompilationUnit();
+		}
+		return parse(cu);
+	}
+
+	/**
+	 * Parses an already-parsed Java compilation unit into an OpenAPI model.
+	 *
+	 * @param cu
+	 *            The compilation unit.
+	 * @return The parsed OpenAPI object.
+	 */
+	public static OpenAPI parse(CompilationUnit cu) {
 		OpenAPI api = new OpenAPI();
 		api.openapi = "3.2.0";
 		api.info = new Info();
@@ -48,7 +66,6 @@ public class Parse {
 		api.paths = new openapi.Paths();
 
 		try {
-			CompilationUnit cu = StaticJavaParser.parse(sourceCode);
 			for (ClassOrInterfaceDeclaration classDecl : cu.findAll(ClassOrInterfaceDeclaration.class)) {
 
 				if (classDecl.getNameAsString().endsWith("Client")) {
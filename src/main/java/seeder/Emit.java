@@ -2,6 +2,8 @@ package seeder;
 
 import openapi.OpenAPI;
 import openapi.Schema;
+import sink.FileSink;
+import sink.MapSink;
 import com.github.javaparser.StaticJavaParser;
 import com.github.javaparser.ast.CompilationUnit;
 import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
@@ -30,9 +32,23 @@ public class Emit {
 	 * @return Map of filenames to generated Java source.
 	 */
 	public static Map<String, String> emitModular(OpenAPI model) {
-		Map<String, String> files = new java.util.HashMap<>();
+		MapSink sink = new MapSink();
+		emitModular(model, sink);
+		return sink.files;
+	}
+
+	/**
+	 * Emits Modular Java code for Database Seeder based on the OpenAPI models,
+	 * handing each file to the sink as soon as it is printed.
+	 *
+	 * @param model
+	 *            The OpenAPI model.
+	 * @param sink
+	 *            Receives each generated file.
+	 */
+	public static void emitModular(OpenAPI model, FileSink sink) {
 		if (model.components == null || model.components.schemas == null)
-			return files;
+			return;
 
 		CompilationUnit cu = new CompilationUnit();
 		cu.setPackageDeclaration("seeder");
@@ -79,8 +95,7 @@ public class Emit {
 		}
 		body.append("}\n");
 		seedMethod.setBody(StaticJavaParser.parseBlock(body.toString()));
-		files.put("seeder/Seeder.java", cu.toString());
-		return files;
+		sink.write("seeder/Seeder.java", cu.toString());
 	}
 
 	/**
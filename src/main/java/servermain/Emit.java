@@ -2,6 +2,8 @@ package servermain;
 
 import openapi.OpenAPI;
 import openapi.PathItem;
+import sink.FileSink;
+import sink.MapSink;
 import com.github.javaparser.StaticJavaParser;
 import com.github.javaparser.ast.CompilationUnit;
 import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
@@ -30,8 +32,21 @@ public class Emit {
 	 * @return Map of filenames to generated Java source.
 	 */
 	public static Map<String, String> emitModular(OpenAPI model) {
-		Map<String, String> files = new java.util.HashMap<>();
+		MapSink sink = new MapSink();
+		emitModular(model, sink);
+		return sink.files;
+	}
 
+	/**
+	 * Emits Modular Java code for the server main class based on the OpenAPI
+	 * models, handing each file to the sink as soon as it is printed.
+	 *
+	 * @param model
+	 *            The OpenAPI model.
+	 * @param sink
+	 *            Receives each generated file.
+	 */
+	public static void emitModular(OpenAPI model, FileSink sink) {
 		CompilationUnit cu = new CompilationUnit();
 		cu.setPackageDeclaration("servermain");
 		cu.addImport("io.javalin.Javalin");
@@ -79,7 +94,6 @@ public class Emit {
 		sb.append("}\n");
 		mainMethod.setBody(StaticJavaParser.parseBlock(sb.toString()));
 
-		files.put("servermain/Main.java", cu.toString());
-		return files;
+		sink.write("servermain/Main.java", cu.toString());
 	}
 }
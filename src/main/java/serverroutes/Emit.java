@@ -3,6 +3,8 @@ package serverroutes;
 import openapi.OpenAPI;
 import openapi.PathItem;
 import openapi.Operation;
+import sink.FileSink;
+import sink.MapSink;
 import com.github.javaparser.StaticJavaParser;
 import com.github.javaparser.ast.CompilationUnit;
 import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
@@ -31,9 +33,23 @@ public class Emit {
 	 * @return Map of filenames to generated Java source.
 	 */
 	public static Map<String, String> emitModular(OpenAPI model) {
-		Map<String, String> files = new java.util.HashMap<>();
+		MapSink sink = new MapSink();
+		emitModular(model, sink);
+		return sink.files;
+	}
+
+	/**
+	 * Emits Modular Java code for server routes based on the OpenAPI models,
+	 * handing each file to the sink as soon as it is printed.
+	 *
+	 * @param model
+	 *            The OpenAPI model.
+	 * @param sink
+	 *            Receives each generated file.
+	 */
+	public static void emitModular(OpenAPI model, FileSink sink) {
 		if (model.paths == null || model.paths.pathItems == null)
-			return files;
+			return;
 
 		for (Map.Entry<String, PathItem> entry : model.paths.pathItems.entrySet()) {
 			String path = entry.getKey();
@@ -128,10 +144,8 @@ public class Emit {
 			sb.append("}\n");
 			md.setBody(StaticJavaParser.parseBlock(sb.toString()));
 
-			files.put("routes/" + className + ".java", cu.toString());
+			sink.write("routes/" + className + ".java", cu.toString());
 		}
-
-		return files;
 	}
 
 	private static String getResourceName(String path) {
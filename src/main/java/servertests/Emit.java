@@ -3,6 +3,8 @@ package servertests;
 import openapi.OpenAPI;
 import openapi.PathItem;
 import openapi.Schema;
+import sink.FileSink;
+import sink.MapSink;
 import com.github.javaparser.StaticJavaParser;
 import com.github.javaparser.ast.CompilationUnit;
 import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
@@ -30,8 +32,21 @@ public class Emit {
 	 * @return Map of filenames to generated Java source.
 	 */
 	public static Map<String, String> emitModular(OpenAPI model) {
-		Map<String, String> files = new java.util.HashMap<>();
+		MapSink sink = new MapSink();
+		emitModular(model, sink);
+		return sink.files;
+	}
 
+	/**
+	 * Emits Modular Java code for server tests based on the OpenAPI models, handing
+	 * each file to the sink as soon as it is printed.
+	 *
+	 * @param model
+	 *            The OpenAPI model.
+	 * @param sink
+	 *            Receives each generated file.
+	 */
+	public static void emitModular(OpenAPI model, FileSink sink) {
 		// Unified Error Exception
 		CompilationUnit excCu = new CompilationUnit();
 		excCu.setPackageDeclaration("exceptions");
@@ -47,7 +62,7 @@ public class Emit {
 		block.addStatement(new com.github.javaparser.ast.stmt.ExplicitConstructorInvocationStmt(false, null,
 				new com.github.javaparser.ast.NodeList<>(new com.github.javaparser.ast.expr.NameExpr("message"))));
 		excCtor.setBody(block);
-		files.put("../main/java/exceptions/ServerException.java", excCu.toString());
+		sink.write("../main/java/exceptions/ServerException.java", excCu.toString());
 
 		// Model Tests
 		if (model.components != null && model.components.schemas != null) {
@@ -73,7 +88,7 @@ public class Emit {
 				md.setBody(StaticJavaParser
 						.parseBlock("{ " + className + " obj = new " + className + "(); assertNotNull(obj); }"));
 
-				files.put("models/" + className + "Test.java", cu.toString());
+				sink.write("models/" + className + "Test.java", cu.toString());
 			}
 		}
 
@@ -107,10 +122,8 @@ public class Emit {
 				md.setBody(StaticJavaParser
 						.parseBlock("{ DaoFactory factory = new DaoFactory(); assertNotNull(factory); }"));
 
-				files.put("routes/" + className + "Test.java", cu.toString());
+				sink.write("routes/" + className + "Test.java", cu.toString());
 			}
 		}
-
-		return files;
 	}
 }
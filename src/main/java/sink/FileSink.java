@@ -0,0 +1,20 @@
+package sink;
+
+/**
+ * Receives generated files one compilation unit at a time, so emitters never
+ * hold a whole project's source in memory. Sinks backed by storage report I/O
+ * failures as {@link java.io.UncheckedIOException}.
+ */
+@FunctionalInterface
+public interface FileSink {
+
+	/**
+	 * Accepts one generated file.
+	 *
+	 * @param path
+	 *            The file path, relative to the emitter's source root.
+	 * @param content
+	 *            The generated source.
+	 */
+	void write(String path, String content);
+}
@@ -0,0 +1,35 @@
+package sink;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Collects generated files into a map, for callers that want every file at
+ * once.
+ */
+public class MapSink implements FileSink {
+
+	/**
+	 * Generated files keyed by path; later writes to a path replace earlier ones.
+	 */
+	public final Map<String, String> files = new HashMap<>();
+
+	/**
+	 * Default constructor.
+	 */
+	public MapSink() {
+	}
+
+	/**
+	 * Stores a generated file.
+	 *
+	 * @param path
+	 *            The file path.
+	 * @param content
+	 *            The generated source.
+	 */
+	@Override
+	public void write(String path, String content) {
+		files.put(path, content);
+	}
+}
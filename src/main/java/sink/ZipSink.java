@@ -0,0 +1,86 @@
+package sink;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Streams generated files into a zip archive as they are produced, so a whole
+ * project can be written to a file or pipe without touching the filesystem
+ * once per file. Writes may come from several emitter threads at once.
+ *
+ * A zip entry cannot be replaced once written, so each path must be written
+ * only once; a repeated path is rejected rather than archived twice.
+ */
+public class ZipSink implements FileSink, Closeable {
+
+	/**
+	 * The archive being written.
+	 */
+	private final ZipOutputStream zip;
+
+	/**
+	 * Paths already archived.
+	 */
+	private final Set<String> paths = new HashSet<>();
+
+	/**
+	 * Creates a sink writing to a stream; {@link #close()} finishes the archive
+	 * and closes the stream.
+	 *
+	 * @param out
+	 *            The stream receiving the archive.
+	 */
+	public ZipSink(OutputStream out) {
+		this.zip = new ZipOutputStream(out, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Adds a generated file to the archive.
+	 *
+	 * @param path
+	 *            The entry name.
+	 * @param content
+	 *            The generated source.
+	 * @throws IllegalStateException
+	 *             if the path was already archived.
+	 */
+	@Override
+	public synchronized void write(String path, String content) {
+		if (!paths.add(path))
+			throw new IllegalStateException("Duplicate archive entry: " + path);
+		try {
+			zip.putNextEntry(new ZipEntry(path));
+			zip.write(content.getBytes(StandardCharsets.UTF_8));
+			zip.closeEntry();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Number of entries archived so far.
+	 *
+	 * @return The entry count.
+	 */
+	public synchronized int getCount() {
+		return paths.size();
+	}
+
+	/**
+	 * Writes the archive's central directory and closes the stream.
+	 *
+	 * @throws IOException
+	 *             if the stream cannot be written.
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		zip.close();
+	}
+}
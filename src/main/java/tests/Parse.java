@@ -28,10 +28,27 @@ public class Parse {
 	 * @return The parsed object.
 	 */
 	public static OpenAPI parse(String sourceCode) {
+		CompilationUnit cu;
+		try {
+			cu = StaticJavaParser.parse(sourceCode);
+		} catch (Exception e) {
+			// ignore
+			cu = new CompilationUnit();
+		}
+		return parse(cu);
+	}
+
+	/**
+	 * Parses tests from an already-parsed compilation unit into OpenAPI.
+	 *
+	 * @param cu
+	 *            The compilation unit.
+	 * @return The parsed object.
+	 */
+	public static OpenAPI parse(CompilationUnit cu) {
 		OpenAPI api = new OpenAPI();
 		api.paths = new openapi.Paths();
 		try {
-			CompilationUnit cu = StaticJavaParser.parse(sourceCode);
 			for (ClassOrInterfaceDeclaration classDecl : cu.findAll(ClassOrInterfaceDeclaration.class)) {
 				if (!classDecl.getNameAsString().endsWith("IntegrationTest"))
 					continue;
@@ -0,0 +1,47 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import cli.AstResource;
+import cli.SourceWalker;
+
+public class AstResourceTest {
+
+	@Test
+	public void testReExtractsOnlyChangedFiles() throws Exception {
+		File dir = Files.createTempDirectory("cdd-ast").toFile();
+		File pet = new File(dir, "Pet.java");
+		File tag = new File(dir, "Tag.java");
+		Files.writeString(pet.toPath(), "public class Pet { public String name; }");
+		Files.writeString(tag.toPath(), "public class Tag { public String label; }");
+
+		try (AstResource resource = new AstResource(dir, new SourceWalker(), null)) {
+			String first = resource.read();
+			assertTrue(first.contains("Pet"));
+			assertEquals(2, resource.getExtracted());
+			assertSame(first, resource.read());
+			assertEquals(2, resource.getExtracted());
+
+			Files.writeString(pet.toPath(), "public class Pet { public String name; public int age; }");
+			pet.setLastModified(pet.lastModified() + 2000);
+			assertTrue(resource.read().contains("age"));
+			assertEquals(3, resource.getExtracted());
+
+			tag.delete();
+			assertFalse(resource.read().contains("Tag"));
+			assertEquals(3, resource.getExtracted());
+
+			CountDownLatch updated = new CountDownLatch(1);
+			resource.watch(updated::countDown);
+			// A second watch keeps the first callback
+			resource.watch(() -> fail("replaced the first watcher"));
+			Files.writeString(new File(dir, "Owner.java").toPath(), "public class Owner {}");
+			assertTrue(updated.await(10, TimeUnit.SECONDS));
+			resource.unwatch();
+		}
+	}
+}
@@ -0,0 +1,141 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.util.Map;
+
+import cli.CddEngine;
+import openapi.OpenAPI;
+
+public class CddEngineTest {
+
+	private static final String SPEC = "{\"openapi\":\"3.0.0\",\"info\":{\"title\":\"Pet Store\",\"version\":\"1\"},\"paths\":{}}";
+
+	@Test
+	public void testGenerateReturnsFilesAndReusesParsedSpecs() throws Exception {
+		CddEngine engine = new CddEngine();
+		OpenAPI api = engine.parse(SPEC.getBytes("UTF-8"), "file:/specs/");
+		assertSame(api, engine.parse(SPEC, "file:/specs/"));
+		assertEquals(1, engine.getSpecCache().getHits());
+
+		CddEngine.Options options = new CddEngine.Options();
+		options.tests = true;
+		Map<String, String> files = engine.generate(api, CddEngine.Target.SDK, options);
+		assertTrue(files.containsKey("pom.xml"));
+		assertTrue(files.containsKey(".github/workflows/ci.yml"));
+		assertTrue(files.containsKey("src/main/java/Sdk.java"));
+		assertTrue(files.containsKey("src/test/java/PetStoreIntegrationTest.java"));
+		assertTrue(files.containsKey("src/test/java/PetStoreMockServer.java"));
+
+		options.tests = false;
+		options.githubActions = false;
+		options.installablePackage = false;
+		files = engine.generate(api, CddEngine.Target.SDK_CLI, options);
+		assertEquals(1, files.size());
+		assertTrue(files.containsKey("SdkCli.java"));
+
+		// Every server emitter reports once, from whichever thread ran it
+		java.util.Set<String> steps = java.util.concurrent.ConcurrentHashMap.newKeySet();
+		options.jobs = 4;
+		options.progress = (step, done, total) -> {
+			assertEquals(8, total);
+			steps.add(step);
+		};
+		files = engine.generate(api, CddEngine.Target.SERVER, options);
+		assertTrue(files.keySet().stream().allMatch(path -> path.startsWith("src/")));
+		assertEquals(java.util.Set.of("classes", "orm", "dao", "serverroutes", "seeder", "servermain", "servertests", "mocks"),
+				steps);
+
+		assertNotNull(engine.docsJson(api, true, true));
+		assertEquals(CddEngine.Target.SERVER, CddEngine.Target.of("to_server"));
+		try {
+			CddEngine.Target.of("to_nothing");
+			fail();
+		} catch (IllegalArgumentException e) {
+		}
+	}
+
+	@Test
+	public void testParallelServerEmitFailures() throws Exception {
+		CddEngine engine = new CddEngine();
+		OpenAPI api = engine.parse(SPEC, "file:/specs/");
+		CddEngine.Options options = new CddEngine.Options();
+		options.jobs = 4;
+		// Only the server emitters write, so every failure comes from a worker
+		options.installablePackage = false;
+		options.githubActions = false;
+
+		try {
+			engine.generate(api, CddEngine.Target.SERVER, options, (path, content) -> {
+				throw new java.io.UncheckedIOException(new java.io.IOException("disk full"));
+			});
+			fail();
+		} catch (java.io.IOException e) {
+			assertEquals("disk full", e.getMessage());
+		}
+		try {
+			engine.generate(api, CddEngine.Target.SERVER, options, (path, content) -> {
+				throw new IllegalStateException("duplicate " + path);
+			});
+			fail();
+		} catch (IllegalStateException e) {
+			assertTrue(e.getMessage().startsWith("duplicate "));
+		}
+		try {
+			engine.generate(api, CddEngine.Target.SERVER, options, (path, content) -> {
+				throw new AssertionError("emitter bug");
+			});
+			fail();
+		} catch (AssertionError e) {
+			assertEquals("emitter bug", e.getMessage());
+		}
+
+		// Waiting for the emitters can be interrupted; the blocked ones are released
+		java.util.concurrent.CountDownLatch release = new java.util.concurrent.CountDownLatch(1);
+		Thread.currentThread().interrupt();
+		try {
+			engine.generate(api, CddEngine.Target.SERVER, options, (path, content) -> {
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			});
+			fail();
+		} catch (java.io.IOException e) {
+			assertEquals("Generation interrupted", e.getMessage());
+			assertTrue(Thread.interrupted());
+		} finally {
+			release.countDown();
+		}
+	}
+
+	@Test
+	public void testExtractsFromSources() throws Exception {
+		java.io.File dir = java.nio.file.Files.createTempDirectory("cdd-engine").toFile();
+		java.io.File pet = new java.io.File(dir, "Pet.java");
+		java.nio.file.Files.writeString(pet.toPath(), "public class Pet { public String name; }");
+		try {
+			OpenAPI api = new CddEngine().extract(dir, new cli.SourceWalker(), 1);
+			assertTrue(api.components.schemas.containsKey("Pet"));
+		} finally {
+			pet.delete();
+			dir.delete();
+		}
+	}
+
+	@Test
+	public void testModelsRenderEnumsAsDtosAndTheRestAsEntities() throws Exception {
+		CddEngine engine = new CddEngine();
+		OpenAPI api = engine.parse("{\"openapi\":\"3.0.0\",\"info\":{\"title\":\"Zoo\",\"version\":\"1\"},"
+				+ "\"paths\":{},\"components\":{\"schemas\":{\"Color\":{\"type\":\"string\"},"
+				+ "\"Pet\":{\"type\":\"object\",\"properties\":{\"name\":{\"type\":\"string\"}}}}}}", "file:/zoo/");
+		api.components.schemas.get("Color").enumValues = java.util.List.of("RED");
+		CddEngine.Options options = new CddEngine.Options();
+		options.jobs = 1;
+		Map<String, String> files = new java.util.HashMap<>();
+		// Each path is written once, as archive sinks require
+		engine.generate(api, CddEngine.Target.SERVER, options, (path, content) -> assertNull(path, files.put(path, content)));
+		assertTrue(files.get("src/main/java/models/Color.java").contains("enum Color"));
+		assertTrue(files.get("src/main/java/models/Pet.java").contains("@Entity"));
+	}
+}
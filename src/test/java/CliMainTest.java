@@ -21,6 +21,9 @@ public class CliMainTest {
 	private final PrintStream originalErr = System.err;
 	private final InputStream originalIn = System.in;
 
+	private static final String INITIALIZE = "{\"jsonrpc\":\"2.0\",\"method\":\"initialize\","
+			+ "\"params\":{\"protocolVersion\":\"2025-06-18\"},\"id\":0}\n";
+
 	@Before
 	public void setUpStreams() {
 		System.setOut(new PrintStream(outContent));
@@ -93,6 +96,10 @@ public class CliMainTest {
 		runMain(new String[]{"-h"});
 		runMain(new String[]{"--version"});
 		runMain(new String[]{"-v"});
+		assertTrue(outContent.toString()
+				.endsWith(CddCli.VERSION + System.lineSeparator() + CddCli.VERSION + System.lineSeparator()));
+		// The one version constant follows the build's
+		assertTrue(Files.readString(new File("pom.xml").toPath()).contains("<version>" + CddCli.VERSION + "</version>"));
 	}
 
 	@Test
@@ -142,6 +149,80 @@ public class CliMainTest {
 		assertTrue(outContent.toString().contains("\"success\":true"));
 	}
 
+	@Test
+	public void testGenerateInMemory() throws Exception {
+		String spec = "{\"openapi\":\"3.0.0\",\"info\":{\"title\":\"Api\",\"version\":\"1\"},\"paths\":{}}";
+		org.json.JSONObject payload = new org.json.JSONObject();
+		payload.put("command", new org.json.JSONArray().put("to_docs_json"));
+		payload.put("files", new org.json.JSONObject().put("spec.json", spec));
+		cli.InMemoryResult result = cli.CddCli.generateInMemory(payload.toString());
+		assertTrue(result.success);
+		assertTrue(result.files.containsKey("docs.json"));
+		assertEquals("", outContent.toString());
+
+		cli.InMemoryResult failed = cli.CddCli.generateInMemory("invalid_json");
+		assertFalse(failed.success);
+		assertNotNull(failed.error);
+		assertFalse(failed.toJson().getBoolean("success"));
+
+		String call = INITIALIZE
+				+ "{\"jsonrpc\":\"2.0\",\"method\":\"tools/call\",\"params\":{\"name\":\"cdd_generate\",\"arguments\":"
+				+ payload + "},\"id\":1}\n"
+				+ "{\"jsonrpc\":\"2.0\",\"method\":\"tools/call\",\"params\":{\"name\":\"cdd_generate\",\"arguments\":{\"command\":[\"bogus\"]}},\"id\":2}\n";
+		System.setIn(new ByteArrayInputStream(call.getBytes("UTF-8")));
+		runMain(new String[]{"serve_json_rpc", "--wasi"});
+		String out = outContent.toString();
+		assertTrue(out.contains("\"structuredContent\""));
+		assertTrue(out.contains("\"isError\":true"));
+		assertFalse(out.contains("CDD_IN_MEMORY_START"));
+
+		System.setIn(new ByteArrayInputStream(
+				"{\"jsonrpc\":\"2.0\",\"method\":\"stats\",\"id\":3}\n".getBytes("UTF-8")));
+		runMain(new String[]{"serve_json_rpc", "--wasi"});
+		assertTrue(outContent.toString().contains("\"specCache\""));
+	}
+
+	@Test
+	public void testServeJsonRpcOlderProtocolGetsTextResults() throws Exception {
+		String spec = "{\"openapi\":\"3.0.0\",\"info\":{\"title\":\"Api\",\"version\":\"1\"},\"paths\":{}}";
+		org.json.JSONObject files = new org.json.JSONObject().put("spec.json", spec);
+		org.json.JSONObject docs = new org.json.JSONObject().put("command", new org.json.JSONArray().put("to_docs_json"))
+				.put("files", files);
+		org.json.JSONObject resources = new org.json.JSONObject()
+				.put("command", new org.json.JSONArray().put("from_openapi").put("to_sdk")).put("files", files)
+				.put("delivery", "resources");
+		String input = "{\"jsonrpc\":\"2.0\",\"method\":\"initialize\",\"params\":{\"protocolVersion\":\"2024-11-05\"},\"id\":0}\n"
+				+ "{\"jsonrpc\":\"2.0\",\"method\":\"tools/call\",\"params\":{\"name\":\"cdd_generate\",\"arguments\":"
+				+ docs + "},\"id\":1}\n"
+				+ "{\"jsonrpc\":\"2.0\",\"method\":\"tools/call\",\"params\":{\"name\":\"cdd_generate\",\"arguments\":"
+				+ resources + "},\"id\":2}\n";
+		System.setIn(new ByteArrayInputStream(input.getBytes("UTF-8")));
+		runMain(new String[]{"serve_json_rpc", "--wasi"});
+		String out = outContent.toString();
+		assertTrue(out.contains("\"protocolVersion\":\"2024-11-05\""));
+		assertFalse(out.contains("\"structuredContent\""));
+		assertFalse(out.contains("\"resource_link\""));
+		for (String line : out.trim().split("\n")) {
+			org.json.JSONObject res = new org.json.JSONObject(line);
+			if (res.getInt("id") == 0)
+				continue;
+			org.json.JSONObject text = new org.json.JSONObject(
+					res.getJSONObject("result").getJSONArray("content").getJSONObject(0).getString("text"));
+			assertTrue(text.getBoolean("success"));
+			assertTrue(res.getInt("id") == 1
+					? text.getJSONObject("files").has("docs.json")
+					: text.getJSONObject("resources").has("pom.xml"));
+		}
+
+		// Unknown versions get the newest one served
+		outContent.reset();
+		System.setIn(new ByteArrayInputStream(
+				"{\"jsonrpc\":\"2.0\",\"method\":\"initialize\",\"params\":{\"protocolVersion\":\"1999-01-01\"},\"id\":0}\n"
+						.getBytes("UTF-8")));
+		runMain(new String[]{"serve_json_rpc", "--wasi"});
+		assertTrue(outContent.toString().contains("\"protocolVersion\":\"2025-06-18\""));
+	}
+
 	@Test
 	public void testProcessInMemoryUnsupportedCommand() throws Exception {
 		String spec = "{\"openapi\":\"3.0.0\",\"info\":{\"title\":\"Api\",\"version\":\"1\"},\"paths\":{}}";
@@ -193,6 +274,91 @@ public class CliMainTest {
 		runMain(new String[]{"from_openapi", "-i", specFile.getAbsolutePath(), "-o", outDir.getAbsolutePath()});
 	}
 
+	@Test
+	public void testFromOpenapiArchive() throws Exception {
+		File specDir = Files.createTempDirectory("cdd-archive").toFile();
+		File specFile = new File(specDir, "spec.json");
+		String spec = "{\"openapi\":\"3.2.0\",\"info\":{\"title\":\"Pet Store\",\"version\":\"1\"},\"paths\":{}}";
+		Files.writeString(specFile.toPath(), spec);
+		File zipFile = new File(specDir, "out.zip");
+
+		runMain(new String[]{"from_openapi", "to_sdk", "-i", specFile.getAbsolutePath(), "--output-archive",
+				zipFile.getAbsolutePath(), "--tests"});
+		Map<String, String> entries = unzip(Files.readAllBytes(zipFile.toPath()));
+		assertTrue(entries.containsKey("pom.xml"));
+		assertTrue(entries.containsKey("src/main/java/Sdk.java"));
+		assertTrue(entries.containsKey("src/test/java/PetStoreIntegrationTest.java"));
+		assertTrue(outContent.toString().contains("Files: " + entries.size() + " archived to"));
+
+		outContent.reset();
+		runMain(new String[]{"from_openapi", "to_sdk", "-i", specFile.getAbsolutePath(), "--output-archive", "-",
+				"--tests"});
+		assertEquals(entries, unzip(outContent.toByteArray()));
+		assertTrue(errContent.toString().contains("archived to stdout"));
+
+		JSONObject payload = new JSONObject();
+		payload.put("command", new org.json.JSONArray().put("from_openapi").put("to_sdk"));
+		payload.put("files", new JSONObject().put("spec.json", spec));
+		payload.put("archive", "zip");
+		cli.InMemoryResult result = CddCli.generateInMemory(payload.toString());
+		assertTrue(result.success);
+		assertTrue(result.files.isEmpty());
+		assertTrue(unzip(result.archive).containsKey("src/main/java/Sdk.java"));
+		assertTrue(result.toJson().has("archive"));
+
+		sink.ZipSink zip = new sink.ZipSink(new ByteArrayOutputStream());
+		zip.write("a.txt", "a");
+		try {
+			zip.write("a.txt", "b");
+			fail("Expected a duplicate entry to be rejected");
+		} catch (IllegalStateException e) {
+			assertEquals(1, zip.getCount());
+		}
+		zip.close();
+
+		sink.ZipSink broken = new sink.ZipSink(new java.io.OutputStream() {
+			@Override
+			public void write(int b) throws IOException {
+				throw new IOException("stream closed");
+			}
+		});
+		try {
+			broken.write("a.txt", "a");
+			fail("Expected the stream failure to surface");
+		} catch (java.io.UncheckedIOException e) {
+			assertEquals("stream closed", e.getCause().getMessage());
+		}
+		// Failures without a message still explain themselves
+		assertEquals("java.lang.NullPointerException",
+				cli.InMemoryResult.failure(new NullPointerException()).toJson().getString("error"));
+	}
+
+	private static Map<String, String> unzip(byte[] data) throws IOException {
+		Map<String, String> entries = new java.util.TreeMap<>();
+		try (java.util.zip.ZipInputStream in = new java.util.zip.ZipInputStream(new ByteArrayInputStream(data))) {
+			for (java.util.zip.ZipEntry e; (e = in.getNextEntry()) != null;)
+				entries.put(e.getName(), new String(in.readAllBytes(), "UTF-8"));
+		}
+		return entries;
+	}
+
+	@Test
+	public void testFromOpenapiBatch() throws Exception {
+		File specDir = Files.createTempDirectory("cdd-batch").toFile();
+		String spec = "{\"openapi\":\"3.2.0\",\"info\":{\"title\":\"Pet Store\",\"version\":\"1\"},\"paths\":{}}";
+		Files.writeString(new File(specDir, "a.json").toPath(), spec);
+		Files.writeString(new File(specDir, "b.json").toPath(), spec);
+		File outDir = new File(specDir, "out");
+
+		runMain(new String[]{"from_openapi", "to_sdk", "--input-dir", specDir.getAbsolutePath(), "-o",
+				outDir.getAbsolutePath(), "-j", "2"});
+		assertTrue(new File(outDir, "PetStore/src/main/java/Sdk.java").isFile());
+		assertTrue(new File(outDir, "PetStore2/src/main/java/Sdk.java").isFile());
+		assertTrue(new File(outDir, "pom.xml").isFile());
+		assertFalse(new File(outDir, "PetStore/pom.xml").exists());
+		assertTrue(outContent.toString().contains("Batch summary (2 specs, 2 jobs)"));
+	}
+
 	@Test
 	public void testToOpenApiCoverage() throws Exception {
 		File tempDir = Files.createTempDirectory("cdd-to-openapi").toFile();
@@ -289,6 +455,19 @@ public class CliMainTest {
 		}
 	}
 
+	@Test
+	public void testLazyRefsFailGenerationLikeEagerOnes() throws Exception {
+		File tempDir = Files.createTempDirectory("cdd_test_lazy").toFile();
+		File specFile = new File(tempDir, "spec.json");
+		// A lazy reference that cannot be loaded fails generation like an eager one
+		Files.writeString(specFile.toPath(), "{\"openapi\":\"3.0.0\",\"info\":{\"title\":\"\",\"version\":\"1\"},"
+				+ "\"paths\":{\"/a\":{\"get\":{\"responses\":{\"200\":{\"description\":\"ok\",\"content\":"
+				+ "{\"application/json\":{\"schema\":{\"$ref\":\"missing.json\"}}}}}}}}}");
+		runMain(new String[]{"from_openapi", "to_sdk", "-i", specFile.getAbsolutePath(), "-o",
+				new File(tempDir, "sdk").getAbsolutePath(), "--lazy-refs"});
+		assertTrue(errContent.toString(), errContent.toString().contains("Failed to resolve reference: missing.json"));
+	}
+
 	@Test
 	public void testServeJsonRpc() throws Exception {
 		runMain(new String[]{"serve_json_rpc", "-h"});
@@ -299,6 +478,9 @@ public class CliMainTest {
 				+ "{\"jsonrpc\":\"2.0\",\"method\":\"resources/list\",\"id\":31}\n"
 				+ "{\"jsonrpc\":\"2.0\",\"method\":\"resources/read\",\"params\":{\"uri\":\"cdd://ast/openapi\"},\"id\":32}\n"
 				+ "{\"jsonrpc\":\"2.0\",\"method\":\"resources/read\",\"params\":{\"uri\":\"unknown\"},\"id\":33}\n"
+				+ "{\"jsonrpc\":\"2.0\",\"method\":\"resources/subscribe\",\"params\":{\"uri\":\"cdd://ast/openapi\"},\"id\":34}\n"
+				+ "{\"jsonrpc\":\"2.0\",\"method\":\"resources/unsubscribe\",\"params\":{\"uri\":\"cdd://ast/openapi\"},\"id\":35}\n"
+				+ "{\"jsonrpc\":\"2.0\",\"method\":\"resources/subscribe\",\"params\":{\"uri\":\"unknown\"},\"id\":36}\n"
 				+ "{\"jsonrpc\":\"2.0\",\"method\":\"tools/call\",\"params\":{\"name\":\"cdd_generate\",\"arguments\":{\"command\":[\"to_openapi\",\"-h\"]}},\"id\":4}\n"
 				+ "{\"jsonrpc\":\"2.0\",\"method\":\"tools/call\",\"params\":{\"name\":\"unknown_tool\"},\"id\":5}\n"
 				+ "{\"jsonrpc\":\"2.0\",\"method\":\"tools/call\",\"id\":6}\n"
@@ -306,10 +488,245 @@ public class CliMainTest {
 				+ "invalid_json\n";
 
 		System.setIn(new ByteArrayInputStream(input.getBytes("UTF-8")));
-		runMain(new String[]{"serve_json_rpc"});
+		runMain(new String[]{"serve_json_rpc", "--wasi"});
+
+		String out = outContent.toString();
+		assertTrue(out.contains("\"result\":\"" + CddCli.VERSION + "\""));
+		assertTrue(out.contains("\"serverInfo\":{\"name\":\"cdd-java\",\"version\":\"" + CddCli.VERSION + "\"}"));
+		assertTrue(out.contains("\"subscribe\":true"));
+		assertTrue(out.contains("\"result\":{},\"id\":34"));
+		assertTrue(out.contains("\"result\":{},\"id\":35"));
+	}
+
+	@Test
+	public void testServeJsonRpcBatch() throws Exception {
+		String input = "[{\"jsonrpc\":\"2.0\",\"method\":\"version\",\"id\":1},"
+				+ "{\"jsonrpc\":\"2.0\",\"method\":\"notifications/initialized\"},"
+				+ "{\"jsonrpc\":\"2.0\",\"method\":\"ping\",\"id\":2},1]\n"
+				+ "[{\"jsonrpc\":\"2.0\",\"method\":\"notifications/initialized\"}]\n" + "[]\n" + "[1,\n";
+		System.setIn(new ByteArrayInputStream(input.getBytes("UTF-8")));
+		runMain(new String[]{"serve_json_rpc", "--wasi"});
+
+		// Lines are dispatched concurrently, so replies may arrive in any order
+		String[] lines = outContent.toString().trim().split("\n");
+		assertEquals(3, lines.length);
+		java.util.Arrays.sort(lines);
+		assertEquals("[{\"jsonrpc\":\"2.0\",\"result\":\"" + CddCli.VERSION + "\",\"id\":1},{\"jsonrpc\":\"2.0\",\"result\":{},\"id\":2},"
+				+ "{\"jsonrpc\":\"2.0\",\"error\":{\"code\":-32600,\"message\":\"Invalid Request\"},\"id\":null}]",
+				lines[0]);
+		assertTrue(outContent.toString().contains("-32700"));
+	}
+
+	@Test
+	public void testServeJsonRpcProgressAndDelivery() throws Exception {
+		String spec = "{\"openapi\":\"3.0.0\",\"info\":{\"title\":\"Api\",\"version\":\"1\"},\"paths\":{}}";
+		org.json.JSONObject files = new org.json.JSONObject().put("spec.json", spec);
+		org.json.JSONObject server = new org.json.JSONObject()
+				.put("command", new org.json.JSONArray().put("from_openapi").put("to_server")).put("files", files);
+		org.json.JSONObject chunks = new org.json.JSONObject()
+				.put("command", new org.json.JSONArray().put("from_openapi").put("to_sdk")).put("files", files)
+				.put("delivery", "chunks");
+		org.json.JSONObject resources = new org.json.JSONObject()
+				.put("command", new org.json.JSONArray().put("from_openapi").put("to_sdk")).put("files", files)
+				.put("delivery", "resources");
+		String input = INITIALIZE
+				+ "{\"jsonrpc\":\"2.0\",\"method\":\"tools/call\",\"params\":{\"name\":\"cdd_generate\",\"_meta\":{\"progressToken\":\"tok\"},\"arguments\":"
+				+ server + "},\"id\":1}\n"
+				+ "{\"jsonrpc\":\"2.0\",\"method\":\"tools/call\",\"params\":{\"name\":\"cdd_generate\",\"arguments\":"
+				+ chunks + "},\"id\":2}\n"
+				+ "{\"jsonrpc\":\"2.0\",\"method\":\"tools/call\",\"params\":{\"name\":\"cdd_generate\",\"arguments\":"
+				+ resources + "},\"id\":3}\n";
+		System.setIn(new ByteArrayInputStream(input.getBytes("UTF-8")));
+		runMain(new String[]{"serve_json_rpc", "--wasi"});
+		String out = outContent.toString();
+		assertTrue(out.contains("notifications/progress"));
+		assertTrue(out.contains("\"message\":\"orm\""));
+		assertTrue(out.contains("\"progress\":8") && out.contains("\"total\":8"));
+		assertTrue(out.contains("notifications/cdd/file"));
+		assertTrue(out.contains("\"paths\""));
+		assertTrue(out.contains("\"resource_link\""));
+		String sdk = null;
+		for (String line : out.trim().split("\n")) {
+			org.json.JSONObject res = new org.json.JSONObject(line);
+			if (res.optInt("id") == 3)
+				sdk = res.getJSONObject("result").getJSONObject("structuredContent").getJSONObject("resources")
+						.getString("src/main/java/Sdk.java");
+		}
+		assertTrue(sdk, sdk.matches("cdd://files/[0-9a-f-]+/src/main/java/Sdk\\.java"));
+
+		// Each call's files are kept apart, and only the most recent calls are kept
+		org.json.JSONObject docs = new org.json.JSONObject()
+				.put("command", new org.json.JSONArray().put("to_docs_json")).put("files", files)
+				.put("delivery", "resources");
+		outContent.reset();
+		System.setIn(new ByteArrayInputStream(
+				("{\"jsonrpc\":\"2.0\",\"method\":\"resources/read\",\"params\":{\"uri\":\"" + sdk + "\"},\"id\":4}\n")
+						.getBytes("UTF-8")));
+		runMain(new String[]{"serve_json_rpc", "--wasi"});
+		assertTrue(outContent.toString().contains("\"text/plain\""));
+		StringBuilder calls = new StringBuilder();
+		for (int i = 0; i < 8; i++)
+			calls.append("{\"jsonrpc\":\"2.0\",\"method\":\"tools/call\",\"params\":{\"name\":\"cdd_generate\",\"arguments\":")
+					.append(docs).append("},\"id\":").append(10 + i).append("}\n");
+		System.setIn(new ByteArrayInputStream(calls.toString().getBytes("UTF-8")));
+		runMain(new String[]{"serve_json_rpc", "--wasi"});
+		outContent.reset();
+		System.setIn(new ByteArrayInputStream(
+				("{\"jsonrpc\":\"2.0\",\"method\":\"resources/read\",\"params\":{\"uri\":\"" + sdk + "\"},\"id\":5}\n"
+						+ "{\"jsonrpc\":\"2.0\",\"method\":\"resources/read\",\"params\":{\"uri\":\"cdd://files/none\"},\"id\":6}\n")
+						.getBytes("UTF-8")));
+		runMain(new String[]{"serve_json_rpc", "--wasi"});
+		assertFalse(outContent.toString().contains("\"text/plain\""));
+		assertTrue(outContent.toString().contains("Resource not found\"},\"id\":6"));
+	}
+
+	@Test
+	public void testServeJsonRpcCancel() throws Exception {
+		String input = "{\"jsonrpc\":\"2.0\",\"method\":\"tools/call\",\"params\":{\"name\":\"cdd_generate\",\"arguments\":{\"command\":[\"to_openapi\"]}},\"id\":7}\n"
+				+ "{\"jsonrpc\":\"2.0\",\"method\":\"$/cancelRequest\",\"params\":{\"id\":7}}\n"
+				+ "{\"jsonrpc\":\"2.0\",\"method\":\"notifications/cancelled\",\"params\":{\"requestId\":99}}\n"
+				+ "{\"jsonrpc\":\"2.0\",\"method\":\"ping\",\"id\":8}\n"
+				+ "{\"jsonrpc\":\"2.0\",\"method\":\"shutdown\",\"id\":9}\n"
+				+ "{\"jsonrpc\":\"2.0\",\"method\":\"version\",\"id\":10}\n";
+		System.setIn(new ByteArrayInputStream(input.getBytes("UTF-8")));
+		runMain(new String[]{"serve_json_rpc", "--wasi"});
+
+		String out = outContent.toString();
+		assertTrue(out.contains("\"code\":-32800"));
+		assertFalse(out.contains("\"content\""));
+		assertTrue(out.contains("\"result\":{},\"id\":8"));
+		assertTrue(out.contains("\"result\":null,\"id\":9"));
+		// Nothing is read after shutdown
+		assertFalse(out.contains("\"id\":10"));
+	}
+
+	@Test
+	public void testServeJsonRpcRejectsDuplicateIds() throws Exception {
+		String input = "{\"jsonrpc\":\"2.0\",\"method\":\"tools/call\",\"params\":{\"name\":\"cdd_generate\",\"arguments\":{\"command\":[\"to_openapi\"]}},\"id\":1}\n"
+				+ "{\"jsonrpc\":\"2.0\",\"method\":\"ping\",\"id\":1}\n"
+				+ "{\"jsonrpc\":\"2.0\",\"method\":\"ping\",\"id\":\"1\"}\n"
+				+ "{\"jsonrpc\":\"2.0\",\"method\":\"$/cancelRequest\",\"params\":{\"id\":1}}\n";
+		System.setIn(new ByteArrayInputStream(input.getBytes("UTF-8")));
+		runMain(new String[]{"serve_json_rpc", "--wasi"});
 
 		String out = outContent.toString();
-		assertTrue(out.contains("\"result\":\"0.0.3\""));
+		// The numeric id is taken; the string id is a different request
+		assertTrue(out.contains("\"code\":-32600,\"message\":\"Duplicate request id\"},\"id\":1}"));
+		assertTrue(out.contains("\"result\":{},\"id\":\"1\""));
+		// The duplicate did not replace the original, which can still be cancelled
+		assertTrue(out.contains("\"message\":\"Request cancelled\"},\"id\":1}"));
+		assertFalse(out.contains("\"content\""));
+	}
+
+	@Test
+	public void testCdsTrainingRunsEveryCommandAndCleansUp() throws Exception {
+		File tmp = new File(System.getProperty("java.io.tmpdir"));
+		FileFilter scratch = f -> f.getName().startsWith("cdd-cds");
+		java.util.Set<File> before = new java.util.HashSet<>(java.util.Arrays.asList(tmp.listFiles(scratch)));
+		PrintStream out = System.out;
+		PrintStream err = System.err;
+		// A missing spec makes every command fail, which training shrugs off
+		cli.CdsTraining.main(new String[] { "src/test/resources/minimal-spec.json", "missing.json" });
+		assertSame(out, System.out);
+		assertSame(err, System.err);
+		assertEquals(before, new java.util.HashSet<>(java.util.Arrays.asList(tmp.listFiles(scratch))));
+		new cli.CdsTraining();
+	}
+
+	@Test
+	public void testServeJsonRpcHttp() throws Exception {
+		int port;
+		try (java.net.ServerSocket probe = new java.net.ServerSocket(0)) {
+			port = probe.getLocalPort();
+		}
+		int[] exit = {-1};
+		Thread server = new Thread(() -> exit[0] = cli.CddCli.serveJsonRpc(String.valueOf(port), "127.0.0.1", false));
+		server.start();
+
+		java.net.http.HttpClient client = java.net.http.HttpClient.newHttpClient();
+		java.net.URI uri = java.net.URI.create("http://127.0.0.1:" + port + "/");
+		java.net.http.HttpResponse<String> res = null;
+		for (int i = 0; i < 100 && res == null; i++) {
+			try {
+				res = client.send(
+						java.net.http.HttpRequest.newBuilder(uri)
+								.POST(java.net.http.HttpRequest.BodyPublishers
+										.ofString("{\"jsonrpc\":\"2.0\",\"method\":\"version\",\"id\":1}"))
+								.build(),
+						java.net.http.HttpResponse.BodyHandlers.ofString());
+			} catch (java.net.ConnectException e) {
+				Thread.sleep(50);
+			}
+		}
+		assertNotNull(res);
+		assertEquals(200, res.statusCode());
+		assertTrue(res.body().contains("\"result\":\"" + CddCli.VERSION + "\""));
+
+		res = client.send(java.net.http.HttpRequest.newBuilder(uri)
+				.POST(java.net.http.HttpRequest.BodyPublishers
+						.ofString("{\"jsonrpc\":\"2.0\",\"method\":\"tools/list\",\"id\":2}"))
+				.build(), java.net.http.HttpResponse.BodyHandlers.ofString());
+		assertTrue(res.body().contains("cdd_generate"));
+
+		// Nothing can be pushed over HTTP, so subscriptions are neither offered nor accepted
+		res = client.send(java.net.http.HttpRequest.newBuilder(uri)
+				.POST(java.net.http.HttpRequest.BodyPublishers
+						.ofString("{\"jsonrpc\":\"2.0\",\"method\":\"initialize\",\"id\":4}"))
+				.build(), java.net.http.HttpResponse.BodyHandlers.ofString());
+		assertTrue(res.body().contains("\"subscribe\":false"));
+		res = client.send(java.net.http.HttpRequest.newBuilder(uri)
+				.POST(java.net.http.HttpRequest.BodyPublishers.ofString(
+						"{\"jsonrpc\":\"2.0\",\"method\":\"resources/subscribe\",\"params\":{\"uri\":\"cdd://ast/openapi\"},\"id\":5}"))
+				.build(), java.net.http.HttpResponse.BodyHandlers.ofString());
+		assertTrue(res.body().contains("\"code\":-32601"));
+
+		res = client.send(java.net.http.HttpRequest.newBuilder(uri)
+				.POST(java.net.http.HttpRequest.BodyPublishers
+						.ofString("{\"jsonrpc\":\"2.0\",\"method\":\"notifications/initialized\"}"))
+				.build(), java.net.http.HttpResponse.BodyHandlers.ofString());
+		assertEquals(204, res.statusCode());
+		res = client.send(java.net.http.HttpRequest.newBuilder(uri)
+				.POST(java.net.http.HttpRequest.BodyPublishers.ofString("  ")).build(),
+				java.net.http.HttpResponse.BodyHandlers.ofString());
+		assertEquals(204, res.statusCode());
+
+		res = client.send(java.net.http.HttpRequest.newBuilder(uri).GET().build(),
+				java.net.http.HttpResponse.BodyHandlers.ofString());
+		assertEquals(405, res.statusCode());
+
+		// Pages on other sites, and names rebound to this address, are refused
+		String version = "{\"jsonrpc\":\"2.0\",\"method\":\"version\",\"id\":6}";
+		for (String origin : new String[] { "https://evil.example", "null", "http://[", "http://[fe80::1%nope0]" }) {
+			res = client.send(java.net.http.HttpRequest.newBuilder(uri).header("Origin", origin)
+					.POST(java.net.http.HttpRequest.BodyPublishers.ofString(version)).build(),
+					java.net.http.HttpResponse.BodyHandlers.ofString());
+			assertEquals(origin, 403, res.statusCode());
+		}
+		for (String origin : new String[] { "http://localhost:3000", "http://127.0.0.1", "http://[::1]:8080" }) {
+			res = client.send(java.net.http.HttpRequest.newBuilder(uri).header("Origin", origin)
+					.POST(java.net.http.HttpRequest.BodyPublishers.ofString(version)).build(),
+					java.net.http.HttpResponse.BodyHandlers.ofString());
+			assertEquals(origin, 200, res.statusCode());
+		}
+		for (String host : new String[] { "evil.example:" + port, "127.0.0.1:" + (port + 1), "[", "localhost:" + port }) {
+			try (java.net.Socket socket = new java.net.Socket("127.0.0.1", port)) {
+				socket.getOutputStream().write(("POST / HTTP/1.1\r\nHost: " + host + "\r\nContent-Length: "
+						+ version.length() + "\r\nConnection: close\r\n\r\n" + version)
+						.getBytes(java.nio.charset.StandardCharsets.UTF_8));
+				String status = new java.io.BufferedReader(new java.io.InputStreamReader(socket.getInputStream(),
+						java.nio.charset.StandardCharsets.UTF_8)).readLine();
+				assertEquals(host, host.startsWith("localhost") ? "HTTP/1.1 200 OK" : "HTTP/1.1 403 Forbidden", status);
+			}
+		}
+
+		res = client.send(java.net.http.HttpRequest.newBuilder(uri)
+				.POST(java.net.http.HttpRequest.BodyPublishers
+						.ofString("{\"jsonrpc\":\"2.0\",\"method\":\"shutdown\",\"id\":3}"))
+				.build(), java.net.http.HttpResponse.BodyHandlers.ofString());
+		assertTrue(res.body().contains("\"result\":null"));
+		server.join(10000);
+		assertFalse(server.isAlive());
+		assertEquals(0, exit[0]);
 	}
 
 	@Test
@@ -327,9 +744,10 @@ public class CliMainTest {
 		cli.CddCli.generateDocsJson(null, null, false, false);
 
 		System.setIn(new ByteArrayInputStream("".getBytes("UTF-8")));
-		cli.CddCli.serveJsonRpc("8081", "127.0.0.1", false);
+		cli.CddCli.serveJsonRpc("8081", "127.0.0.1", true);
 		cli.CddCli.serveJsonRpc(null, null, true);
-		cli.CddCli.mcp("8081", "127.0.0.1", false);
+		cli.CddCli.mcp("8081", "127.0.0.1", true);
+		assertEquals(1, cli.CddCli.serveJsonRpc("not-a-port", "127.0.0.1", false));
 	}
 
 	@Test
@@ -0,0 +1,425 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import cli.ExtractionCache;
+import cli.Extractor;
+import cli.Fragment;
+import cli.Prescan;
+import cli.SourceWalker;
+import cli.Watcher;
+import openapi.OpenAPI;
+
+public class ExtractorTest {
+
+	private static List<File> javaFiles(File dir, List<File> out) {
+		File[] files = dir.listFiles();
+		if (files != null) {
+			for (File f : files) {
+				if (f.isDirectory())
+					javaFiles(f, out);
+				else if (f.getName().endsWith(".java"))
+					out.add(f);
+			}
+		}
+		return out;
+	}
+
+	@Test
+	public void testParallelMatchesSequential() throws Exception {
+		List<File> files = javaFiles(new File("src/main/java"), new ArrayList<>());
+		assertFalse(files.isEmpty());
+		OpenAPI sequential = Extractor.extract(files, 1);
+		OpenAPI parallel = Extractor.extract(files, 4);
+		assertEquals(openapi.Emit.toString(sequential), openapi.Emit.toString(parallel));
+	}
+
+	@Test
+	public void testMergePrecedence() throws Exception {
+		File dir = Files.createTempDirectory("cdd-extract").toFile();
+		File a = new File(dir, "A.java");
+		File b = new File(dir, "B.java");
+		Files.writeString(a.toPath(),
+				"class AMockServer { void s() { server.createContext(\"/items\", h); } }\nclass Pet { public String a; }");
+		Files.writeString(b.toPath(),
+				"class ItemsIntegrationTest { void test_items() {} }\nclass Pet { public String b; }");
+		List<File> files = List.of(a, b);
+
+		OpenAPI api = Extractor.extract(files, 2);
+		assertEquals("Generated from mock", api.paths.pathItems.get("/items").get.description);
+		assertTrue(api.components.schemas.get("Pet").properties.containsKey("b"));
+
+		Fragment fa = Extractor.extract(Files.readString(a.toPath()));
+		assertTrue(fa.fallbackPaths.containsKey("/items"));
+		assertTrue(fa.paths.isEmpty());
+	}
+
+	@Test
+	public void testParallelExtractionFailures() throws Exception {
+		new Extractor();
+		File missing = new File("no-such-dir/Missing.java");
+		try {
+			Extractor.extractAll(List.of(missing, missing), 2);
+			fail("expected IOException");
+		} catch (java.nio.file.NoSuchFileException e) {
+			assertTrue(e.getMessage().contains("Missing.java"));
+		}
+		try {
+			Extractor.extractSources(java.util.Arrays.asList("class A {}", null), 2);
+			fail("expected IOException");
+		} catch (java.io.IOException e) {
+			assertTrue(e.getMessage().startsWith("Extraction failed: "));
+		}
+		Thread.currentThread().interrupt();
+		try {
+			Extractor.extractSources(List.of("class A {}", "class B {}"), 2);
+			fail("expected IOException");
+		} catch (java.io.IOException e) {
+			assertEquals("Extraction interrupted", e.getMessage());
+			// The interrupt is kept for the caller
+			assertTrue(Thread.interrupted());
+		}
+	}
+
+	@Test
+	public void testParallelWalkFailures() throws Exception {
+		File dir = Files.createTempDirectory("cdd-await").toFile();
+		File pet = new File(dir, "Pet.java");
+		Files.writeString(pet.toPath(), "class Pet {}");
+		try {
+			try {
+				Extractor.extract(walking(new File(dir, "Missing.java")), dir, 2, null);
+				fail("expected IOException");
+			} catch (java.nio.file.NoSuchFileException e) {
+				assertTrue(e.getMessage().contains("Missing.java"));
+			}
+			try {
+				Extractor.extract(walking(null), dir, 2, null);
+				fail("expected IOException");
+			} catch (java.io.IOException e) {
+				assertTrue(e.getMessage().startsWith("Extraction failed: "));
+			}
+
+			// A task still running when the walk is interrupted is abandoned
+			java.util.concurrent.CountDownLatch release = new java.util.concurrent.CountDownLatch(1);
+			ExtractionCache blocking = new ExtractionCache(dir) {
+				@Override
+				public Fragment get(String key) {
+					try {
+						release.await();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+					return null;
+				}
+			};
+			SourceWalker interrupting = new SourceWalker() {
+				@Override
+				public void walk(File root, Listener listener) throws java.io.IOException {
+					listener.found(pet);
+					Thread.currentThread().interrupt();
+				}
+			};
+			try {
+				Extractor.extract(interrupting, dir, 2, blocking);
+				fail("expected IOException");
+			} catch (java.io.IOException e) {
+				assertEquals("Extraction interrupted", e.getMessage());
+				assertTrue(Thread.interrupted());
+			} finally {
+				release.countDown();
+			}
+		} finally {
+			for (File f : dir.listFiles())
+				f.delete();
+			dir.delete();
+		}
+	}
+
+	@Test
+	public void testSequentialWalkStopsWhenInterrupted() throws Exception {
+		File dir = Files.createTempDirectory("cdd-cancel").toFile();
+		File pet = new File(dir, "Pet.java");
+		Files.writeString(pet.toPath(), "class Pet {}");
+		try {
+			Thread.currentThread().interrupt();
+			Extractor.extract(new SourceWalker(), dir, 1, null);
+			fail("expected InterruptedIOException");
+		} catch (java.io.InterruptedIOException e) {
+			assertEquals("Extraction interrupted", e.getMessage());
+		} finally {
+			Thread.interrupted();
+			pet.delete();
+			dir.delete();
+		}
+	}
+
+	private static SourceWalker walking(File file) {
+		return new SourceWalker() {
+			@Override
+			public void walk(File root, Listener listener) throws java.io.IOException {
+				listener.found(file);
+			}
+		};
+	}
+
+	@Test
+	public void testParseJobs() {
+		assertEquals(1, Extractor.parseJobs(null));
+		assertEquals(3, Extractor.parseJobs("3"));
+		assertEquals(Runtime.getRuntime().availableProcessors(), Extractor.parseJobs("0"));
+		try {
+			Extractor.parseJobs("many");
+			fail("expected IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+			assertTrue(e.getMessage().contains("many"));
+		}
+	}
+
+	@Test
+	public void testCacheReusesUnchangedFiles() throws Exception {
+		List<File> files = javaFiles(new File("src/main/java/routes"), new ArrayList<>());
+		javaFiles(new File("src/main/java/orm"), files);
+		File cacheDir = Files.createTempDirectory("cdd-cache").toFile();
+
+		ExtractionCache cold = new ExtractionCache(cacheDir);
+		String fresh = openapi.Emit.toString(Extractor.extract(files, 2, cold));
+		assertEquals(0, cold.getHits());
+		assertEquals(files.size(), cold.getMisses());
+
+		ExtractionCache warm = new ExtractionCache(cacheDir);
+		String cached = openapi.Emit.toString(Extractor.extract(files, 2, warm));
+		assertEquals(files.size(), warm.getHits());
+		assertEquals(0, warm.getMisses());
+		assertEquals(fresh, cached);
+
+		assertNotEquals(ExtractionCache.key("class A {}"), ExtractionCache.key("class B {}"));
+	}
+
+	@Test
+	public void testCacheSkipsCorruptEntriesAndNeedsSha256() throws Exception {
+		File cacheDir = Files.createTempDirectory("cdd-cache").toFile();
+		try {
+			ExtractionCache cache = new ExtractionCache(cacheDir);
+			String key = ExtractionCache.key("class A {}");
+			Files.writeString(new File(cacheDir, key + ".json").toPath(), "{not json");
+			assertNull(cache.get(key));
+			assertEquals(1, cache.getMisses());
+
+			java.security.Provider sun = java.security.Security.getProvider("SUN");
+			int position = java.util.Arrays.asList(java.security.Security.getProviders()).indexOf(sun) + 1;
+			java.security.Security.removeProvider("SUN");
+			try {
+				ExtractionCache.key("class A {}");
+				fail("expected IllegalStateException");
+			} catch (IllegalStateException e) {
+				assertTrue(e.getCause() instanceof java.security.NoSuchAlgorithmException);
+			} finally {
+				java.security.Security.insertProviderAt(sun, position);
+			}
+			assertEquals(key, ExtractionCache.key("class A {}"));
+		} finally {
+			for (File f : cacheDir.listFiles())
+				f.delete();
+			cacheDir.delete();
+		}
+	}
+
+	@Test
+	public void testCacheRoundTripsFragment() throws Exception {
+		Fragment fragment = Extractor.extract("@Entity class Pet { @Id Long id; }\n"
+				+ "class PetMockServer { void s() { server.createContext(\"/pets\", h); } }");
+		Fragment restored = Fragment.fromJson(fragment.toJson());
+		assertEquals(fragment.schemas.keySet(), restored.schemas.keySet());
+		assertEquals(fragment.fallbackPaths.keySet(), restored.fallbackPaths.keySet());
+		openapi.Schema id = (openapi.Schema) restored.schemas.get("Pet").properties.get("id");
+		assertEquals("integer", id.type);
+	}
+
+	@Test
+	public void testWatcherRefreshesTouchedFiles() throws Exception {
+		File dir = Files.createTempDirectory("cdd-watch").toFile();
+		File pet = new File(dir, "Pet.java");
+		File owner = new File(dir, "Owner.java");
+		Files.writeString(pet.toPath(), "class Pet { public String name; }");
+		try (Watcher watcher = new Watcher(dir, new SourceWalker(), 1, 10)) {
+			OpenAPI api = watcher.refresh(Set.of());
+			assertTrue(api.components.schemas.containsKey("Pet"));
+
+			// Untouched files keep their previous fragment
+			Files.writeString(pet.toPath(), "class Pet { public String name; public Integer age; }");
+			api = watcher.refresh(Set.of());
+			assertFalse(api.components.schemas.get("Pet").properties.containsKey("age"));
+			api = watcher.refresh(Set.of(pet));
+			assertTrue(api.components.schemas.get("Pet").properties.containsKey("age"));
+
+			// New files are picked up, deleted files dropped
+			Files.writeString(owner.toPath(), "class Owner { public String name; }");
+			api = watcher.refresh(Set.of());
+			assertTrue(api.components.schemas.containsKey("Owner"));
+			assertTrue(owner.delete());
+			api = watcher.refresh(Set.of(owner));
+			assertFalse(api.components.schemas.containsKey("Owner"));
+		}
+	}
+
+	@Test(timeout = 20000)
+	public void testWatcherSkipsPrunedDirectories() throws Exception {
+		File dir = Files.createTempDirectory("cdd-watch").toFile();
+		new File(dir, "target").mkdirs();
+		new File(dir, ".git").mkdirs();
+		try (Watcher watcher = new Watcher(dir, new SourceWalker(), 1, 10)) {
+			watcher.refresh(Set.of());
+			Files.writeString(new File(dir, "target/Gen.java").toPath(), "class Gen {}");
+			Files.writeString(new File(dir, ".git/Obj.java").toPath(), "class Obj {}");
+			new File(dir, "build").mkdirs();
+			Files.writeString(new File(dir, "build/Out.java").toPath(), "class Out {}");
+			// A new source directory is registered and its files reported
+			File api = new File(dir, "api");
+			api.mkdirs();
+			File owner = new File(api, "Owner.java");
+			Files.writeString(owner.toPath(), "class Owner { public String name; }");
+			Set<File> changed = new java.util.HashSet<>();
+			while (!changed.contains(owner)) {
+				for (File f : watcher.awaitChanges()) {
+					assertFalse(f.getPath(), f.getPath().contains("target") || f.getPath().contains(".git")
+							|| f.getPath().contains("build"));
+					changed.add(f);
+				}
+			}
+			assertTrue(watcher.refresh(changed).components.schemas.containsKey("Owner"));
+		}
+	}
+
+	@Test(timeout = 20000)
+	public void testWatcherRecoversFromLostEvents() throws Exception {
+		File dir = Files.createTempDirectory("cdd-watch").toFile();
+		File pet = new File(dir, "Pet.java");
+		Files.writeString(pet.toPath(), "class Pet { public String name; }");
+		// A single file is watched through its directory
+		try (Watcher watcher = new Watcher(pet, new SourceWalker(), 1, 10)) {
+			assertTrue(watcher.refresh(Set.of()).components.schemas.containsKey("Pet"));
+		}
+		File sub = new File(dir, "sub");
+		sub.mkdirs();
+		File gone = new File(sub, "Gone.java");
+		Files.writeString(gone.toPath(), "class Gone {}");
+		try (Watcher watcher = new Watcher(dir, new SourceWalker(), 1, 10)) {
+			watcher.refresh(Set.of());
+
+			// A deleted directory stops being watched
+			assertTrue(gone.delete() && sub.delete());
+			Thread.sleep(200);
+			Set<File> changed = new java.util.HashSet<>();
+			while (!changed.contains(gone))
+				changed.addAll(watcher.awaitChanges());
+			watcher.refresh(changed);
+
+			// Changes to other files alone do not end the wait
+			Files.writeString(new File(dir, "notes.txt").toPath(), "n");
+			Thread.sleep(200);
+			Thread writer = new Thread(() -> {
+				try {
+					Thread.sleep(200);
+					Files.writeString(pet.toPath(), "class Pet { public Integer age; }");
+				} catch (Exception e) {
+					throw new RuntimeException(e);
+				}
+			});
+			writer.start();
+			assertEquals(Set.of(pet), watcher.awaitChanges());
+			writer.join();
+
+			// More events than a key holds overflow, and every known file is reported
+			for (int i = 0; i < 600; i++)
+				Files.writeString(new File(dir, "n" + i + ".txt").toPath(), "n");
+			Thread.sleep(200);
+			assertTrue(watcher.awaitChanges().contains(pet));
+		} finally {
+			for (File f : dir.listFiles())
+				f.delete();
+			dir.delete();
+		}
+	}
+
+	@Test(timeout = 20000)
+	public void testWatcherFollowsRecreatedDirectories() throws Exception {
+		File dir = Files.createTempDirectory("cdd-watch").toFile();
+		File sub = new File(dir, "sub");
+		sub.mkdirs();
+		File pet = new File(sub, "Pet.java");
+		Files.writeString(pet.toPath(), "class Pet { public String name; }");
+		try (Watcher watcher = new Watcher(dir, new SourceWalker(), 1, 10)) {
+			watcher.refresh(Set.of());
+			assertTrue(pet.delete() && sub.delete());
+			Set<File> changed = new java.util.HashSet<>();
+			while (!changed.contains(pet))
+				changed.addAll(watcher.awaitChanges());
+			Thread.sleep(200);
+
+			// The recreated directory is watched again, so later edits inside it are seen
+			sub.mkdirs();
+			Files.writeString(pet.toPath(), "class Pet { public String name; }");
+			changed.clear();
+			while (!changed.contains(pet))
+				changed.addAll(watcher.awaitChanges());
+			Thread.sleep(200);
+			Files.writeString(pet.toPath(), "class Pet { public Integer age; }");
+			changed.clear();
+			while (!changed.contains(pet))
+				changed.addAll(watcher.awaitChanges());
+			assertTrue(watcher.refresh(changed).components.schemas.get("Pet").properties.containsKey("age"));
+		} finally {
+			pet.delete();
+			sub.delete();
+			dir.delete();
+		}
+	}
+
+	@Test
+	public void testPrescanSkipsFilesNoExtractorCanMatch() throws Exception {
+		Prescan.Stats stats = new Prescan.Stats();
+		Fragment skipped = Extractor.extract("package util;\npublic interface Callback { void done(); }", stats);
+		assertTrue(skipped.paths.isEmpty() && skipped.fallbackPaths.isEmpty() && skipped.schemas.isEmpty());
+		assertEquals(0, stats.getHits());
+		assertEquals(1, stats.getMisses());
+
+		Prescan scan = Prescan.scan("@Entity class Pet { @Id Long id; }");
+		assertTrue(scan.classes && scan.orm);
+		assertFalse(scan.routes || scan.mocks || scan.cli || scan.tests);
+		assertTrue(Extractor.extract("server.createContext(\"/pets\", h);", stats).fallbackPaths.containsKey("/pets"));
+		assertEquals(1, stats.getHits());
+
+		// Each run counts only its own files, whatever runs alongside it
+		Prescan.Stats other = new Prescan.Stats();
+		Extractor.extractSources(java.util.List.of("class A {}", "interface B {}", "enum C {}"), 2, other);
+		assertEquals(2, other.getHits());
+		assertEquals(1, other.getMisses());
+		assertEquals(1, stats.getHits());
+		assertEquals(1, stats.getMisses());
+		assertEquals(3, Extractor.extractSources(List.of("class A {}", "interface B {}", "enum C {}"), 2).size());
+
+		// Walking counts the files scanned, sequentially or in parallel
+		File dir = Files.createTempDirectory("cdd-prescan").toFile();
+		try {
+			Files.writeString(new File(dir, "A.java").toPath(), "class A { public String a; }");
+			Files.writeString(new File(dir, "B.java").toPath(), "interface B {}");
+			Files.writeString(new File(dir, "C.java").toPath(), "class C { public String c; }");
+			Prescan.Stats parallel = new Prescan.Stats();
+			OpenAPI api = Extractor.extract(new SourceWalker(), dir, 2, null, parallel);
+			assertEquals(2, parallel.getHits());
+			assertEquals(1, parallel.getMisses());
+			assertEquals(openapi.Emit.toString(Extractor.extract(new SourceWalker(), dir, 1, null)),
+					openapi.Emit.toString(api));
+		} finally {
+			for (File f : dir.listFiles())
+				f.delete();
+			dir.delete();
+		}
+	}
+}
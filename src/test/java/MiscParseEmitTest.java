@@ -442,4 +442,47 @@ public class MiscParseEmitTest {
 		// test where classDecl remains null (no class or interface)
 		mocks.Emit.emit(api, "enum SomeEnum {}");
 	}
+
+	@Test
+	public void testParseSharedCompilationUnit() {
+		String source = "@Entity class Pet { @Id Long id; public String name; }\n"
+				+ "class PetIntegrationTest { void test_listPets() {} }\n"
+				+ "class PetMockServer { void start() { server.createContext(\"/pets\", h); } }";
+		com.github.javaparser.ast.CompilationUnit cu = com.github.javaparser.StaticJavaParser.parse(source);
+
+		assertEquals(classes.Parse.parse(source).components.schemas.keySet(),
+				classes.Parse.parse(cu).components.schemas.keySet());
+		assertTrue(orm.Parse.parse(cu).components.schemas.containsKey("Pet"));
+		assertTrue(tests.Parse.parse(cu).paths.pathItems.containsKey("/listPets"));
+		assertTrue(mocks.Parse.parse(cu).paths.pathItems.containsKey("/pets"));
+		assertNotNull(routes.Parse.parse(cu).paths);
+
+		// Unparseable source falls back to an empty tree
+		assertTrue(orm.Parse.parse("not java").components.schemas.isEmpty());
+		// A failure while walking the tree leaves the model empty too
+		com.github.javaparser.ast.CompilationUnit none = null;
+		assertTrue(orm.Parse.parse(none).components.schemas.isEmpty());
+		assertTrue(tests.Parse.parse(none).paths.pathItems.isEmpty());
+		assertTrue(mocks.Parse.parse(none).paths.pathItems.isEmpty());
+	}
+
+	@Test
+	public void testEmitModularStreamsToSink() {
+		OpenAPI api = new OpenAPI();
+		api.components = new Components();
+		api.components.schemas = new java.util.HashMap<>();
+		Schema pet = new Schema();
+		pet.type = "object";
+		pet.properties = new java.util.HashMap<>();
+		api.components.schemas.put("Pet", pet);
+
+		java.util.List<String> order = new java.util.ArrayList<>();
+		sink.MapSink collected = new sink.MapSink();
+		orm.Emit.emitModular(api, (path, content) -> {
+			order.add(path);
+			collected.write(path, content);
+		});
+		assertEquals(java.util.List.of("models/Pet.java"), order);
+		assertEquals(orm.Emit.emitModular(api), collected.files);
+	}
 }
@@ -0,0 +1,54 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermissions;
+
+import cli.OutputWriter;
+
+public class OutputWriterTest {
+
+	@Test
+	public void testSkipsUnchangedFiles() throws Exception {
+		File dir = Files.createTempDirectory("cdd-out").toFile();
+		File target = new File(dir, "nested/Pet.java");
+		OutputWriter out = new OutputWriter();
+
+		assertTrue(out.write(target, "class Pet {}"));
+		long mtime = target.lastModified();
+		target.setLastModified(mtime - 10000);
+		assertFalse(out.write(target, "class Pet {}"));
+		assertEquals(mtime - 10000, target.lastModified());
+
+		assertTrue(out.write(target, "class Pet { String name; }"));
+		assertEquals("class Pet { String name; }", Files.readString(target.toPath()));
+		assertFalse(out.write(target, "class Pet { String name; }", "class Pet { String name; }"));
+		// Without the current content, the file on disk is compared
+		assertFalse(out.write(target, "class Pet { String name; }", null));
+		assertTrue(out.write(target, "class Pet {}", "class Pet { String name; }"));
+		assertEquals(3, out.getWritten());
+		assertEquals(3, out.getSkipped());
+		assertEquals("3 written, 3 unchanged", out.summary());
+		// No temporary files left behind
+		assertEquals(1, target.getParentFile().list().length);
+	}
+
+	@Test
+	public void testKeepsPermissions() throws Exception {
+		File dir = Files.createTempDirectory("cdd-out").toFile();
+		File created = new File(dir, "Pet.java");
+		File script = new File(dir, "run.sh");
+		Files.writeString(script.toPath(), "echo old");
+		Files.setPosixFilePermissions(script.toPath(), PosixFilePermissions.fromString("rwxr-x---"));
+		OutputWriter out = new OutputWriter();
+
+		assertTrue(out.write(created, "class Pet {}"));
+		assertEquals("rw-r--r--", PosixFilePermissions.toString(Files.getPosixFilePermissions(created.toPath())));
+		assertTrue(out.write(script, "echo new"));
+		assertEquals("rwxr-x---", PosixFilePermissions.toString(Files.getPosixFilePermissions(script.toPath())));
+		created.delete();
+		script.delete();
+		dir.delete();
+	}
+}
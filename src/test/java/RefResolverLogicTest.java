@@ -106,6 +106,75 @@ public class RefResolverLogicTest {
 		assertEquals(2, schemas.keySet().size()); // should have 'col' and 'col_1'
 	}
 
+	@Test
+	public void testIdenticalComponentsShareOneName() throws Exception {
+		String[] contents = {"type: string", "{type: object, properties: {a: {type: integer}, b: {type: string}}}",
+				"{type: object, properties: {b: {type: string}, a: {type: integer}}}", "type: '1'", "type: 1",
+				"{type: object, required: [a, b]}", "{required: [a, b], type: object}", "{type: object, required: [b, a]}"};
+		StringBuilder paths = new StringBuilder();
+		File[] dirs = new File[contents.length];
+		try {
+			for (int i = 0; i < contents.length; i++) {
+				dirs[i] = Files.createTempDirectory("dedup").toFile();
+				File f = new File(dirs[i], "Err.yaml");
+				Files.writeString(f.toPath(), contents[i]);
+				paths.append(i > 0 ? ", " : "").append("\"/" + i + "\": {\"schema\": {\"$ref\": \"" + f.toURI() + "\"}}");
+			}
+			RefResolver resolver = new RefResolver();
+			JSONObject root = new JSONObject("{\"paths\": {" + paths + "}}");
+			resolver.bundle(root, new File(".").toURI().toString());
+
+			JSONObject schemas = root.getJSONObject("components").getJSONObject("schemas");
+			String[] refs = new String[contents.length];
+			for (int i = 0; i < contents.length; i++)
+				refs[i] = root.getJSONObject("paths").getJSONObject("/" + i).getJSONObject("schema").getString("$ref");
+			// The two objects differ only in member order
+			assertEquals(refs[1], refs[2]);
+			assertNotEquals(refs[0], refs[1]);
+			assertNotEquals(refs[3], refs[4]);
+			// Array order matters, member order does not
+			assertEquals(refs[5], refs[6]);
+			assertNotEquals(refs[5], refs[7]);
+			assertEquals(6, schemas.length());
+		} finally {
+			for (File dir : dirs) {
+				if (dir == null)
+					continue;
+				new File(dir, "Err.yaml").delete();
+				dir.delete();
+			}
+		}
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testStructuralComparisonSurvivesHashCollisions() throws Exception {
+		RefResolver resolver = new RefResolver();
+		java.lang.reflect.Method same = RefResolver.class.getDeclaredMethod("same", Object.class, Object.class);
+		same.setAccessible(true);
+		java.lang.reflect.Field field = RefResolver.class.getDeclaredField("hashes");
+		field.setAccessible(true);
+		java.util.Map<Object, Long> hashes = (java.util.Map<Object, Long>) field.get(resolver);
+
+		JSONArray list = new JSONArray("[1, \"a\", {\"b\": []}]");
+		assertTrue((boolean) same.invoke(resolver, list, new JSONArray("[1, \"a\", {\"b\": []}]")));
+		assertTrue((boolean) same.invoke(resolver, new JSONArray("[1, \"a\", {\"b\": []}]"), list));
+		assertFalse((boolean) same.invoke(resolver, new JSONArray("[1]"), new JSONArray("[\"1\"]")));
+		assertFalse((boolean) same.invoke(resolver, null, list));
+
+		// Values whose hashes collide are still told apart by their contents
+		Object[][] collisions = {{new JSONObject("{\"a\": 1}"), new JSONObject("{\"a\": 1, \"b\": 2}")},
+				{new JSONObject("{\"a\": 1}"), new JSONObject("{\"b\": 1}")},
+				{new JSONObject("{\"a\": 1}"), new JSONObject("{\"a\": 2}")},
+				{new JSONArray("[1]"), new JSONArray("[1, 2]")}, {new JSONArray("[1]"), new JSONArray("[2]")},
+				{new JSONObject(), new JSONArray()}};
+		for (Object[] pair : collisions) {
+			hashes.put(pair[0], 42L);
+			hashes.put(pair[1], 42L);
+			assertFalse(pair[0] + " " + pair[1], (boolean) same.invoke(resolver, pair[0], pair[1]));
+		}
+	}
+
 	@Test
 	public void testBundleError() {
 		RefResolver resolver = new RefResolver();
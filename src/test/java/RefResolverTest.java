@@ -1,3 +1,7 @@
+import openapi.Emit;
+import openapi.OpenAPI;
+import openapi.Parse;
+import openapi.RefCache;
 import openapi.RefResolver;
 import org.junit.Test;
 import org.junit.BeforeClass;
@@ -12,6 +16,17 @@ import com.sun.net.httpserver.HttpHandler;
 import com.sun.net.httpserver.HttpExchange;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.json.JSONObject;
 
 public class RefResolverTest {
 
@@ -82,4 +97,218 @@ public class RefResolverTest {
 			assertTrue(e.getMessage().contains("Failed to resolve reference"));
 		}
 	}
+
+	@Test
+	public void testPrefetchFetchesRemoteRefsConcurrently() throws Exception {
+		Map<String, AtomicInteger> hits = new ConcurrentHashMap<>();
+		AtomicInteger active = new AtomicInteger();
+		AtomicInteger peak = new AtomicInteger();
+		HttpServer pool = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		pool.createContext("/", exchange -> {
+			String path = exchange.getRequestURI().getPath();
+			hits.computeIfAbsent(path, k -> new AtomicInteger()).incrementAndGet();
+			peak.accumulateAndGet(active.incrementAndGet(), Math::max);
+			try {
+				Thread.sleep(50);
+			} catch (InterruptedException e) {
+			}
+			active.decrementAndGet();
+			// Every schema refers to a shared one, fetched in a second wave
+			String body = path.equals("/shared.json")
+					? "{\"type\": \"string\"}"
+					: "{\"type\": \"object\", \"properties\": {\"s\": {\"$ref\": \"shared.json\"}}}";
+			byte[] bytes = body.getBytes();
+			exchange.sendResponseHeaders(200, bytes.length);
+			try (OutputStream os = exchange.getResponseBody()) {
+				os.write(bytes);
+			}
+		});
+		pool.setExecutor(Executors.newFixedThreadPool(8));
+		pool.start();
+		try {
+			String base = "http://127.0.0.1:" + pool.getAddress().getPort() + "/";
+			StringBuilder schemas = new StringBuilder();
+			for (int i = 0; i < 12; i++) {
+				if (i > 0)
+					schemas.append(',');
+				schemas.append("\"S").append(i).append("\": {\"$ref\": \"").append(base).append("s").append(i)
+						.append(".json\"}");
+			}
+			JSONObject root = new JSONObject(
+					"{\"components\": {\"schemas\": {" + schemas + "}}}");
+			RefResolver resolver = new RefResolver();
+			resolver.maxConcurrentFetches = 4;
+			resolver.bundle(root, "file:/spec.json");
+
+			JSONObject bundled = root.getJSONObject("components").getJSONObject("schemas");
+			assertEquals("#/components/schemas/s3", bundled.getJSONObject("S3").getString("$ref"));
+			assertEquals("string", bundled.getJSONObject("shared").getString("type"));
+			assertEquals(13, hits.size());
+			for (AtomicInteger n : hits.values())
+				assertEquals(1, n.get());
+			assertTrue("peak " + peak.get(), peak.get() > 1 && peak.get() <= 4);
+		} finally {
+			pool.stop(0);
+			((ExecutorService) pool.getExecutor()).shutdownNow();
+		}
+	}
+
+	@Test
+	public void testPrefetchLeavesFailuresToBundling() throws Exception {
+		RefResolver resolver = new RefResolver();
+		resolver.prefetch(List.of("error", "missing-file.yaml", "::bad"), "http://127.0.0.1:" + port + "/");
+		assertTrue(resolver.cache.isEmpty());
+		JSONObject root = new JSONObject("{\"a\": {\"$ref\": \"error\"}}");
+		try {
+			resolver.bundle(root, "http://127.0.0.1:" + port + "/");
+			fail("Expected exception");
+		} catch (IOException e) {
+			assertTrue(e.getMessage().contains("Failed to bundle reference"));
+		}
+	}
+
+	@Test
+	public void testPrefetchSkipsUnreadableAndUnrequestableDocuments() throws Exception {
+		RefResolver resolver = new RefResolver();
+		resolver.prefetch(List.of("missing.yaml"), new File("no-such-dir").toURI().toString());
+		// No host to send a request to
+		resolver.prefetch(List.of("http:/no-host.yaml"), "http://127.0.0.1:" + port + "/");
+		assertTrue(resolver.cache.isEmpty());
+
+		Thread.currentThread().interrupt();
+		try {
+			resolver.prefetch(List.of("interrupted.yaml"), "http://127.0.0.1:" + port + "/");
+			fail("Expected exception");
+		} catch (java.io.InterruptedIOException e) {
+			assertEquals("Interrupted while fetching references", e.getMessage());
+			assertTrue(Thread.interrupted());
+		}
+	}
+
+	@Test
+	public void testDiskCacheRevalidatesAndServesOffline() throws Exception {
+		List<String> requests = Collections.synchronizedList(new ArrayList<>());
+		HttpServer origin = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		origin.createContext("/", exchange -> {
+			String path = exchange.getRequestURI().getPath();
+			String etag = exchange.getRequestHeaders().getFirst("If-None-Match");
+			requests.add(path + (etag != null ? " " + etag : ""));
+			if (path.equals("/fresh.yaml"))
+				exchange.getResponseHeaders().add("Cache-Control", "max-age=3600");
+			exchange.getResponseHeaders().add("ETag", "\"v1\"");
+			if ("\"v1\"".equals(etag)) {
+				exchange.sendResponseHeaders(304, -1);
+				exchange.close();
+				return;
+			}
+			byte[] bytes = "type: object\nproperties:\n  id: {type: integer}\n".getBytes();
+			exchange.sendResponseHeaders(200, bytes.length);
+			try (OutputStream os = exchange.getResponseBody()) {
+				os.write(bytes);
+			}
+		});
+		origin.start();
+		File dir = Files.createTempDirectory("ref-cache").toFile();
+		try {
+			String base = "http://127.0.0.1:" + origin.getAddress().getPort() + "/";
+			String spec = "{\"openapi\":\"3.0.0\",\"components\":{\"schemas\":{\"A\":{\"type\":\"object\","
+					+ "\"properties\":{\"s\":{\"$ref\":\"" + base + "stale.yaml\"},\"f\":{\"$ref\":\"" + base
+					+ "fresh.yaml\"}}}}}}";
+			File specFile = new File(dir, "spec.json");
+			Files.writeString(specFile.toPath(), spec);
+
+			OpenAPI first = Parse.fromFile(specFile,
+					new RefResolver(new RefCache(dir, false)));
+			assertEquals("object", first.components.schemas.get("stale").type);
+			assertEquals(Set.of("/stale.yaml", "/fresh.yaml"), new HashSet<>(requests));
+			File[] entries = dir.listFiles((d, n) -> !n.equals("spec.json"));
+			assertEquals(2, entries.length);
+			assertTrue(Files.readString(entries[0].toPath()).contains("\"document\":{"));
+
+			// The fresh document is reused as is; the other is revalidated
+			requests.clear();
+			OpenAPI second = Parse.fromFile(specFile,
+					new RefResolver(new RefCache(dir, false)));
+			assertEquals(List.of("/stale.yaml \"v1\""), requests);
+			assertEquals(Emit.toString(first), Emit.toString(second));
+
+			// Offline, nothing is requested
+			requests.clear();
+			origin.stop(0);
+			OpenAPI offline = Parse.fromFile(specFile,
+					new RefResolver(new RefCache(dir, true)));
+			assertTrue(requests.isEmpty());
+			assertEquals(Emit.toString(first), Emit.toString(offline));
+
+			Files.writeString(specFile.toPath(), spec.replace("stale.yaml", "other.yaml"));
+			try {
+				Parse.fromFile(specFile, new RefResolver(new RefCache(dir, true)));
+				fail("Expected exception");
+			} catch (IOException e) {
+				assertTrue(e.getMessage().contains("Failed to bundle reference"));
+			}
+		} finally {
+			origin.stop(0);
+			for (File f : dir.listFiles())
+				f.delete();
+			dir.delete();
+		}
+	}
+
+	@Test
+	public void testFetchRevalidatesAndStoresByCacheControl() throws Exception {
+		List<String> requests = Collections.synchronizedList(new ArrayList<>());
+		HttpServer origin = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		origin.createContext("/", exchange -> {
+			String path = exchange.getRequestURI().getPath();
+			requests.add(path + " " + exchange.getRequestHeaders().getFirst("If-None-Match") + " "
+					+ exchange.getRequestHeaders().getFirst("If-Modified-Since"));
+			String cacheControl = Map.of("/nostore.yaml", "no-store", "/nocache.yaml", "no-cache", "/badage.yaml",
+					"max-age=soon").get(path);
+			if (cacheControl != null)
+				exchange.getResponseHeaders().add("Cache-Control", cacheControl);
+			exchange.getResponseHeaders().add("ETag", "\"v1\"");
+			exchange.getResponseHeaders().add("Last-Modified", "Mon, 01 Jan 2024 00:00:00 GMT");
+			if (exchange.getRequestHeaders().containsKey("If-None-Match")) {
+				// Revalidated copies become fresh for a minute
+				exchange.getResponseHeaders().add("Cache-Control", "max-age=60");
+				exchange.sendResponseHeaders(304, -1);
+				exchange.close();
+				return;
+			}
+			byte[] bytes = (path.equals("/list.yaml") ? "- a\n- b\n" : "type: object\n").getBytes();
+			exchange.sendResponseHeaders(200, bytes.length);
+			try (OutputStream os = exchange.getResponseBody()) {
+				os.write(bytes);
+			}
+		});
+		origin.start();
+		File dir = Files.createTempDirectory("ref-cache").toFile();
+		try {
+			String base = "http://127.0.0.1:" + origin.getAddress().getPort() + "/";
+			RefCache cache = new RefCache(dir, false);
+			for (String name : new String[] { "etag.yaml", "nostore.yaml", "nocache.yaml", "badage.yaml", "list.yaml" })
+				assertTrue(new RefResolver(cache).fetch(name, base).contains(name.equals("list.yaml") ? "- a" : "object"));
+			// No-store responses are not kept; the list is kept as text since it is not a mapping
+			assertEquals(4, dir.listFiles().length);
+
+			requests.clear();
+			assertEquals("{\"type\":\"object\"}", new RefResolver(cache).fetch("etag.yaml", base));
+			assertEquals(List.of("/etag.yaml \"v1\" Mon, 01 Jan 2024 00:00:00 GMT"), requests);
+			// Now fresh, so served without a request
+			requests.clear();
+			new RefResolver(cache).fetch("etag.yaml", base);
+			assertTrue(requests.isEmpty());
+
+			// A cache that cannot be written only costs the next fetch
+			File notADir = new File(dir, "file");
+			Files.writeString(notADir.toPath(), "");
+			assertEquals("type: object\n", new RefResolver(new RefCache(notADir, false)).fetch("other.yaml", base));
+		} finally {
+			origin.stop(0);
+			for (File f : dir.listFiles())
+				f.delete();
+			dir.delete();
+		}
+	}
 }
@@ -0,0 +1,124 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import cli.SourceWalker;
+
+public class SourceWalkerTest {
+
+	private static File touch(File dir, String path) throws Exception {
+		File f = new File(dir, path);
+		f.getParentFile().mkdirs();
+		Files.writeString(f.toPath(), "class A {}");
+		return f;
+	}
+
+	private static List<String> names(SourceWalker walker, File root) {
+		List<String> names = new ArrayList<>();
+		for (File f : walker.list(root))
+			names.add(root.toPath().relativize(f.toPath()).toString().replace(File.separatorChar, '/'));
+		names.sort(null);
+		return names;
+	}
+
+	@Test
+	public void testDefaultSkipsAndGitignore() throws Exception {
+		File root = Files.createTempDirectory("cdd-walk").toFile();
+		touch(root, "src/Pet.java");
+		touch(root, "src/gen/Gen.java");
+		touch(root, "src/keep/Keep.java");
+		touch(root, "target/generated/Out.java");
+		touch(root, ".git/Hidden.java");
+		touch(root, "node_modules/x/Y.java");
+		touch(root, "src/notes.txt");
+		Files.writeString(new File(root, ".gitignore").toPath(), "# generated\ngen/\n*.tmp.java\n");
+		Files.writeString(new File(root, "src/keep/.gitignore").toPath(), "Keep.java\n!Keep.java\n");
+		touch(root, "src/Scratch.tmp.java");
+
+		assertEquals(List.of("src/Pet.java", "src/keep/Keep.java"), names(new SourceWalker(), root));
+		assertEquals(List.of("src/Pet.java", "src/Scratch.tmp.java", "src/gen/Gen.java", "src/keep/Keep.java"),
+				names(new SourceWalker(null, null, false), root));
+	}
+
+	@Test
+	public void testBuildDirsOnlyPrunedAtModuleRoots() throws Exception {
+		File root = Files.createTempDirectory("cdd-walk").toFile();
+		touch(root, "out/Stale.java");
+		touch(root, "src/com/acme/build/Builder.java");
+		touch(root, "src/com/acme/out/Output.java");
+		touch(root, "app/pom.xml");
+		touch(root, "app/target/Generated.java");
+		touch(root, "app/src/App.java");
+		touch(root, "web/package.json");
+		touch(root, "web/node_modules/dep/Dep.java");
+
+		assertEquals(List.of("app/src/App.java", "src/com/acme/build/Builder.java", "src/com/acme/out/Output.java"),
+				names(new SourceWalker(), root));
+	}
+
+	@Test
+	public void testIncludeExcludeGlobs() throws Exception {
+		File root = Files.createTempDirectory("cdd-walk").toFile();
+		touch(root, "routes/PetClient.java");
+		touch(root, "routes/internal/Helper.java");
+		touch(root, "models/Pet.java");
+
+		assertEquals(List.of("routes/PetClient.java", "routes/internal/Helper.java"),
+				names(new SourceWalker("routes/**", null, true), root));
+		assertEquals(List.of("models/Pet.java", "routes/PetClient.java"),
+				names(new SourceWalker(null, "internal", true), root));
+		assertEquals(List.of("routes/PetClient.java"), names(new SourceWalker("*Client.java", null, true), root));
+
+		File single = new File(root, "models/Pet.java");
+		assertEquals(List.of(single), new SourceWalker().list(single));
+	}
+
+	@Test
+	public void testDoubleStarPatternsAndUnreadableEntries() throws Exception {
+		File root = Files.createTempDirectory("cdd-walk").toFile();
+		touch(root, "gen/Top.java");
+		touch(root, "src/gen/Deep.java");
+		touch(root, "src/a/Old.java");
+		touch(root, "src/Pet.java");
+		Files.writeString(new File(root, ".gitignore").toPath(), "**/gen/\n");
+		// An undecodable .gitignore is treated as empty rather than failing the walk
+		Files.write(new File(root, "src/a/.gitignore").toPath(), new byte[] { (byte) 0xff, '\n' });
+
+		assertEquals(List.of("src/Pet.java", "src/a/Old.java"), names(new SourceWalker(), root));
+		assertEquals(List.of("src/Pet.java"), names(new SourceWalker(null, "**/Old.java", true), root));
+
+		// Entries that vanish after the directory was listed are skipped
+		File flat = Files.createTempDirectory("cdd-walk").toFile();
+		for (int i = 0; i < 5; i++)
+			touch(flat, "F" + i + ".java");
+		List<File> found = new ArrayList<>();
+		new SourceWalker().walk(flat, f -> {
+			if (found.isEmpty()) {
+				for (File other : flat.listFiles())
+					if (!other.equals(f))
+						other.delete();
+			}
+			found.add(f);
+		});
+		assertEquals(1, found.size());
+
+		SourceWalker failing = new SourceWalker() {
+			@Override
+			public void walk(File root, Listener listener) throws IOException {
+				throw new IOException("boom");
+			}
+		};
+		try {
+			failing.list(root);
+			fail("expected UncheckedIOException");
+		} catch (UncheckedIOException e) {
+			assertEquals("boom", e.getCause().getMessage());
+		}
+	}
+}
@@ -0,0 +1,97 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import com.sun.net.httpserver.HttpServer;
+
+import cli.SpecCache;
+import openapi.OpenAPI;
+
+public class SpecCacheTest {
+
+	private static String spec(String title) {
+		return "{\"openapi\":\"3.0.0\",\"info\":{\"title\":\"" + title + "\",\"version\":\"1\"},\"paths\":{}}";
+	}
+
+	@Test
+	public void testReusesParsedSpecsAndEvictsLeastRecentlyUsed() throws Exception {
+		SpecCache cache = new SpecCache(2);
+		OpenAPI a = cache.parse(spec("A"), "file:/a/");
+		assertSame(a, cache.parse(spec("A"), "file:/a/"));
+		assertEquals(1, cache.getHits());
+		assertEquals(1, cache.getMisses());
+
+		// Same text under another base URI may resolve differently
+		assertNotSame(a, cache.parse(spec("A"), "file:/b/"));
+		cache.parse(spec("A"), "file:/a/");
+		cache.parse(spec("C"), "file:/a/");
+		assertEquals(2, cache.size());
+		// A was used more recently than the file:/b/ entry, so it survives
+		assertSame(a, cache.parse(spec("A"), "file:/a/"));
+		assertEquals(3, cache.getHits());
+		assertEquals(3, cache.getMisses());
+		assertEquals(2, cache.toJson().getInt("capacity"));
+
+		try {
+			cache.parse("{", "file:/a/");
+			fail();
+		} catch (java.io.IOException e) {
+		}
+		try {
+			cache.parse(null, "file:/a/");
+			fail();
+		} catch (java.io.IOException e) {
+			// Rather than parsing and caching the text "null"
+			assertEquals("No spec content", e.getMessage());
+		}
+		assertEquals(2, cache.size());
+	}
+
+	@Test
+	public void testReparsesWhenReferencedFilesChange() throws Exception {
+		File dir = Files.createTempDirectory("spec-cache").toFile();
+		File pet = new File(dir, "pet.yaml");
+		HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/tag.yaml", exchange -> {
+			byte[] body = "type: string\n".getBytes(StandardCharsets.UTF_8);
+			exchange.sendResponseHeaders(200, body.length);
+			exchange.getResponseBody().write(body);
+			exchange.close();
+		});
+		server.start();
+		try {
+			Files.writeString(pet.toPath(), "type: object\n");
+			String spec = "{\"openapi\":\"3.0.0\",\"components\":{\"schemas\":{\"Owner\":{\"properties\":{"
+					+ "\"pet\":{\"$ref\":\"pet.yaml\"}}}}}}";
+			String base = dir.toURI().toString();
+			SpecCache cache = new SpecCache(4);
+			OpenAPI first = cache.parse(spec, base);
+			assertSame(first, cache.parse(spec, base));
+			assertEquals("object", first.components.schemas.get("pet").type);
+
+			Files.writeString(pet.toPath(), "type: integer\n");
+			pet.setLastModified(pet.lastModified() + 2000);
+			OpenAPI second = cache.parse(spec, base);
+			assertNotSame(first, second);
+			assertEquals("integer", second.components.schemas.get("pet").type);
+			assertSame(second, cache.parse(spec, base));
+			assertEquals(2, cache.getHits());
+
+			// Remote documents may change at any time, so such specs are not kept
+			String remote = "{\"openapi\":\"3.0.0\",\"components\":{\"schemas\":{\"Owner\":{\"properties\":{"
+					+ "\"tag\":{\"$ref\":\"http://127.0.0.1:" + server.getAddress().getPort() + "/tag.yaml\"}}}}}}";
+			OpenAPI fetched = cache.parse(remote, base);
+			assertEquals("string", fetched.components.schemas.get("tag").type);
+			assertNotSame(fetched, cache.parse(remote, base));
+			assertEquals(1, cache.size());
+		} finally {
+			server.stop(0);
+			pet.delete();
+			dir.delete();
+		}
+	}
+}
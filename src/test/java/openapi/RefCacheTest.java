@@ -0,0 +1,104 @@
+package openapi;
+import org.junit.Test;
+import org.json.JSONObject;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.nio.file.Files;
+
+public class RefCacheTest {
+
+	@Test
+	public void testEntriesComeBackParsedOrAsText() throws Exception {
+		File dir = Files.createTempDirectory("refcache").toFile();
+		try {
+			RefCache cache = new RefCache(dir, false);
+			JSONObject doc = new JSONObject().put("type", "string");
+			cache.put("http://h/a.yaml", new RefCache.Entry("\"v1\"", null, 5, "type: string", doc));
+			cache.put("http://h/b.txt", new RefCache.Entry(null, "Mon", 0, "not: [json", null));
+
+			// A parsed document is handed back as the tree, not as text to parse again
+			RefCache.Entry a = cache.get("http://h/a.yaml");
+			assertNull(a.text);
+			assertEquals("string", a.document.getString("type"));
+			assertEquals("\"v1\"", a.etag);
+			assertEquals(5, a.expires);
+			assertEquals("{\"type\":\"string\"}", a.content());
+
+			RefCache.Entry b = cache.get("http://h/b.txt");
+			assertNull(b.document);
+			assertEquals("not: [json", b.content());
+			assertEquals("Mon", b.lastModified);
+			assertFalse(b.isFresh());
+
+			assertNull(cache.get("http://h/missing"));
+		} finally {
+			for (File f : dir.listFiles())
+				f.delete();
+			dir.delete();
+		}
+	}
+
+	@Test
+	public void testMismatchedCorruptAndUnkeyableEntriesMiss() throws Exception {
+		File dir = Files.createTempDirectory("refcache").toFile();
+		try {
+			RefCache cache = new RefCache(dir, false);
+			cache.put("http://h/a.yaml", new RefCache.Entry(null, null, 0, "type: string", null));
+			File file = dir.listFiles()[0];
+			// An entry written for another URI is not this one
+			Files.writeString(file.toPath(), Files.readString(file.toPath()).replace("http://h/a.yaml", "http://h/b"));
+			assertNull(cache.get("http://h/a.yaml"));
+			Files.writeString(file.toPath(), "{not json");
+			assertNull(cache.get("http://h/a.yaml"));
+
+			java.security.Provider sun = java.security.Security.getProvider("SUN");
+			int position = java.util.Arrays.asList(java.security.Security.getProviders()).indexOf(sun) + 1;
+			java.security.Security.removeProvider("SUN");
+			try {
+				cache.get("http://h/a.yaml");
+				fail("expected IllegalStateException");
+			} catch (IllegalStateException e) {
+				assertTrue(e.getCause() instanceof java.security.NoSuchAlgorithmException);
+			} finally {
+				java.security.Security.insertProviderAt(sun, position);
+			}
+		} finally {
+			for (File f : dir.listFiles())
+				f.delete();
+			dir.delete();
+		}
+	}
+
+	@Test
+	public void testDefaultDirFollowsXdgCacheHome() {
+		String refs = "cdd-java" + File.separator + "refs";
+		assertEquals(new File("/xdg", refs), RefCache.defaultDir("/xdg", "/home/u"));
+		assertEquals(new File("/home/u/.cache", refs), RefCache.defaultDir("", "/home/u"));
+		assertEquals(new File("/home/u/.cache", refs), RefCache.defaultDir(null, "/home/u"));
+		assertTrue(RefCache.defaultDir().getPath().endsWith(refs));
+	}
+
+	@Test
+	public void testDocumentsLoadParsedFromTheCacheOrFromText() throws Exception {
+		File dir = Files.createTempDirectory("refcache").toFile();
+		File local = new File(dir, "local.yaml");
+		try {
+			RefCache cache = new RefCache(dir, false);
+			String uri = "http://127.0.0.1:1/doc.json";
+			cache.put(uri, new RefCache.Entry(null, null, System.currentTimeMillis() + 60000, null,
+					new JSONObject().put("type", "integer")));
+			// Fresh in the disk cache, so nothing is requested
+			RefResolver resolver = new RefResolver(cache);
+			assertEquals("integer", resolver.loadDocument(uri, "file:/").getString("type"));
+			assertTrue(resolver.cache.isEmpty());
+
+			Files.writeString(local.toPath(), "type: boolean\n");
+			assertEquals("boolean", resolver.loadDocument("local.yaml", dir.toURI().toString()).getString("type"));
+		} finally {
+			for (File f : dir.listFiles())
+				f.delete();
+			dir.delete();
+		}
+	}
+}
@@ -0,0 +1,400 @@
+package openapi;
+import org.junit.Test;
+import org.json.JSONObject;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+
+public class StreamParseTest {
+
+	private static String treeParse(String content, String baseUri) throws Exception {
+		JSONObject root;
+		if (content.trim().startsWith("{")) {
+			root = new JSONObject(content.trim());
+		} else {
+			Map<String, Object> map = new org.yaml.snakeyaml.Yaml().load(content);
+			root = new JSONObject(map);
+		}
+		new RefResolver().bundle(root, baseUri);
+		return Emit.toString(Parse.fromJson(root));
+	}
+
+	@Test
+	public void testMatchesTreeParseOnResources() throws Exception {
+		File[] specs = new File("src/test/resources").listFiles((d, n) -> n.endsWith(".json"));
+		assertTrue(specs.length > 0);
+		for (File spec : specs) {
+			String content = Files.readString(spec.toPath());
+			String base = spec.toURI().toString();
+			assertEquals(spec.getName(), treeParse(content, base), Emit.toString(Parse.fromFile(spec)));
+			// The same document as YAML
+			org.yaml.snakeyaml.DumperOptions options = new org.yaml.snakeyaml.DumperOptions();
+			options.setDefaultFlowStyle(org.yaml.snakeyaml.DumperOptions.FlowStyle.BLOCK);
+			String yaml = new org.yaml.snakeyaml.Yaml(options).dump(new org.yaml.snakeyaml.Yaml().load(content));
+			assertEquals(spec.getName(), treeParse(yaml, base), Emit.toString(Parse.fromString(yaml, base)));
+		}
+	}
+
+	@Test
+	public void testYamlAnchorsMergeKeysAndNulls() throws Exception {
+		String yaml = "openapi: 3.0.0\n"
+				+ "info: {title: t, version: '1', description: null}\n"
+				+ "servers: null\n"
+				+ "x-base: &base\n"
+				+ "  type: object\n"
+				+ "  description: base\n"
+				+ "x-extra: &extra\n"
+				+ "  format: extra\n"
+				+ "  description: extra\n"
+				+ "components:\n"
+				+ "  schemas:\n"
+				+ "    Pet:\n"
+				+ "      <<: [*base, *extra]\n"
+				+ "      properties:\n"
+				+ "        name: &str {type: string}\n"
+				+ "        tag: *str\n"
+				+ "    Dog:\n"
+				+ "      <<: *base\n"
+				+ "      type: array\n"
+				+ "paths:\n"
+				+ "  /pets:\n"
+				+ "    get:\n"
+				+ "      parameters:\n"
+				+ "        - {name: id, in: query, required: yes, schema: {type: integer}}\n"
+				+ "      responses:\n"
+				+ "        '200': {description: ok, content: {application/json: {schema: {$ref: '#/components/schemas/Pet'}}}}\n";
+		OpenAPI api = Parse.fromString(yaml);
+		assertNull(api.servers);
+		assertNull(api.info.description);
+		Schema pet = api.components.schemas.get("Pet");
+		assertEquals("object", pet.type);
+		assertEquals("base", pet.description);
+		assertEquals("extra", pet.format);
+		assertEquals("string", ((Schema) pet.properties.get("tag")).type);
+		assertEquals("array", api.components.schemas.get("Dog").type);
+		Parameter id = (Parameter) api.paths.pathItems.get("/pets").get.parameters.get(0);
+		assertTrue(id.required);
+		assertEquals(treeParse(yaml, new File(".").toURI().toString()), Emit.toString(api));
+	}
+
+	@Test
+	public void testMatchesTreeParseOnEveryMember() throws Exception {
+		String json = "{\"swagger\":\"2.0\",\"openapi\":\"3.0.0\",\"host\":\"api.example\",\"basePath\":\"/v1\","
+				+ "\"schemes\":[\"https\",\"http\"],\"consumes\":[\"application/json\"],\"produces\":[\"text/plain\"],"
+				+ "\"servers\":[{\"url\":\"https://a\",\"description\":\"A\"},{}],"
+				+ "\"info\":{\"title\":\"T\",\"version\":\"1\",\"description\":\"D\",\"x-a\":1.5},"
+				+ "\"paths\":{\"x-ext\":{\"a\":1},\"/p/{id}\":{"
+				+ "\"parameters\":[{\"name\":\"id\",\"in\":\"path\",\"description\":\"i\",\"required\":\"true\","
+				+ "\"schema\":{\"type\":\"string\",\"format\":\"uuid\",\"$ref\":\"#/components/schemas/Id\"}}],"
+				+ "\"get\":{\"operationId\":\"g\",\"summary\":\"s\",\"description\":\"d\",\"responses\":{"
+				+ "\"200\":{\"description\":\"ok\",\"content\":{\"application/json\":{\"schema\":{\"type\":\"string\"},"
+				+ "\"example\":\"x\"},\"text/plain\":{}}},\"404\":{}}},"
+				+ "\"post\":{\"requestBody\":{\"description\":\"b\",\"required\":true,\"content\":{"
+				+ "\"application/json\":{\"schema\":{\"$ref\":\"#/components/schemas/Pet\"}},\"text/plain\":{}}},"
+				+ "\"responses\":{}},"
+				+ "\"put\":{},\"delete\":{},\"patch\":{\"parameters\":[{\"description\":\"q\",\"required\":\"False\"}]}}},"
+				+ "\"components\":{\"schemas\":{\"Pet\":{\"type\":\"object\",\"description\":\"p\","
+				+ "\"items\":{\"type\":\"string\"},\"properties\":{\"n\":{\"type\":\"string\"}}}}},"
+				+ "\"definitions\":{\"Old\":{\"type\":\"string\"}}}";
+		String base = new File(".").toURI().toString();
+		OpenAPI api = Parse.fromString(json, base);
+		assertEquals(treeParse(json, base), Emit.toString(api));
+		assertEquals(List.of("https", "http"), api.schemes);
+		assertTrue(((Parameter) api.paths.pathItems.get("/p/{id}").parameters.get(0)).required);
+		assertNotNull(api.paths.pathItems.get("/p/{id}").patch);
+		assertEquals("string", api.components.schemas.get("Old").type);
+
+		// YAML nulls drop their members, as they do when loaded into a tree
+		String yaml = "openapi: 3.0.0\n"
+				+ "info: {title: !!str 5, version: null}\n"
+				+ "schemes: null\n"
+				+ "x-n: 1.5\n"
+				+ "x-merged:\n"
+				+ "  <<: {a: {b: [1]}}\n"
+				+ "paths:\n"
+				+ "  /a:\n"
+				+ "    parameters: null\n"
+				+ "    get:\n"
+				+ "      summary: null\n"
+				+ "      parameters:\n"
+				+ "        - {name: q, required: null}\n"
+				+ "      responses:\n"
+				+ "        '200': null\n"
+				+ "        '201':\n"
+				+ "          content:\n"
+				+ "            application/json: null\n";
+		api = Parse.fromString(yaml, base);
+		assertEquals(treeParse(yaml, base), Emit.toString(api));
+		assertEquals("5", api.info.title);
+		assertNull(api.schemes);
+		assertFalse(api.paths.pathItems.get("/a").get.responses.statusCodes.containsKey("200"));
+	}
+
+	@Test
+	public void testJsonStringsAndNesting() throws Exception {
+		OpenAPI api = Parse.fromString("{\"info\":{\"title\":\"\\\"\\'\\\\\\/\\b\\f\\n\\r\\t\\u0041\"}}");
+		assertEquals("\"'\\/\b\f\n\r\tA", api.info.title);
+		// Strings longer than the read buffer, and nesting deeper than the initial levels
+		String title = "x".repeat(20000);
+		String deep = "[".repeat(100) + "]".repeat(100);
+		api = Parse.fromString("{\"x-deep\":" + deep + ",\"info\":{\"title\":\"" + title + "\"}}");
+		assertEquals(title, api.info.title);
+
+		SpecTokens tokens = SpecTokens.json(new java.io.StringReader("1"));
+		assertEquals(SpecTokens.Token.NUMBER, tokens.next());
+		assertEquals(SpecTokens.Token.EOF, tokens.next());
+		tokens = SpecTokens.yaml(new java.io.StringReader("1"));
+		assertEquals(SpecTokens.Token.NUMBER, tokens.next());
+		for (int i = 0; i < 3; i++)
+			assertEquals(SpecTokens.Token.EOF, tokens.next());
+	}
+
+	@Test
+	public void testTruncatedTokenStreamIsAnError() throws Exception {
+		SpecTokens.Token[] stream = { SpecTokens.Token.START_OBJECT, SpecTokens.Token.NAME,
+				SpecTokens.Token.START_ARRAY, SpecTokens.Token.EOF };
+		SpecTokens truncated = new SpecTokens() {
+			int i;
+
+			@Override
+			Token next() {
+				text = "x-a";
+				return stream[Math.min(i++, stream.length - 1)];
+			}
+
+			@Override
+			boolean dropsNulls() {
+				return false;
+			}
+		};
+		try {
+			StreamParse.parse(truncated, "file:/", new RefResolver());
+			fail();
+		} catch (java.io.IOException e) {
+			assertEquals("Unexpected end of document", e.getMessage());
+		}
+	}
+
+	@Test(timeout = 10000)
+	public void testYamlAliasExpansionIsBounded() throws Exception {
+		StringBuilder yaml = new StringBuilder("openapi: 3.0.0\nx-lol:\n")
+				.append("  a: &a [lol, lol, lol, lol, lol, lol, lol, lol, lol]\n");
+		for (char c = 'b'; c <= 'i'; c++) {
+			String prev = "*" + (char) (c - 1);
+			yaml.append("  ").append(c).append(": &").append(c).append(" [").append(String.join(", ",
+					java.util.Collections.nCopies(9, prev))).append("]\n");
+		}
+		try {
+			Parse.fromString(yaml.toString());
+			fail("Expected exception");
+		} catch (java.io.IOException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains("aliases for non-scalar nodes exceeds the specified max=50"));
+		}
+		// Two aliases per level stay under the limit in the source but not when expanded
+		yaml = new StringBuilder("openapi: 3.0.0\nx-lol:\n  l0: &l0 [lol]\n");
+		for (int i = 1; i < 24; i++)
+			yaml.append("  l").append(i).append(": &l").append(i).append(" [*l").append(i - 1).append(", *l")
+					.append(i - 1).append("]\n");
+		try {
+			Parse.fromString(yaml.toString());
+			fail("Expected exception");
+		} catch (java.io.IOException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains("max=50"));
+		}
+	}
+
+	@Test
+	public void testExternalRefIsBundled() throws Exception {
+		File dir = Files.createTempDirectory("stream-parse").toFile();
+		File pet = new File(dir, "pet.yaml");
+		Files.writeString(pet.toPath(), "type: object\nproperties:\n  name: {type: string}\n");
+		File spec = new File(dir, "spec.json");
+		Files.writeString(spec.toPath(), "{\"openapi\":\"3.0.0\",\"components\":{\"schemas\":{"
+				+ "\"pet\":{\"type\":\"string\"},"
+				+ "\"Owner\":{\"type\":\"object\",\"x-skip\":{\"$ref\":\"pet.yaml\"},"
+				+ "\"properties\":{\"pet\":{\"$ref\":\"pet.yaml\"}}}}}}");
+		OpenAPI api = Parse.fromFile(spec);
+		Schema owner = api.components.schemas.get("Owner");
+		String ref = ((Schema) owner.properties.get("pet")).$ref;
+		assertTrue(ref, ref.startsWith("#/components/schemas/pet_"));
+		assertEquals("object", api.components.schemas.get(ref.substring(ref.lastIndexOf('/') + 1)).type);
+		assertEquals("string", api.components.schemas.get("pet").type);
+		pet.delete();
+		spec.delete();
+		dir.delete();
+	}
+
+	@Test
+	public void testDuplicateKeysAreRejected() throws Exception {
+		try {
+			Parse.fromString("{\"info\":{\"title\":\"a\"},\"openapi\":\"3.0.0\",\"info\":{}}");
+			fail();
+		} catch (java.io.IOException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains("Duplicate key \"info\""));
+		}
+		try {
+			Parse.fromString("{\"x\":[{\"a\":1,'a':2}]}");
+			fail();
+		} catch (java.io.IOException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains("Duplicate key \"a\""));
+		}
+		// Names only clash within one object, including objects reopened at the same depth
+		OpenAPI api = Parse.fromString("{\"info\":{\"title\":\"t\"},\"x\":{\"title\":[{\"info\":1},{\"info\":2}]}}");
+		assertEquals("t", api.info.title);
+	}
+
+	@Test
+	public void testMalformedInput() throws Exception {
+		String[] bad = {"{\"openapi\":}", "{\"openapi\": 3}", "{\"info\": [", "- a\n- b\n", "{\"a\":1",
+				"{\"paths\":{\"/a\":{\"get\":{\"parameters\":{}}}}}", "{\"info\":{\"description\":5}}",
+				"{\"a\":1 \"b\":2}", "{\"x\":[1 2]}", "{\"a\":", "{\"a\":\"abc", "{\"a\":\"\\q\"}",
+				"{\"a\":\"\\u12G4\"}", "{\"schemes\":[1]}",
+				"{\"paths\":{\"/a\":{\"get\":{\"parameters\":[{\"required\":5}]}}}}", "? [a]\n: b\n",
+				"a:\n  <<: 5\n", "a: *nope\n"};
+		for (String content : bad) {
+			try {
+				Parse.fromString(content);
+				fail(content);
+			} catch (java.io.IOException e) {
+				assertTrue(e.getMessage(), e.getMessage().startsWith("Failed to parse OpenAPI: "));
+			}
+		}
+		assertNotNull(Parse.fromString("").components);
+		assertNotNull(Parse.fromString(" \n\t").components);
+		// Leading whitespace longer than the look-ahead buffer
+		assertEquals("3.0.0", Parse.fromString(" ".repeat(20000) + "{\"openapi\":\"3.0.0\"}").openapi);
+		OpenAPI flow = Parse.fromString("{openapi: 3.0.0, info: {title: 'It\\'s', version: v1}, x: [TRUE, Null, -1e3]}");
+		assertEquals("3.0.0", flow.openapi);
+		assertEquals("It's", flow.info.title);
+		assertNotNull(Parse.fromString("{\"openapi\":\"3.0.0\",\"tags\":[1,true,null,{\"a\":[]},],} trailing").components);
+	}
+
+	@Test
+	public void testLazyRefsLoadOnDemandAndStopAtCycles() throws Exception {
+		File dir = Files.createTempDirectory("lazy-refs").toFile();
+		Files.writeString(new File(dir, "a.yaml").toPath(),
+				"type: object\nproperties:\n  b: {$ref: 'b.yaml'}\n  self: {$ref: 'a.yaml'}\n");
+		Files.writeString(new File(dir, "b.yaml").toPath(), "type: object\nproperties:\n  a: {$ref: 'a.yaml'}\n");
+		Files.writeString(new File(dir, "lib.json").toPath(), "{\"Tag\": {\"type\": \"string\"}}");
+		File spec = new File(dir, "spec.yaml");
+		Files.writeString(spec.toPath(), "openapi: 3.0.0\n"
+				+ "components:\n"
+				+ "  schemas:\n"
+				+ "    a: {type: integer}\n"
+				+ "    Root:\n"
+				+ "      properties:\n"
+				+ "        a: {$ref: 'a.yaml'}\n"
+				+ "        tag: {$ref: 'lib.json#/Tag'}\n"
+				+ "        missing: {$ref: 'missing.yaml'}\n"
+				+ "        kind: {$ref: 'lib.json#/Tag/type'}\n");
+		RefResolver resolver = new RefResolver(null, true);
+		assertTrue(resolver.isLazy());
+		assertFalse(new RefResolver().isLazy());
+		OpenAPI api = Parse.fromFile(spec, resolver);
+		assertTrue(resolver.cache.isEmpty());
+
+		Schema root = api.components.schemas.get("Root");
+		String a = ((Schema) root.properties.get("a")).$ref;
+		assertEquals("#/components/schemas/a_1", a);
+		assertEquals("#/components/schemas/Tag", ((Schema) root.properties.get("tag")).$ref);
+		assertEquals("#/components/schemas/type", ((Schema) root.properties.get("kind")).$ref);
+		assertTrue(resolver.cache.isEmpty());
+
+		// Reading a_1 loads a.yaml only; its references are named, not loaded
+		Schema a1 = api.components.schemas.get("a_1");
+		assertEquals("#/components/schemas/b", ((Schema) a1.properties.get("b")).$ref);
+		assertEquals("#/components/schemas/a_1", ((Schema) a1.properties.get("self")).$ref);
+		assertEquals(1, resolver.cache.size());
+		Schema b = api.components.schemas.get("b");
+		assertEquals("#/components/schemas/a_1", ((Schema) b.properties.get("a")).$ref);
+		assertEquals(2, resolver.cache.size());
+
+		// Asking whether a component exists loads it, so a target that is not an object names nothing
+		assertTrue(api.components.schemas.containsKey("Tag"));
+		assertEquals(3, resolver.cache.size());
+		assertFalse(api.components.schemas.containsKey("type"));
+		assertNull(api.components.schemas.get("type"));
+		assertFalse(api.components.schemas.containsKey("nothing"));
+		// References already point at the empty name, so no later target takes it
+		assertEquals("type_2", ((LazySchemas) api.components.schemas).register("other.json#/type", dir.toURI().toString()));
+		api.components.schemas.remove("type_2");
+
+		// Iterating needs every component, including the unresolvable one
+		try {
+			api.components.schemas.entrySet();
+			fail("Expected exception");
+		} catch (java.io.UncheckedIOException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains("missing.yaml"));
+		}
+		try {
+			api.components.schemas.containsKey("missing");
+			fail("Expected exception");
+		} catch (java.io.UncheckedIOException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains("missing.yaml"));
+		}
+		api.components.schemas.remove("missing");
+		assertEquals(java.util.Set.of("a", "Root", "a_1", "b", "Tag"), api.components.schemas.keySet());
+		assertEquals("string", api.components.schemas.get("Tag").type);
+		for (File f : dir.listFiles())
+			f.delete();
+		dir.delete();
+	}
+
+	@Test
+	public void testLazySchemasLoadAllAndReportBadTargets() throws Exception {
+		File dir = Files.createTempDirectory("lazy-refs").toFile();
+		Files.writeString(new File(dir, "c.yaml").toPath(), "allOf: [{$ref: 'd.yaml'}, {type: object}]\n");
+		Files.writeString(new File(dir, "d.yaml").toPath(), "type: string\n");
+		Files.writeString(new File(dir, "bad.json").toPath(), "{bad");
+		String base = dir.toURI().toString();
+		try {
+			RefResolver resolver = new RefResolver(null, true);
+			// Nothing external, so nothing is deferred
+			OpenAPI plain = Parse.fromReader(reader("{\"components\":{\"schemas\":{\"A\":{\"type\":\"string\"}}}}"),
+					base, resolver);
+			assertFalse(plain.components.schemas instanceof LazySchemas);
+
+			OpenAPI api = Parse.fromReader(reader("{\"components\":{\"schemas\":{\"A\":{\"$ref\":\"c.yaml\"},"
+					+ "\"B\":{\"$ref\":\"bad.json\"},\"E\":{\"$ref\":\"e.yaml\"}}}}"), base, resolver);
+			LazySchemas schemas = (LazySchemas) api.components.schemas;
+			// Replacing a pending component drops its target
+			schemas.put("e", new Schema());
+			assertNull(schemas.get("e").type);
+			try {
+				schemas.size();
+				fail("Expected exception");
+			} catch (java.io.UncheckedIOException e) {
+				assertTrue(e.getMessage(), e.getMessage().contains("bad.json"));
+				assertTrue(e.getCause().getCause() instanceof org.json.JSONException);
+			}
+			schemas.remove("bad");
+			// References inside arrays are named and loaded too
+			assertEquals(java.util.Set.of("A", "B", "E", "c", "d", "e"), schemas.keySet());
+			assertEquals("string", schemas.get("d").type);
+
+			try {
+				schemas.register("::bad", base);
+				fail("Expected exception");
+			} catch (java.io.IOException e) {
+				assertEquals("Failed to resolve reference: ::bad", e.getMessage());
+			}
+			try {
+				resolver.loadDocument("c.yaml", "::bad");
+				fail("Expected exception");
+			} catch (java.io.IOException e) {
+				assertEquals("Failed to resolve reference: c.yaml", e.getMessage());
+			}
+		} finally {
+			for (File f : dir.listFiles())
+				f.delete();
+			dir.delete();
+		}
+	}
+
+	private static java.io.BufferedReader reader(String content) {
+		return new java.io.BufferedReader(new java.io.StringReader(content));
+	}
+}